@@ -0,0 +1,89 @@
+package texteditor.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.model.Document;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model-layer baseline: single-character edits, line access and full-text extraction for each document engine.
+ * Throughput and SampleTime modes give ops/s and latency percentiles; BenchmarkMain adds allocation via -prof gc.
+ * The 1GB case needs a large heap, e.g. {@code -jvmArgsAppend -Xmx12g}, and can be skipped with {@code -p size=...}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx12g"})
+@State(Scope.Thread)
+public class DocumentBenchmark {
+
+    @Param({"1KB", "1MB", "100MB", "1GB"})
+    public String size;
+
+    @Param({"PIECE_TABLE", "GAP_BUFFER", "ROPE"})
+    public Document.Engine engine;
+
+    private String seed;
+    private Document document;
+    private SplittableRandom random;
+    private int sequentialPosition;
+
+    @Setup(Level.Trial)
+    public void createSeed() {
+        seed = SampleText.ofLength(SampleText.parseSize(size));
+    }
+
+    // a fresh document per iteration keeps piece counts and sizes comparable across iterations
+    @Setup(Level.Iteration)
+    public void createDocument() {
+        document = Document.create(engine, seed);
+        random = new SplittableRandom(42);
+        sequentialPosition = document.getLength() / 2;
+    }
+
+    @Benchmark
+    public Document sequentialInsert() {
+        document.insert(sequentialPosition++, "x");
+        return document;
+    }
+
+    @Benchmark
+    public Document randomInsert() {
+        document.insert(random.nextInt(document.getLength() + 1), "x");
+        return document;
+    }
+
+    @Benchmark
+    public Document randomDelete() {
+        int length = document.getLength();
+        if (length < seed.length() / 2 + 1) {
+            // refill so a long iteration never empties small documents
+            document.insert(random.nextInt(length + 1), seed.substring(0, Math.min(seed.length(), 4096)));
+        }
+        document.remove(random.nextInt(document.getLength()), 1);
+        return document;
+    }
+
+    @Benchmark
+    public String randomLine() {
+        return document.getLine(random.nextInt(document.getLineCount()));
+    }
+
+    @Benchmark
+    public String fullText() {
+        return document.getText();
+    }
+}
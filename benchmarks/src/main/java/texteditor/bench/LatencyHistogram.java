@@ -0,0 +1,54 @@
+package texteditor.bench;
+
+/**
+ * Fixed-size latency histogram with power-of-two nanosecond buckets. Recording is a bit scan and an
+ * increment, so it can sit inside a replay loop without distorting what it measures.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sumNanos;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 1);
+        counts[63 - Long.numberOfLeadingZeros(nanos)]++;
+        total++;
+        sumNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public long count() {return total;}
+
+    public long maxNanos() {return maxNanos;}
+
+    public double meanNanos() {return total == 0 ? 0 : (double) sumNanos / total;}
+
+    /**
+     * Upper bound of the bucket holding the given quantile, so the reported value is within 2x of the truth.
+     */
+    public long percentileNanos(double quantile) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(maxNanos, (1L << (i + 1)) - 1);
+        }
+        return maxNanos;
+    }
+
+    public String summary() {
+        return String.format("n=%d mean=%s p50=%s p90=%s p99=%s p99.9=%s max=%s",
+                total, format((long) meanNanos()), format(percentileNanos(0.50)), format(percentileNanos(0.90)),
+                format(percentileNanos(0.99)), format(percentileNanos(0.999)), format(maxNanos));
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 10_000) return nanos + "ns";
+        if (nanos < 10_000_000) return (nanos / 1_000) + "us";
+        return (nanos / 1_000_000) + "ms";
+    }
+}
@@ -0,0 +1,72 @@
+package texteditor.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.model.Document;
+import texteditor.model.ReadOnlyDocument;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full wrapped layout of a large document, sequential against fork-join at several pool sizes. The sample text
+ * averages about 40 characters a line, so 20MB is roughly 500k lines. The measurer is a font-metrics table filled
+ * from a synthetic proportional font, which needs no FX toolkit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LayoutBenchmark {
+
+    @Param({"20MB"})
+    public String size;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    // narrow enough that most lines wrap once or twice
+    @Param({"300"})
+    public double width;
+
+    private ReadOnlyDocument snapshot;
+    private TextMeasurer measurer;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        snapshot = Document.create(Document.Engine.PIECE_TABLE, SampleText.ofLength(SampleText.parseSize(size))).snapshot();
+        measurer = SampleText.measurer(16, 12);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public LayoutEngine.LayoutResult sequential() {
+        return new LayoutEngine(measurer).calculateLayout(snapshot, width);
+    }
+
+    @Benchmark
+    public LayoutEngine.LayoutResult parallel() {
+        return new LayoutEngine(measurer).calculateLayoutParallel(snapshot, width, pool);
+    }
+}
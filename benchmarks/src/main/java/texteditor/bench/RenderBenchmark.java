@@ -0,0 +1,211 @@
+package texteditor.bench;
+
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.model.Caret;
+import texteditor.model.Document;
+import texteditor.model.ReadOnlyDocument;
+import texteditor.view.CanvasRenderer;
+import texteditor.view.FramePainter;
+import texteditor.view.LineTileCache;
+import texteditor.view.caret.CaretController;
+import texteditor.view.layout.HeightMap;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RecordingSurface;
+import texteditor.view.style.StyleRun;
+import texteditor.view.style.TextStyle;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole editor frames without a display: the same layout, caret and paint steps as {@code EditorCanvas.draw()},
+ * painted on a {@link RecordingSurface}. Typing inserts a character at the caret before each frame, blinking
+ * repaints only the caret, and scrolling moves the viewport three rows per frame. The time is the CPU cost of
+ * a frame up to the draw calls; after each iteration the averages of what a frame asked the surface to draw are
+ * printed. With {@code styles} the text is coloured like source code: text calls are then the styled pieces, and
+ * state changes show how few fill changes drawing them grouped by colour needs.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 900;
+    private static final double PADDING_HORIZONTAL = 10;
+    private static final double PADDING_TOP = 25;
+    private static final int OVERSCAN_LINES = 8;
+    private static final int ROWS_PER_TICK = 3;
+    private static final Set<String> KEYWORDS = Set.of("public", "void", "int", "if", "return", "null");
+    private static final TextStyle KEYWORD = TextStyle.of(Color.DARKBLUE);
+    private static final TextStyle COMMENT = TextStyle.of(Color.GREEN);
+    private static final TextStyle PUNCTUATION = TextStyle.of(Color.GRAY);
+
+    @Param({"4MB", "40MB"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean tiles;
+
+    @Param({"false", "true"})
+    public boolean styles;
+
+    private Document document;
+    private TextMeasurer measurer;
+    private LayoutEngine layoutEngine;
+    private Caret caret;
+    private CaretController caretController;
+    private CanvasRenderer renderer;
+    private FramePainter painter;
+    private RecordingSurface surface;
+    private int scrollRow;
+    private int visibleRows;
+    private List<VisualLine> visualLines;
+    private int viewportRow;
+    private boolean caretVisible = true;
+
+    // what the frames of the current iteration asked the surface to draw
+    private long frames;
+    private long drawCalls;
+    private long textCalls;
+    private long stateChanges;
+    private long glyphs;
+    private double pixelsCleared;
+    private double pixelsMoved;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        document = Document.create(Document.Engine.PIECE_TABLE, SampleText.ofLength(SampleText.parseSize(size)));
+        measurer = SampleText.measurer(18, 14);
+        layoutEngine = new LayoutEngine(measurer);
+        caret = new Caret(document);
+        caretController = new CaretController(document, measurer, caret, PADDING_HORIZONTAL, PADDING_TOP);
+        renderer = new CanvasRenderer(measurer, PADDING_HORIZONTAL, PADDING_TOP);
+        if (tiles) {
+            // no images headless; the cache still decides what would be rasterized and what reused
+            renderer.setLineTileCache(new LineTileCache(32L * 1024 * 1024, (key, w, h, baseline, scale) -> null));
+        }
+        if (styles) renderer.setStyleProvider(RenderBenchmark::sourceStyles);
+        painter = new FramePainter(renderer);
+        document.addDocumentListener(painter);
+        surface = new RecordingSurface(WIDTH, HEIGHT, measurer);
+        visibleRows = (int) Math.ceil((HEIGHT - PADDING_TOP) / measurer.getLineHeight());
+
+        scrollRow = layoutEngine.getHeightMap(document, availableWidth()).totalRows() / 2;
+        frame();
+        caret.setPosition(visualLines.get(viewportRow + visibleRows / 2).startPosition());
+        frame();
+    }
+
+    private void count() {
+        frames++;
+        drawCalls += surface.getDrawCalls();
+        textCalls += surface.getTextCalls();
+        stateChanges += surface.getStateChanges();
+        glyphs += surface.getGlyphs();
+        pixelsCleared += surface.getClearedArea();
+        pixelsMoved += surface.getMovedArea();
+    }
+
+    /** Prints the per-frame draw counts of the iteration, next to JMH's timings. */
+    @TearDown(Level.Iteration)
+    public void report() {
+        if (frames == 0) return;
+        System.out.printf("%n  per frame: drawCalls=%.1f textCalls=%.1f stateChanges=%.1f glyphs=%.1f "
+                        + "pixelsCleared=%.0f pixelsMoved=%.0f%n",
+                (double) drawCalls / frames, (double) textCalls / frames, (double) stateChanges / frames,
+                (double) glyphs / frames, pixelsCleared / frames, pixelsMoved / frames);
+        frames = drawCalls = textCalls = stateChanges = glyphs = 0;
+        pixelsCleared = pixelsMoved = 0;
+    }
+
+    /** Keywords, comments and punctuation of the sample text, as a syntax highlighter would colour them. */
+    private static List<StyleRun> sourceStyles(ReadOnlyDocument document, int start, int end) {
+        String text = document.getText(start, end);
+        List<StyleRun> runs = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '/' && text.startsWith("//", i)) {
+                int lineEnd = text.indexOf('\n', i);
+                int commentEnd = (lineEnd < 0) ? text.length() : lineEnd;
+                runs.add(new StyleRun(start + i, start + commentEnd, COMMENT));
+                i = commentEnd;
+            } else if (Character.isLetter(c)) {
+                int wordEnd = i;
+                while (wordEnd < text.length() && Character.isLetter(text.charAt(wordEnd))) wordEnd++;
+                if (KEYWORDS.contains(text.substring(i, wordEnd))) runs.add(new StyleRun(start + i, start + wordEnd, KEYWORD));
+                i = wordEnd;
+            } else {
+                if ("(){};,.=|".indexOf(c) >= 0) runs.add(new StyleRun(start + i, start + i + 1, PUNCTUATION));
+                i++;
+            }
+        }
+        return runs;
+    }
+
+    private double availableWidth() {
+        return WIDTH - 2 * PADDING_HORIZONTAL;
+    }
+
+    /** Layout and paint, as {@code EditorCanvas.draw()} does them. */
+    private void frame() {
+        HeightMap heights = layoutEngine.getHeightMap(document, availableWidth());
+        scrollRow = Math.max(0, Math.min(scrollRow, heights.totalRows() - 1));
+        int topLine = heights.lineAtRow(scrollRow);
+        var layout = layoutEngine.calculateViewportLayout(document, availableWidth(), topLine,
+                scrollRow - heights.rowsBefore(topLine), visibleRows, OVERSCAN_LINES);
+        visualLines = layout.getVisualLines();
+        viewportRow = layout.getViewportRow();
+        caretController.setViewportRow(viewportRow);
+        caretController.updateCursorLocation(visualLines);
+
+        surface.reset();
+        painter.paint(surface, document, visualLines, viewportRow, visibleRows,
+                caretController.getCursorX(), caretController.getCursorY(), caretVisible);
+    }
+
+    @Benchmark
+    public void typing() {
+        document.insert(caret.getPosition(), "x");
+        caret.setPosition(caret.getPosition() + 1);
+        frame();
+        count();
+    }
+
+    @Benchmark
+    public void blinking() {
+        caretVisible = !caretVisible;
+        surface.reset();
+        renderer.redrawCaret(surface, document, visualLines, viewportRow,
+                caretController.getCursorX(), caretController.getCursorY(), caretVisible);
+        count();
+    }
+
+    @Benchmark
+    public void scrolling() {
+        scrollRow += ROWS_PER_TICK;
+        if (scrollRow >= layoutEngine.getHeightMap(document, availableWidth()).totalRows() - visibleRows) scrollRow = 0;
+        frame();
+        count();
+    }
+}
@@ -0,0 +1,65 @@
+package texteditor.bench;
+
+import javafx.scene.text.Font;
+import texteditor.view.text.FontMetricsTextMeasurer;
+import texteditor.view.text.TextMeasurer;
+
+/**
+ * Deterministic source-code-like text used to seed benchmark documents.
+ */
+public final class SampleText {
+    private static final String[] LINES = {
+            "    public void insert(int position, String text) {\n",
+            "        if (text == null || text.isEmpty()) return;\n",
+            "        // keep the caret on the same side of the edit\n",
+            "        document.insert(position, text);\n",
+            "    }\n",
+            "\n",
+            "The quick brown fox jumps over the lazy dog, again and again and again.\n",
+    };
+
+    private SampleText() {}
+
+    /**
+     * Parses sizes such as {@code 512}, {@code 1KB}, {@code 16MB} or {@code 1GB}.
+     */
+    public static int parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        long multiplier = 1;
+        if (s.endsWith("KB")) multiplier = 1L << 10;
+        else if (s.endsWith("MB")) multiplier = 1L << 20;
+        else if (s.endsWith("GB")) multiplier = 1L << 30;
+        String digits = s.replaceAll("[A-Z]", "");
+        long bytes = Long.parseLong(digits) * multiplier;
+        // Java strings top out just below 2^31 chars
+        return (int) Math.min(bytes, Integer.MAX_VALUE - 8);
+    }
+
+    public static String ofLength(int length) {
+        StringBuilder block = new StringBuilder();
+        for (String line : LINES) block.append(line);
+
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() + block.length() <= length) sb.append(block);
+        sb.append(block, 0, length - sb.length());
+        return sb.toString();
+    }
+
+    /**
+     * Thread-safe proportional measurer that needs no FX toolkit: each character is 5 to 9 pixels wide, by its
+     * code, so lines of the same length wrap differently.
+     */
+    public static TextMeasurer measurer(double lineHeight, double baselineOffset) {
+        return new FontMetricsTextMeasurer(null, new TextMeasurer() {
+            @Override
+            public double measureWidth(String text) {
+                double width = 0;
+                for (int i = 0; i < text.length(); i++) width += 5 + text.charAt(i) % 5;
+                return width;
+            }
+            @Override public double getLineHeight() {return lineHeight;}
+            @Override public double getBaselineOffset() {return baselineOffset;}
+            @Override public Font getFont() {return null;}
+        });
+    }
+}
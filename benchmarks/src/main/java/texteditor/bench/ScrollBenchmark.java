@@ -0,0 +1,68 @@
+package texteditor.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.model.Document;
+import texteditor.view.layout.HeightMap;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The layout half of one scroll tick on a document of about a million lines, as {@code EditorCanvas} does it:
+ * find the top line in the height map and lay out the viewport around it. Every call moves three rows further
+ * down, so lines keep scrolling into view that have never been wrapped. Painting is left out, since it needs the
+ * FX toolkit and with blit scrolling covers only the rows that scrolled in.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ScrollBenchmark {
+    private static final int VISIBLE_ROWS = 50;
+    private static final int OVERSCAN_LINES = 8;
+    private static final int ROWS_PER_TICK = 3;
+
+    @Param({"40MB"})
+    public String size;
+
+    @Param({"PIECE_TABLE", "ROPE"})
+    public Document.Engine engine;
+
+    @Param({"600"})
+    public double width;
+
+    private Document document;
+    private LayoutEngine layoutEngine;
+    private int scrollRow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        document = Document.create(engine, SampleText.ofLength(SampleText.parseSize(size)));
+        TextMeasurer measurer = SampleText.measurer(16, 12);
+        layoutEngine = new LayoutEngine(measurer);
+    }
+
+    @Benchmark
+    public LayoutEngine.LayoutResult scrollTick() {
+        HeightMap heights = layoutEngine.getHeightMap(document, width);
+        scrollRow += ROWS_PER_TICK;
+        if (scrollRow >= heights.totalRows()) scrollRow = 0;
+        int topLine = heights.lineAtRow(scrollRow);
+        return layoutEngine.calculateViewportLayout(document, width, topLine, scrollRow - heights.rowsBefore(topLine),
+                VISIBLE_ROWS, OVERSCAN_LINES);
+    }
+}
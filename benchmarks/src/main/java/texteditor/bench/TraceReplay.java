@@ -0,0 +1,183 @@
+package texteditor.bench;
+
+import texteditor.model.Caret;
+import texteditor.model.Document;
+import texteditor.model.PieceTable;
+import texteditor.trace.TraceEvent;
+import texteditor.trace.TraceReader;
+import texteditor.trace.TraceWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Replays recorded editing traces against a document and caret, the way the controller drives them.
+ * <pre>
+ *   java -cp benchmarks.jar texteditor.bench.TraceReplay [options] session.etr
+ *   java -cp benchmarks.jar texteditor.bench.TraceReplay [options] --synthesize 200000 [--out synthetic.etr]
+ *
+ *   --engine PIECE_TABLE,ROPE   engines to replay against (default PIECE_TABLE)
+ *   --initial file.txt          starting text; defaults to sample text of the trace's recorded initial length
+ *   --size 1MB                  initial length for synthesized traces (default 64KB)
+ * </pre>
+ * Traces are recorded from the editor by starting it with {@code -Dtexteditor.trace=session.etr}.
+ */
+public class TraceReplay {
+
+    public static void main(String[] args) throws IOException {
+        String engines = "PIECE_TABLE";
+        Path initialFile = null;
+        Path traceFile = null;
+        Path outFile = null;
+        int synthesize = 0;
+        int synthesizedLength = SampleText.parseSize("64KB");
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--engine" -> engines = args[++i];
+                case "--initial" -> initialFile = Path.of(args[++i]);
+                case "--synthesize" -> synthesize = Integer.parseInt(args[++i]);
+                case "--size" -> synthesizedLength = SampleText.parseSize(args[++i]);
+                case "--out" -> outFile = Path.of(args[++i]);
+                default -> traceFile = Path.of(args[i]);
+            }
+        }
+
+        if (synthesize > 0) {
+            traceFile = (outFile != null) ? outFile : Files.createTempFile("synthetic", ".etr");
+            try (OutputStream out = Files.newOutputStream(traceFile)) {
+                synthesize(out, synthesizedLength, synthesize, new SplittableRandom(42));
+            }
+            System.out.printf("Synthesized %d events into %s (%d bytes)%n", synthesize, traceFile, Files.size(traceFile));
+        }
+        if (traceFile == null) {
+            System.err.println("usage: TraceReplay [--engine E[,E]] [--initial file] (trace.etr | --synthesize N [--size S] [--out file])");
+            System.exit(2);
+        }
+
+        Trace trace = load(traceFile);
+        String initialText = (initialFile != null) ? Files.readString(initialFile) : SampleText.ofLength(trace.initialLength);
+
+        for (String engine : engines.split(",")) {
+            replay(Document.Engine.valueOf(engine.trim()), initialText, trace.events);
+        }
+    }
+
+    private record Trace(int initialLength, List<TraceEvent> events) {}
+
+    /** Reads the whole trace up front so that file access stays out of the timed loop. */
+    private static Trace load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file); TraceReader reader = new TraceReader(in)) {
+            List<TraceEvent> events = new ArrayList<>();
+            for (TraceEvent event = reader.next(); event != null; event = reader.next()) {
+                events.add(event);
+            }
+            return new Trace(reader.getInitialLength(), events);
+        }
+    }
+
+    private static void replay(Document.Engine engine, String initialText, List<TraceEvent> events) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeapAfterGc(memory);
+
+        Document document = Document.create(engine, initialText);
+        Caret caret = new Caret(document);
+        Map<TraceEvent.Kind, LatencyHistogram> latencies = new EnumMap<>(TraceEvent.Kind.class);
+        for (TraceEvent.Kind kind : TraceEvent.Kind.values()) latencies.put(kind, new LatencyHistogram());
+
+        long replayStart = System.nanoTime();
+        for (TraceEvent event : events) {
+            long start = System.nanoTime();
+            switch (event.kind()) {
+                case INSERT -> {
+                    document.insert(event.position(), event.text());
+                    caret.setPosition(event.position() + event.length());
+                }
+                case DELETE -> {
+                    document.remove(event.position(), event.length());
+                    caret.setPosition(event.position());
+                }
+                case MOVE -> caret.setPosition(event.position());
+            }
+            latencies.get(event.kind()).record(System.nanoTime() - start);
+        }
+        long replayNanos = System.nanoTime() - replayStart;
+
+        long heapAfter = usedHeapAfterGc(memory);
+        String pieces = (document instanceof PieceTable table) ? Integer.toString(table.toPieceList().size()) : "n/a";
+
+        System.out.printf("%n== %s: %d events, initial %d chars, final %d chars%n",
+                engine, events.size(), initialText.length(), document.getLength());
+        System.out.printf("replay time      %.1f ms%n", replayNanos / 1e6);
+        for (Map.Entry<TraceEvent.Kind, LatencyHistogram> entry : latencies.entrySet()) {
+            if (entry.getValue().count() > 0) {
+                System.out.printf("%-16s %s%n", entry.getKey().name().toLowerCase(), entry.getValue().summary());
+            }
+        }
+        System.out.printf("final pieces     %s%n", pieces);
+        System.out.printf("heap footprint   %.1f MB used after replay, %.1f MB before the document was built%n",
+                heapAfter / (1024.0 * 1024.0), heapBefore / (1024.0 * 1024.0));
+        Reference.reachabilityFence(document);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Writes a trace shaped like real editing: long typing runs with the odd newline, backspace bursts,
+     * occasional pastes and jumps to somewhere else in the document.
+     */
+    static void synthesize(OutputStream out, int initialLength, int eventCount, SplittableRandom random) throws IOException {
+        String paste = SampleText.ofLength(4096);
+        String letters = "etaoinshrdlucmfwypvbgkjqxz    ";
+        int length = initialLength;
+        int caret = random.nextInt(length + 1);
+        int written = 0;
+
+        try (TraceWriter writer = new TraceWriter(out, initialLength)) {
+            while (written < eventCount) {
+                int roll = random.nextInt(100);
+                if (roll < 70) {
+                    int run = 5 + random.nextInt(76);
+                    for (int i = 0; i < run && written < eventCount; i++, written++) {
+                        String ch = (random.nextInt(40) == 0) ? "\n" : String.valueOf(letters.charAt(random.nextInt(letters.length())));
+                        writer.write(TraceEvent.insert(60 + random.nextInt(140), caret, ch));
+                        caret++;
+                        length++;
+                    }
+                } else if (roll < 85) {
+                    int burst = 1 + random.nextInt(15);
+                    for (int i = 0; i < burst && caret > 0 && written < eventCount; i++, written++) {
+                        caret--;
+                        length--;
+                        writer.write(TraceEvent.delete(40 + random.nextInt(60), caret, 1));
+                    }
+                } else if (roll < 90) {
+                    int from = random.nextInt(paste.length() - 200);
+                    String text = paste.substring(from, from + 200 + random.nextInt(paste.length() - from - 200 + 1));
+                    writer.write(TraceEvent.insert(500 + random.nextInt(2000), caret, text));
+                    caret += text.length();
+                    length += text.length();
+                    written++;
+                } else {
+                    caret = random.nextInt(length + 1);
+                    writer.write(TraceEvent.move(300 + random.nextInt(3000), caret));
+                    written++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package texteditor.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tree descent that every keystroke performs before editing. With -prof gc,
+ * gc.alloc.rate.norm should read 0 B/op for both lookups.
+ * Lives in texteditor.model because seek/seekRange are package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceTreeLookupBenchmark {
+
+    @Param({"1000", "100000"})
+    public int pieces;
+
+    private PieceTree tree;
+    private final PieceTree.NodeCursor cursor = new PieceTree.NodeCursor();
+    private final PieceTree.RangeCursor range = new PieceTree.RangeCursor();
+    private int[] positions;
+    private int next;
+
+    @Setup
+    public void buildTree() {
+        tree = new PieceTree();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < pieces; i++) {
+            tree.insert(random.nextInt(tree.treeLength() + 1), new Piece(Piece.BufferType.ADD, i, 1 + random.nextInt(16)));
+        }
+        positions = new int[4096];
+        for (int i = 0; i < positions.length; i++) positions[i] = random.nextInt(tree.treeLength() - 16);
+    }
+
+    @Benchmark
+    public int seek() {
+        tree.seek(positions[next++ & 4095], cursor);
+        return cursor.offset;
+    }
+
+    @Benchmark
+    public int seekRange() {
+        tree.seekRange(positions[next++ & 4095], 12, range);
+        return range.end.offset;
+    }
+}
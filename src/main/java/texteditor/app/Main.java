@@ -1,47 +1,109 @@
 package texteditor.app;
 
 import javafx.application.Application;
+import javafx.geometry.Pos;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 import javafx.scene.Scene;
 import javafx.scene.layout.StackPane;
 import texteditor.controller.EditorController;
 import texteditor.model.Caret;
-import texteditor.model.PieceTable;
+import texteditor.model.Document;
+import texteditor.model.Selection;
+import texteditor.trace.TraceRecorder;
 import texteditor.view.EditorCanvas;
 import texteditor.view.CanvasRenderer;
+import texteditor.view.LineTileCache;
 import texteditor.view.caret.CaretController;
+import texteditor.view.gutter.GutterCanvas;
 import texteditor.view.layout.LayoutEngine;
+import texteditor.view.minimap.MinimapCanvas;
+import texteditor.view.text.CachingTextMeasurer;
+import texteditor.view.text.FontMetricsTextMeasurer;
 import texteditor.view.text.JavaFXTextMeasurer;
 import texteditor.view.text.TextMeasurer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
 public class Main extends Application {
     private static final String INITIAL_TEXT =
             "Ends at 11\n" +
                     "This should start at 26 the length is harder to know because this sentence is longer";
+    private static final long LINE_TILE_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final double MINIMAP_WIDTH = 100;
 
 
     @Override
     public void start(Stage stage) {
-            PieceTable document = new PieceTable(INITIAL_TEXT);
+            Document document = Document.forText(INITIAL_TEXT);
             Caret caret = new Caret(document);
-            TextMeasurer textMeasurer = new JavaFXTextMeasurer(new Font("Consolas", 26));
+            Selection selection = new Selection(document, caret);
+            document.addDocumentListener(selection);
+            Font font = new Font("Consolas", 26);
+            TextMeasurer textMeasurer = new CachingTextMeasurer(new JavaFXTextMeasurer(font));
+            TextMeasurer workerMeasurer = new FontMetricsTextMeasurer(font);
             LayoutEngine layoutEngine = new LayoutEngine(textMeasurer);
             CaretController caretController = new CaretController(document, textMeasurer, caret, 10.0, 25.0);
             CanvasRenderer renderer = new CanvasRenderer(textMeasurer, 10.0, 25.0);
+            // off unless asked for, e.g. to compare frame stats with and without tiles
+            if (Boolean.getBoolean("texteditor.lineTiles")) {
+                renderer.setLineTileCache(new LineTileCache(LINE_TILE_CACHE_BYTES));
+            }
 
-            EditorCanvas canvas = new EditorCanvas(document, layoutEngine, caretController, renderer, 10.0, 25.0);
+            EditorCanvas canvas = new EditorCanvas(document, layoutEngine, workerMeasurer, caretController, renderer,
+                    10.0, 25.0);
             canvas.draw();
 
-            StackPane root = new StackPane(canvas);
+            MinimapCanvas minimap = new MinimapCanvas(document, canvas, MINIMAP_WIDTH);
+            GutterCanvas gutter = new GutterCanvas(document, canvas, textMeasurer, 25.0);
+
+            StackPane root = new StackPane(gutter, canvas, minimap);
+            StackPane.setAlignment(gutter, Pos.TOP_LEFT);
+            StackPane.setAlignment(canvas, Pos.TOP_LEFT);
+            StackPane.setAlignment(minimap, Pos.TOP_RIGHT);
+            canvas.translateXProperty().bind(gutter.widthProperty());
+            canvas.widthProperty().bind(root.widthProperty().subtract(MINIMAP_WIDTH).subtract(gutter.widthProperty()));
+            canvas.heightProperty().bind(root.heightProperty());
+            gutter.heightProperty().bind(root.heightProperty());
+            minimap.heightProperty().bind(root.heightProperty());
             Scene scene = new Scene(root, 300, 300);
 
             // hand off to controller
-            new EditorController(scene, document, caret, caretController, canvas);
+            EditorController controller = new EditorController(scene, document, caret, selection, caretController, canvas);
+            startTraceRecording(controller, stage, document.getLength());
+            if (Boolean.getBoolean("texteditor.frameStats")) {
+                stage.addEventHandler(WindowEvent.WINDOW_HIDDEN,
+                        event -> System.out.println(canvas.getFrameStats().summary()));
+            }
 
             stage.setTitle("Minimal Text Editor - M0");
             stage.setScene(scene);
             stage.show();
     }
 
+    /**
+     * Records the session to the file named by the {@code texteditor.trace} system property, if set.
+     */
+    private void startTraceRecording(EditorController controller, Stage stage, int initialLength) {
+        String tracePath = System.getProperty("texteditor.trace");
+        if (tracePath == null || tracePath.isBlank()) return;
+
+        try {
+            TraceRecorder recorder = TraceRecorder.toFile(Path.of(tracePath), initialLength);
+            controller.setTraceRecorder(recorder);
+            stage.setOnHidden(event -> {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
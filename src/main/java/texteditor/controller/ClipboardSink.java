@@ -0,0 +1,14 @@
+package texteditor.controller;
+
+/**
+ * Where {@link SelectionCopier} puts copied text, a chunk at a time and on its worker, so that the whole copy
+ * never has to be one string. A sink takes one copy after another: the chunks of a copy, then {@link #finish()}.
+ */
+public interface ClipboardSink {
+
+    /** Takes the next chunk of the copy; {@code chunk} may be reused once this returns. */
+    void append(CharSequence chunk);
+
+    /** Ends the copy whose chunks were appended since the last call. */
+    void finish();
+}
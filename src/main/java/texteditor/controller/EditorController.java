@@ -3,23 +3,37 @@ package texteditor.controller;
 import javafx.scene.Scene;
 import javafx.scene.input.KeyCode;
 import texteditor.model.Caret;
-import texteditor.model.PieceTable;
+import texteditor.model.Document;
+import texteditor.model.Selection;
+import texteditor.trace.TraceRecorder;
 import texteditor.view.EditorCanvas;
 import texteditor.view.caret.CaretController;
 
 public class EditorController {
     private final Scene scene;
-    private final PieceTable document;
+    private final Document document;
     private final CaretController caretController;
     private final EditorCanvas canvas;
     private final Caret cursor;
+    private final Selection selection;
+    private final SelectionCopier copier;
+    private TraceRecorder traceRecorder;
 
-    public EditorController(Scene scene, PieceTable document, Caret cursor, CaretController caretController, EditorCanvas canvas) {
+    public EditorController(Scene scene, Document document, Caret cursor, Selection selection,
+                            CaretController caretController, EditorCanvas canvas) {
+        this(scene, document, cursor, selection, caretController, canvas, new SelectionCopier());
+    }
+
+    public EditorController(Scene scene, Document document, Caret cursor, Selection selection,
+                            CaretController caretController, EditorCanvas canvas, SelectionCopier copier) {
         this.scene = scene;
         this.document = document;
         this.caretController = caretController;
         this.cursor = cursor;
+        this.selection = selection;
+        this.copier = copier;
         this.canvas = canvas;
+        canvas.setSelection(selection);
 
 
 
@@ -28,44 +42,120 @@ public class EditorController {
 
     }
 
+    /**
+     * Captures every edit and caret jump from now on; pass null to stop recording.
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    private void insertAtCaret(String text) {
+        int position = cursor.getPosition();
+        document.insert(position, text);
+        if (traceRecorder != null) traceRecorder.recordInsert(position, text);
+    }
+
+    private void deleteBeforeCaret() {
+        int position = cursor.getPosition() - 1;
+        document.remove(position, 1);
+        if (traceRecorder != null && position >= 0) traceRecorder.recordDelete(position, 1);
+    }
+
+    /** Removes the selected text, leaving the caret where it began; does nothing if the selection is empty. */
+    private void deleteSelection() {
+        if (selection.isEmpty()) return;
+        int start = selection.getStart();
+        int length = selection.getEnd() - start;
+        document.remove(start, length);
+        if (traceRecorder != null) traceRecorder.recordDelete(start, length);
+        cursor.setPosition(start);
+        selection.collapse();
+    }
+
+    private void copySelection() {
+        copier.copy(document, selection.getStart(), selection.getEnd());
+    }
+
+    private static boolean isMovement(KeyCode code) {
+        return code == KeyCode.LEFT || code == KeyCode.RIGHT || code == KeyCode.UP || code == KeyCode.DOWN
+                || code == KeyCode.HOME || code == KeyCode.END;
+    }
+
     private void setupKeyHandlers() {
         scene.setOnKeyPressed(event -> {
             boolean modelChanged = false;
+            int caretBefore = cursor.getPosition();
+            int lengthBefore = document.getLength();
 
-            if (event.getCode() == KeyCode.LEFT) {
+            if (event.isShortcutDown() && event.getCode() == KeyCode.A) {
+                // only the two ends move, and the viewport stays where it is
+                selection.selectAll();
+                if (traceRecorder != null && cursor.getPosition() != caretBefore) {
+                    traceRecorder.recordMove(cursor.getPosition());
+                }
+                canvas.requestDraw();
+                return;
+            } else if (event.isShortcutDown() && event.getCode() == KeyCode.C) {
+                copySelection();
+                return;
+            } else if (event.isShortcutDown() && event.getCode() == KeyCode.X) {
+                copySelection();
+                deleteSelection();
+                modelChanged = true;
+            } else if ((event.getCode() == KeyCode.LEFT || event.getCode() == KeyCode.RIGHT)
+                    && !event.isShiftDown() && !selection.isEmpty()) {
+                // an arrow drops the selection at the end it points to
+                cursor.setPosition(event.getCode() == KeyCode.LEFT ? selection.getStart() : selection.getEnd());
+                selection.collapse();
+                modelChanged = true;
+            } else if (event.getCode() == KeyCode.LEFT) {
                 caretController.moveLeft();
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.RIGHT) {
                 caretController.moveRight();
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.UP) {
-                caretController.moveUpOrDown(canvas.recalculateLayout(), -1);
+                caretController.moveUpOrDown(canvas.revealPosition(cursor.getPosition()), -1);
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.DOWN) {
-                caretController.moveUpOrDown(canvas.recalculateLayout(), 1);
+                caretController.moveUpOrDown(canvas.revealPosition(cursor.getPosition()), 1);
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.END) {
-                caretController.moveToLineEnd(canvas.recalculateLayout());
+                caretController.moveToLineEnd(canvas.revealPosition(cursor.getPosition()));
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.HOME) {
-                caretController.moveToLineStart(canvas.recalculateLayout());
+                caretController.moveToLineStart(canvas.revealPosition(cursor.getPosition()));
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.ENTER) {
-                document.insert(cursor.getPosition(), "\n");
+                deleteSelection();
+                insertAtCaret("\n");
                 caretController.moveRight();
                 modelChanged = true;
+            } else if (event.isShortcutDown()) {
+                return;
             } else if (event.getCode().isLetterKey() || event.getCode().isDigitKey() || event.getText().length() == 1) {
-                document.insert(cursor.getPosition(), event.getText());
+                deleteSelection();
+                insertAtCaret(event.getText());
                 caretController.moveRight();
                 modelChanged = true;
             } else if (event.getCode() == KeyCode.BACK_SPACE) {
-                document.remove(cursor.getPosition() - 1, 1);
-                caretController.moveLeft();
+                if (selection.isEmpty()) {
+                    deleteBeforeCaret();
+                    caretController.moveLeft();
+                } else {
+                    deleteSelection();
+                }
                 modelChanged = true;
             }
+            // movement without Shift leaves nothing selected; with Shift the anchor stays and the caret extends it
+            if (isMovement(event.getCode()) && !event.isShiftDown()) selection.collapse();
+            if (traceRecorder != null && document.getLength() == lengthBefore && cursor.getPosition() != caretBefore) {
+                traceRecorder.recordMove(cursor.getPosition());
+            }
             if (modelChanged) {
+                // laid out and drawn once on the next pulse, however many keys arrive before it
+                canvas.requestReveal(cursor.getPosition());
                 canvas.resetCursorBlink();
-                canvas.draw();
             }
         });
     }
@@ -0,0 +1,59 @@
+package texteditor.controller;
+
+import texteditor.model.Document;
+import texteditor.model.ReadOnlyDocument;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies a range of the document to the clipboard, reading the text on a worker instead of the FX thread. Only
+ * the snapshot is taken on the calling thread, and no engine copies its text for one: a piece table freezes its
+ * pieces, a rope shares its root, and a gap buffer shares its array until the next edit. The worker streams the
+ * range from the snapshot into the sink {@link ReadOnlyDocument#APPEND_CHUNK} characters at a time through one
+ * reused builder, so no string of the whole range is made here. A chunk never ends between the two halves of a
+ * surrogate pair. A failure on the worker is left to the executor; the default one hands it to the thread's
+ * uncaught exception handler.
+ */
+public class SelectionCopier {
+    private final Executor worker;
+    private final ClipboardSink clipboard;
+
+    /** Copies on a daemon thread to the system clipboard. */
+    public SelectionCopier() {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "selection-copier");
+            thread.setDaemon(true);
+            return thread;
+        }), new SystemClipboardSink());
+    }
+
+    /**
+     * @param worker runs the copies one at a time
+     * @param clipboard receives the chunks of each copy, on the worker
+     */
+    public SelectionCopier(Executor worker, ClipboardSink clipboard) {
+        this.worker = worker;
+        this.clipboard = clipboard;
+    }
+
+    /** Copies {@code [start, end)} as it is now; later edits do not reach the copy. */
+    public void copy(Document document, int start, int end) {
+        if (start >= end) return;
+        ReadOnlyDocument snapshot = document.snapshot();
+        worker.execute(() -> {
+            StringBuilder chunk = new StringBuilder(Math.min(end - start, ReadOnlyDocument.APPEND_CHUNK));
+            for (int from = start; from < end; from += chunk.length()) {
+                chunk.setLength(0);
+                snapshot.appendText(from, Math.min(end, from + ReadOnlyDocument.APPEND_CHUNK), chunk);
+                if (chunk.isEmpty()) break;
+                int last = chunk.length() - 1;
+                if (from + chunk.length() < end && last > 0 && Character.isHighSurrogate(chunk.charAt(last))) {
+                    chunk.setLength(last);
+                }
+                clipboard.append(chunk);
+            }
+            clipboard.finish();
+        });
+    }
+}
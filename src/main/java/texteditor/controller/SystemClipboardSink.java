@@ -0,0 +1,106 @@
+package texteditor.controller;
+
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Puts copies on the system clipboard as plain text read through a {@link Reader} over the copied chunks, so a
+ * large copy is held in chunks rather than as one string. The JavaFX clipboard only takes whole strings, which is
+ * why this goes through AWT. A receiver in this JVM that asks for a {@code String} still gets one built for it.
+ */
+public class SystemClipboardSink implements ClipboardSink {
+    private static final DataFlavor PLAIN_TEXT_READER = readerFlavor();
+
+    private final Clipboard clipboard;
+    private List<String> chunks = new ArrayList<>();
+
+    public SystemClipboardSink() {
+        this(Toolkit.getDefaultToolkit().getSystemClipboard());
+    }
+
+    public SystemClipboardSink(Clipboard clipboard) {
+        this.clipboard = clipboard;
+    }
+
+    @Override
+    public void append(CharSequence chunk) {
+        chunks.add(chunk.toString());
+    }
+
+    @Override
+    public void finish() {
+        ChunkedText text = new ChunkedText(List.copyOf(chunks));
+        chunks = new ArrayList<>();
+        clipboard.setContents(text, text);
+    }
+
+    private static DataFlavor readerFlavor() {
+        try {
+            return new DataFlavor("text/plain;class=java.io.Reader");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record ChunkedText(List<String> chunks) implements Transferable, ClipboardOwner {
+
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[] {PLAIN_TEXT_READER, DataFlavor.stringFlavor};
+        }
+
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return PLAIN_TEXT_READER.equals(flavor) || DataFlavor.stringFlavor.equals(flavor);
+        }
+
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (PLAIN_TEXT_READER.equals(flavor)) return new ChunkReader(chunks);
+            if (DataFlavor.stringFlavor.equals(flavor)) return String.join("", chunks);
+            throw new UnsupportedFlavorException(flavor);
+        }
+
+        @Override
+        public void lostOwnership(Clipboard clipboard, Transferable contents) {
+        }
+    }
+
+    /** Reads the chunks one after another without joining them. */
+    static final class ChunkReader extends Reader {
+        private final List<String> chunks;
+        private int chunk;
+        private int offset;
+
+        ChunkReader(List<String> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            if (len == 0) return 0;
+            while (chunk < chunks.size() && offset == chunks.get(chunk).length()) {
+                chunk++;
+                offset = 0;
+            }
+            if (chunk == chunks.size()) return -1;
+
+            String text = chunks.get(chunk);
+            int count = Math.min(len, text.length() - offset);
+            text.getChars(offset, offset + count, buffer, off);
+            offset += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
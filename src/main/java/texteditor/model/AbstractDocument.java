@@ -0,0 +1,74 @@
+package texteditor.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared edit handling for the document engines. Edits are clamped here, counted in the version, and reported
+ * to listeners with the range of lines they replaced; subclasses only store the text.
+ */
+public abstract class AbstractDocument implements Document {
+    private final List<DocumentListener> listeners = new ArrayList<>();
+    private long version;
+
+    /** Inserts text at a position already clamped to {@code [0, getLength()]}. */
+    protected abstract void insertText(int position, String text);
+
+    /** Removes a range already checked to lie inside the document. */
+    protected abstract void removeText(int position, int length);
+
+    @Override
+    public final void insert(int position, String text) {
+        if (text == null || text.isEmpty()) return;
+        position = Math.max(0, Math.min(position, getLength()));
+
+        int oldLineCount = getLineCount();
+        int startLine = getLineIndex(position);
+        insertText(position, text);
+        fireChanged(position, 0, text.length(), startLine, 1, oldLineCount);
+    }
+
+    @Override
+    public final void remove(int position, int length) {
+        int total = getLength();
+        if (length <= 0 || position < 0 || position >= total) return;
+        if (position + length > total) {
+            length = total - position;  // trim to valid range
+        }
+
+        int oldLineCount = getLineCount();
+        int startLine = getLineIndex(position);
+        int removedLines = getLineIndex(position + length) - startLine + 1;
+        removeText(position, length);
+        fireChanged(position, length, 0, startLine, removedLines, oldLineCount);
+    }
+
+    private void fireChanged(int offset, int removedLength, int insertedLength,
+                             int startLine, int removedLines, int oldLineCount) {
+        version++;
+        if (listeners.isEmpty()) return;
+
+        // whatever the line count changed by happened inside the replaced range
+        int insertedLines = getLineCount() - (oldLineCount - removedLines);
+        DocumentEvent event = new DocumentEvent(offset, removedLength, insertedLength,
+                startLine, removedLines, insertedLines, version);
+        for (DocumentListener listener : List.copyOf(listeners)) {
+            listener.documentChanged(event);
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void addDocumentListener(DocumentListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeDocumentListener(DocumentListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,81 @@
+package texteditor.model;
+
+import java.util.Arrays;
+
+/**
+ * The piece table's add buffer. Text is only ever appended, into fixed-size chunks that are neither moved nor
+ * rewritten once written, so {@link #freeze()} can share the chunks with a snapshot instead of copying them:
+ * later appends write past the frozen length, and a grown chunk table is a new array.
+ */
+final class AddBuffer implements CharSequence {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private char[][] chunks;
+    private int length;
+    private final boolean frozen;
+
+    AddBuffer() {
+        this(new char[4][], 0, false);
+    }
+
+    private AddBuffer(char[][] chunks, int length, boolean frozen) {
+        this.chunks = chunks;
+        this.length = length;
+        this.frozen = frozen;
+    }
+
+    void append(String text) {
+        if (frozen) throw new IllegalStateException("A frozen add buffer cannot be appended to");
+        for (int from = 0; from < text.length(); ) {
+            int chunk = length >>> CHUNK_BITS;
+            if (chunk == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            if (chunks[chunk] == null) chunks[chunk] = new char[CHUNK_SIZE];
+            int offset = length & CHUNK_MASK;
+            int count = Math.min(text.length() - from, CHUNK_SIZE - offset);
+            text.getChars(from, from + count, chunks[chunk], offset);
+            from += count;
+            length += count;
+        }
+    }
+
+    /** The text appended so far, safe to read from other threads; shares the chunks, so it costs nothing. */
+    AddBuffer freeze() {
+        return frozen ? this : new AddBuffer(chunks, length, true);
+    }
+
+    /** Appends {@code [from, to)} a chunk at a time. */
+    void appendTo(StringBuilder out, int from, int to) {
+        while (from < to) {
+            int offset = from & CHUNK_MASK;
+            int count = Math.min(to - from, CHUNK_SIZE - offset);
+            out.append(chunks[from >>> CHUNK_BITS], offset, count);
+            from += count;
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException();
+        StringBuilder out = new StringBuilder(end - start);
+        appendTo(out, start, end);
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
@@ -4,10 +4,10 @@ public class Caret {
     public enum Affinity {LEFT, RIGHT}
 
     private int position;
-    private final PieceTable document;
+    private final Document document;
     private Affinity affinity;
 
-    public Caret(PieceTable document) {
+    public Caret(Document document) {
         this.document = document;
         this.position = 0;
         this.affinity = Affinity.RIGHT;
@@ -16,7 +16,7 @@ public class Caret {
     public int getPosition() {return position;}
 
     public void setPosition(int position) {
-        int max = document.getTreeLength();
+        int max = document.getLength();
         this.position = Math.max(0, Math.min(position, max));
     }
 
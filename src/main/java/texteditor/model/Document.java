@@ -0,0 +1,51 @@
+package texteditor.model;
+
+/**
+ * An editable document. The view and controller only talk to this interface, so the storage engine can be
+ * picked per workload.
+ */
+public interface Document extends ReadOnlyDocument {
+
+    enum Engine {
+        /** Contiguous buffer with a movable gap: cheapest for small files edited at one spot. */
+        GAP_BUFFER,
+        /** Append-only buffers indexed by a piece tree: never copies the original text, suits huge files. */
+        PIECE_TABLE,
+        /** Persistent balanced tree of chunks: snapshots are free, suits background readers. */
+        ROPE
+    }
+
+    /** Documents up to this many characters default to a gap buffer. */
+    int GAP_BUFFER_LIMIT = 256 * 1024;
+
+    /** Inserts {@code text} at {@code position}, clamped to the document bounds. */
+    void insert(int position, String text);
+
+    /** Removes up to {@code length} characters starting at {@code position}; invalid ranges are ignored. */
+    void remove(int position, int length);
+
+    /** Number of edits applied so far; changes whenever the text does. */
+    long getVersion();
+
+    void addDocumentListener(DocumentListener listener);
+
+    void removeDocumentListener(DocumentListener listener);
+
+    /**
+     * Returns an immutable view of the current text. Later edits to this document do not show through,
+     * and the snapshot may be read from any thread.
+     */
+    ReadOnlyDocument snapshot();
+
+    static Document create(Engine engine, String text) {
+        return switch (engine) {
+            case GAP_BUFFER -> new GapBuffer(text);
+            case PIECE_TABLE -> new PieceTable(text);
+            case ROPE -> new Rope(text);
+        };
+    }
+
+    static Document forText(String text) {
+        return create(text.length() <= GAP_BUFFER_LIMIT ? Engine.GAP_BUFFER : Engine.PIECE_TABLE, text);
+    }
+}
@@ -0,0 +1,17 @@
+package texteditor.model;
+
+/**
+ * Describes one edit in both characters and lines: {@code removedLines} lines starting at {@code startLine}
+ * were replaced by {@code insertedLines} lines. Lines outside that range kept their text, although the ones
+ * after it may have moved.
+ * @param offset where the edit happened
+ * @param removedLength number of characters removed
+ * @param insertedLength number of characters inserted
+ * @param startLine first line touched by the edit, counted before the edit
+ * @param removedLines number of lines, from {@code startLine}, that the edit replaced
+ * @param insertedLines number of lines, from {@code startLine}, that replaced them
+ * @param version document version after the edit
+ */
+public record DocumentEvent(int offset, int removedLength, int insertedLength,
+                            int startLine, int removedLines, int insertedLines, long version) {
+}
@@ -0,0 +1,9 @@
+package texteditor.model;
+
+/**
+ * Notified after every edit to a {@link Document}, on the thread that made the edit.
+ */
+public interface DocumentListener {
+
+    void documentChanged(DocumentEvent event);
+}
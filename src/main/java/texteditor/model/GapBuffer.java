@@ -0,0 +1,218 @@
+package texteditor.model;
+
+import java.util.Arrays;
+
+/**
+ * A single char array with a movable gap at the last edit position. Typing at one spot only touches the gap,
+ * which makes it the cheapest engine for small, heavily edited files. Moving the gap costs the distance moved.
+ */
+public class GapBuffer extends AbstractDocument {
+    private static final int MIN_GAP = 64;
+
+    private char[] buffer;
+    private int gapStart;
+    private int gapEnd;
+
+    // sorted document offsets of every '\n'
+    private int[] newlines;
+    private int newlineCount;
+    // the arrays are shared with a snapshot, and copied before an edit changes them
+    private boolean shared;
+
+    public GapBuffer(String text) {
+        int length = text.length();
+        this.buffer = new char[length + MIN_GAP];
+        text.getChars(0, length, buffer, 0);
+        this.gapStart = length;
+        this.gapEnd = buffer.length;
+
+        this.newlines = new int[16];
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '\n') appendNewline(i);
+        }
+    }
+
+    private GapBuffer(GapBuffer source) {
+        this.buffer = source.buffer;
+        this.gapStart = source.gapStart;
+        this.gapEnd = source.gapEnd;
+        this.newlines = source.newlines;
+        this.newlineCount = source.newlineCount;
+        this.shared = true;
+        source.shared = true;
+    }
+
+    @Override
+    protected void insertText(int position, String text) {
+        unshare();
+        int textLength = text.length();
+        moveGap(position);
+        ensureGap(textLength);
+        text.getChars(0, textLength, buffer, gapStart);
+        gapStart += textLength;
+
+        int index = firstNewlineAtOrAfter(position);
+        for (int i = index; i < newlineCount; i++) newlines[i] += textLength;
+
+        int added = 0;
+        for (int i = 0; i < textLength; i++) {
+            if (text.charAt(i) == '\n') added++;
+        }
+        if (added == 0) return;
+
+        if (newlineCount + added > newlines.length) {
+            newlines = Arrays.copyOf(newlines, Math.max(newlines.length * 2, newlineCount + added));
+        }
+        System.arraycopy(newlines, index, newlines, index + added, newlineCount - index);
+        newlineCount += added;
+        for (int i = 0; i < textLength; i++) {
+            if (text.charAt(i) == '\n') newlines[index++] = position + i;
+        }
+    }
+
+    @Override
+    protected void removeText(int position, int length) {
+        unshare();
+        moveGap(position);
+        gapEnd += length;
+
+        int from = firstNewlineAtOrAfter(position);
+        int to = firstNewlineAtOrAfter(position + length);
+        System.arraycopy(newlines, to, newlines, from, newlineCount - to);
+        newlineCount -= to - from;
+        for (int i = from; i < newlineCount; i++) newlines[i] -= length;
+    }
+
+    /** Shares the arrays until the next edit, which copies them once however many snapshots were taken. */
+    @Override
+    public ReadOnlyDocument snapshot() {
+        return new GapBuffer(this);
+    }
+
+    private void unshare() {
+        if (!shared) return;
+        buffer = buffer.clone();
+        newlines = newlines.clone();
+        shared = false;
+    }
+
+    @Override
+    public int getLength() {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public String getText() {
+        return substring(0, getLength());
+    }
+
+    @Override
+    public String getText(int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(end, getLength());
+        return (start >= end) ? "" : substring(start, end);
+    }
+
+    @Override
+    public int getLineCount() {
+        int length = getLength();
+        boolean endsWithNewline = length > 0 && charAt(length - 1) == '\n';
+        return endsWithNewline ? newlineCount : newlineCount + 1;
+    }
+
+    @Override
+    public String getLine(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return substring(lineStart(lineIndex), lineEnd(lineIndex));
+    }
+
+    @Override
+    public int getLineLength(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return lineEnd(lineIndex) - lineStart(lineIndex);
+    }
+
+    @Override
+    public int getLineStart(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return lineStart(lineIndex);
+    }
+
+    @Override
+    public int getLineIndex(int position) {
+        // every newline before the position starts a new line
+        int index = firstNewlineAtOrAfter(Math.max(0, position));
+        return Math.min(index, getLineCount() - 1);
+    }
+
+    private int lineStart(int lineIndex) {
+        return (lineIndex == 0) ? 0 : newlines[lineIndex - 1] + 1;
+    }
+
+    private int lineEnd(int lineIndex) {
+        return (lineIndex < newlineCount) ? newlines[lineIndex] + 1 : getLength();
+    }
+
+    private void checkLineIndex(int lineIndex) {
+        if (lineIndex < 0 || lineIndex >= getLineCount()) {
+            throw new IndexOutOfBoundsException("Line index out of bounds: " + lineIndex);
+        }
+    }
+
+    private char charAt(int index) {
+        return (index < gapStart) ? buffer[index] : buffer[index + (gapEnd - gapStart)];
+    }
+
+    private String substring(int start, int end) {
+        if (end <= gapStart) return new String(buffer, start, end - start);
+        int gapLength = gapEnd - gapStart;
+        if (start >= gapStart) return new String(buffer, start + gapLength, end - start);
+
+        char[] out = new char[end - start];
+        int head = gapStart - start;
+        System.arraycopy(buffer, start, out, 0, head);
+        System.arraycopy(buffer, gapEnd, out, head, end - gapStart);
+        return new String(out);
+    }
+
+    private void moveGap(int position) {
+        if (position < gapStart) {
+            int count = gapStart - position;
+            System.arraycopy(buffer, position, buffer, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (position > gapStart) {
+            int count = position - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    private void ensureGap(int needed) {
+        if (gapEnd - gapStart >= needed) return;
+
+        int tail = buffer.length - gapEnd;
+        int capacity = Math.max(buffer.length * 2, getLength() + needed + MIN_GAP);
+        char[] grown = new char[capacity];
+        System.arraycopy(buffer, 0, grown, 0, gapStart);
+        System.arraycopy(buffer, gapEnd, grown, capacity - tail, tail);
+        buffer = grown;
+        gapEnd = capacity - tail;
+    }
+
+    private int firstNewlineAtOrAfter(int offset) {
+        int left = 0, right = newlineCount;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (newlines[mid] < offset) left = mid + 1;
+            else right = mid;
+        }
+        return left;
+    }
+
+    private void appendNewline(int offset) {
+        if (newlineCount == newlines.length) newlines = Arrays.copyOf(newlines, newlineCount * 2);
+        newlines[newlineCount++] = offset;
+    }
+}
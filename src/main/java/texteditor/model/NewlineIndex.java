@@ -0,0 +1,61 @@
+package texteditor.model;
+
+import java.util.Arrays;
+
+/**
+ * Sorted offsets of every '\n' in one of the piece table's buffers. The buffers are only ever appended to, so
+ * the index is too, and a piece can count and find its newlines with two binary searches instead of scanning
+ * its text.
+ */
+final class NewlineIndex {
+    private int[] offsets;
+    private int size;
+
+    private NewlineIndex(int[] offsets, int size) {
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    NewlineIndex() {
+        this(new int[16], 0);
+    }
+
+    static NewlineIndex of(CharSequence text) {
+        NewlineIndex index = new NewlineIndex();
+        index.append(text, 0);
+        return index;
+    }
+
+    /** Indexes {@code text}, which was appended to the buffer at {@code bufferOffset}. */
+    void append(CharSequence text, int bufferOffset) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != '\n') continue;
+            if (size == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[size++] = bufferOffset + i;
+        }
+    }
+
+    /** Newlines at buffer offsets below {@code offset}. */
+    int countBefore(int offset) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /** Buffer offset of the {@code i}-th newline, 0-based. */
+    int get(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * The newlines indexed so far, safe to read from other threads. It shares the array, since later appends
+     * only write past its size or into a grown copy; it must not be appended to itself.
+     */
+    NewlineIndex freeze() {
+        return new NewlineIndex(offsets, size);
+    }
+}
@@ -1,8 +1,5 @@
 package texteditor.model;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Piece {
     enum BufferType {
         ORIGINAL,
@@ -12,16 +9,14 @@ public class Piece {
     private final BufferType source;
     private final int start;
     private final int length;
-    private Integer lineCount;
-    private boolean lineCountCalculated;
-    List<Integer> lineStarts;
+    // -1 until counted
+    private int newlineCount = -1;
 
 
     Piece(BufferType source, int start, int length) {
         this.source = source;
         this.start = start;
         this.length = length;
-        this.lineCount = null;
     }
 
     public BufferType getSource() {return source;}
@@ -45,27 +40,32 @@ public class Piece {
         }
     }
 
-    public void calculateLineCount(String originalBuffer, StringBuilder addBuffer) {
-        int count = 0;
-        String buffer = (source == BufferType.ORIGINAL) ? originalBuffer : addBuffer.toString();
-        for (int i = start; i < start + length; i++) {
-            if (buffer.charAt(i) == '\n') count++;
+    /**
+     * Appends {@code [from, to)} of this piece, relative to the piece start, without an intermediate substring.
+     */
+    void appendTo(StringBuilder out, String originalBuffer, AddBuffer addBuffer, int from, int to) {
+        if (source == BufferType.ORIGINAL) {
+            out.append(originalBuffer, start + from, start + to);
+        } else {
+            addBuffer.appendTo(out, start + from, start + to);
         }
-        this.lineCount = count;
     }
 
-    public Integer getLineCount(String originalBuffer, StringBuilder addBuffer) {
-        if (lineCount == null) calculateLineCount(originalBuffer, addBuffer);
-        return this.lineCount;
+    /** Newlines in this piece, counted once from the index of its buffer. */
+    int newlineCount(NewlineIndex bufferNewlines) {
+        if (newlineCount < 0) {
+            newlineCount = bufferNewlines.countBefore(start + length) - bufferNewlines.countBefore(start);
+        }
+        return newlineCount;
     }
 
-    public List<Integer> getLineStarts(String originalBuffer, StringBuilder addBuffer) {
-        List<Integer> starts = new ArrayList<>();
-        String buffer = (source == BufferType.ORIGINAL) ? originalBuffer : addBuffer.toString();
-        starts.add(0);
-        for (int i = start; i < start + length; i++) {
-            if (buffer.charAt(i) == '\n') starts.add(i - start + 1);
-        }
-            return starts;
+    /** Offset in this piece of its {@code n}-th newline (1-based). */
+    int newlineOffset(NewlineIndex bufferNewlines, int n) {
+        return bufferNewlines.get(bufferNewlines.countBefore(start) + n - 1) - start;
+    }
+
+    /** Newlines in the first {@code offset} characters of this piece. */
+    int newlinesBefore(NewlineIndex bufferNewlines, int offset) {
+        return bufferNewlines.countBefore(start + offset) - bufferNewlines.countBefore(start);
     }
 }
@@ -2,292 +2,304 @@ package texteditor.model;
 
 import java.util.*;
 
-public class PieceTable {
+public class PieceTable extends AbstractDocument {
 
     private final String originalBuffer;
-    private final StringBuilder addBuffer;
+    private final AddBuffer addBuffer;
     private final PieceTree pieceTree;
-    private final List<Line> lineCache;
+    private final NewlineIndex originalNewlines;
+    private final NewlineIndex addNewlines = new NewlineIndex();
     private int totalLength;
 
     public PieceTable(String originalText) {
         this.originalBuffer = originalText;
-        this.addBuffer = new StringBuilder();
-        // this.pieces = new ArrayList<>();
-        this.lineCache = new ArrayList<>();
-        this.pieceTree = new PieceTree();
+        this.addBuffer = new AddBuffer();
+        this.originalNewlines = NewlineIndex.of(originalText);
+        this.pieceTree = new PieceTree(originalNewlines, addNewlines);
 
         if (!originalText.isEmpty()) {
             Piece piece = new Piece(Piece.BufferType.ORIGINAL, 0, originalText.length());
             pieceTree.insert(0, piece);
             this.totalLength = piece.getLength();
         }
-
-        rebuildLineCache();
     }
 
-    public void insert(int position, String text) {
-        if (text == null || text.isEmpty()) return;
-
+    @Override
+    protected void insertText(int position, String text) {
         int textLength = text.length();
+        addNewlines.append(text, addBuffer.length());
         addBuffer.append(text);
         Piece newPiece = new Piece(Piece.BufferType.ADD, addBuffer.length() - textLength, textLength);
 
-        insertHelper(position, newPiece);
+        pieceTree.insert(position, newPiece);
         totalLength += textLength;
-        rebuildLineCache();
     }
 
-    private void insertHelper(int position, Piece pieceToInsert) {
-        Optional<PieceTree.NodeOffset> result = pieceTree.findNodeAndOffset(position);
-
-        if (result.isEmpty()) {
-            pieceTree.setRoot(pieceTree.createLeafNode(pieceToInsert));
-            return;
-        }
+    @Override
+    protected void removeText(int position, int length) {
+        pieceTree.remove(position, length);
+        totalLength -= length;
+    }
 
-        RBTree.Node<Piece> node = result.get().node();
-        int offset = result.get().offset();
-
-        Piece oldPiece = node.payload;
-        if (offset == 0) {
-            RBTree.Node<Piece> newLeaf = pieceTree.createLeafNode(pieceToInsert);
-            pieceTree.addSiblingNode(node, newLeaf, true);
-            pieceTree.insertFixup(newLeaf);
-        } else if (offset == oldPiece.getLength()) {
-            // new piece after current leaf
-            RBTree.Node<Piece> newNode = pieceTree.createLeafNode(pieceToInsert);
-            pieceTree.addSiblingNode(node, newNode, false);
-            pieceTree.insertFixup(newNode);
-        } else {
-            RBTree.Node<Piece> newNode = pieceTree.createLeafNode(pieceToInsert);
-            pieceTree.splitLeafNode(node, newNode, offset);
-            pieceTree.insertFixup(newNode);
+    @Override
+    public String getText() {
+        StringBuilder sb = new StringBuilder(pieceTree.treeLength());
+        for (PieceTree.PieceIterator it = pieceTree.pieces(0); it.hasNext(); ) {
+            Piece piece = it.next();
+            piece.appendTo(sb, originalBuffer, addBuffer, 0, piece.getLength());
         }
+        return sb.toString();
     }
 
-    public void remove(int position, int length) {
-        if (length <= 0 || position < 0 || position >= totalLength) return;
+    public List<Piece> toPieceList() {
+        List<Piece> out = new ArrayList<>();
+        pieceTree.pieces(0).forEachRemaining(out::add);
+        return out;
+    }
 
-        if (position + length > totalLength) {
-            length = totalLength - position;  // trim to valid range
-        }
+    public int getTreeLength() { return pieceTree.treeLength(); }
 
-        removeHelper(position, length);
-        totalLength -= length;
+    @Override
+    public int getLength() { return getTreeLength(); }
+
+    /**
+     * Captures the piece list, which costs O(pieces). The original buffer and its newlines never change, and the
+     * add buffer and its newlines are only appended to, so the snapshot shares all of them as they are, however
+     * much text has been added.
+     */
+    @Override
+    public ReadOnlyDocument snapshot() {
+        return new Snapshot(originalBuffer, addBuffer.freeze(), originalNewlines, addNewlines.freeze(),
+                toPieceList(), totalLength);
+    }
 
-        rebuildLineCache();
+    @Override
+    public int getLineCount() {
+        int newlines = pieceTree.newlineCount();
+        return endsWithNewline() ? newlines : newlines + 1;
     }
 
-    private void removeHelper(int position, int removeLength) {
-        if (removeLength <= 0) throw new IllegalArgumentException("Illegal remove length: " + removeLength);
-        if (pieceTree.root == null) throw new IllegalStateException("Tree is empty");
+    private boolean endsWithNewline() {
+        if (totalLength == 0) return false;
+        PieceTree.PieceIterator it = pieceTree.pieces(totalLength - 1);
+        int offset = it.startOffset();
+        Piece last = it.next();
+        CharSequence buffer = (last.getSource() == Piece.BufferType.ORIGINAL) ? originalBuffer : addBuffer;
+        return buffer.charAt(last.getStart() + offset) == '\n';
+    }
 
-        Optional<PieceTree.NodeRange> result = pieceTree.findNodeAndRange(position, removeLength);
-        if (result.isEmpty()) {
-            throw new IndexOutOfBoundsException("Invalid deletion range: pos=" + position + ", len=" + removeLength);
-        }
+    @Override
+    public int getLineLength(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return lineEnd(lineIndex) - lineStart(lineIndex);
+    }
 
-        PieceTree.NodeOffset start = result.get().start();
-        PieceTree.NodeOffset end = result.get().end();
-
-        if (start.node() == end.node()) {
-            RBTree.Node<Piece> leaf = start.node();
-            Piece piece = leaf.payload;
-
-            int leftLen = start.offset();
-            int rightLen = piece.getLength() - end.offset();
-
-            if (leftLen > 0 && rightLen > 0) {
-                Piece leftPiece = new Piece(piece.getSource(), piece.getStart(), leftLen);
-                Piece rightPiece = new Piece(piece.getSource(), piece.getStart() + end.offset(), rightLen);
-
-                RBTree.Node<Piece> leftNode = pieceTree.createLeafNode(leftPiece);
-                RBTree.Node<Piece> rightNode = pieceTree.createLeafNode(rightPiece);
-                RBTree.Node<Piece> newParent = pieceTree.createInternalNode(leftNode, rightNode);
-
-                newParent.color = leaf.color;
-
-                pieceTree.replaceChild(leaf.parent, leaf, newParent);
-                return;
-            } else if (leftLen > 0) {
-                Piece leftPiece = new Piece(piece.getSource(), piece.getStart(), leftLen);
-                RBTree.Node<Piece> leftNode = pieceTree.createLeafNode(leftPiece);
-                pieceTree.recompute(leftNode);
-
-                leftNode.color = leaf.color;
-
-                pieceTree.replaceChild(leaf.parent, leaf, leftNode);
-                return;
-            } else if (rightLen > 0) {
-                Piece rightPiece = new Piece(piece.getSource(), piece.getStart() + end.offset(), rightLen);
-                RBTree.Node<Piece> rightNode = pieceTree.createLeafNode(rightPiece);
-                pieceTree.recompute(rightNode);
-
-                rightNode.color = leaf.color;
-
-                pieceTree.replaceChild(leaf.parent, leaf, rightNode);
-                return;
-            } else {
-                pieceTree.replaceChild(leaf.parent, leaf, null);
-                if (leaf.isBlack()) {
-                    RBTree.Node<Piece> problemNode = pieceTree.findNodeForFixup(leaf);
-                    if (problemNode != null) pieceTree.removeFixup(problemNode);
-                }
-                return;
-            }
-        }
-        // TODO:  create a version that grabs the interior nodes prior to trimming start and end nodes, and removes them
-        RBTree.Node<Piece> startLeaf = start.node();
-        RBTree.Node<Piece> endLeaf = end.node();
-
-        if (start.offset() < startLeaf.payload.getLength()) {
-            Piece leftPiece = new Piece(startLeaf.payload.getSource(), startLeaf.payload.getStart(), start.offset());
-            if (leftPiece.getLength() > 0) {
-                RBTree.Node<Piece> leftNode = pieceTree.createLeafNode(leftPiece);
-                pieceTree.replaceChild(startLeaf.parent, startLeaf, leftNode);
-                startLeaf = leftNode;
-            } else {
-                pieceTree.replaceChild(startLeaf.parent, startLeaf, null);
-            }
+    @Override
+    public int getLineStart(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return lineStart(lineIndex);
+    }
 
-        }
+    @Override
+    public int getLineIndex(int position) {
+        position = Math.max(0, Math.min(position, totalLength));
+        return Math.min(pieceTree.newlinesBefore(position), getLineCount() - 1);
+    }
 
-        int rightLen = endLeaf.payload.getLength() - end.offset();
-        if (rightLen > 0) {
-            Piece rightPiece = new Piece(endLeaf.payload.getSource(), endLeaf.payload.getStart() + end.offset(), rightLen);
-            RBTree.Node<Piece> rightNode = pieceTree.createLeafNode(rightPiece);
-            pieceTree.replaceChild(endLeaf.parent, endLeaf, rightNode);
-            endLeaf = rightNode;
-        } else {
-            pieceTree.replaceChild(endLeaf.parent, endLeaf, null);
-        }
+    @Override
+    public boolean isLastLine(int lineIndex) {
+        return lineIndex == getLineCount() - 1;
+    }
 
-        RBTree.Node<Piece> returnLeaf = pieceTree.removeBetweenLeaves(startLeaf, endLeaf);
-        pieceTree.bubbleRecompute(startLeaf);
-        pieceTree.bubbleRecompute(endLeaf);
-        if (returnLeaf.isBlack()) {
-            RBTree.Node<Piece> problemNode = pieceTree.findNodeForFixup(returnLeaf);
-            if (problemNode != null) pieceTree.removeFixup(problemNode);
-        }
+    @Override
+    public String getLine(int lineIndex) {
+        checkLineIndex(lineIndex);
+        int start = lineStart(lineIndex);
+        return copyRange(start, lineEnd(lineIndex) - start);
     }
 
-    public String getText() {
-        StringBuilder sb = new StringBuilder(pieceTree.treeLength());
-        getTextHelper(pieceTree.root, sb);
-        return sb.toString();
+    private int lineStart(int lineIndex) {
+        return (lineIndex == 0) ? 0 : pieceTree.newlineOffset(lineIndex) + 1;
     }
 
-    private void getTextHelper(RBTree.Node<Piece> node, StringBuilder stringBuilder) {
-        if (node == null) {return;}
-        if (node.isLeaf()) {
-            String text = node.payload.getText(originalBuffer, addBuffer);
-            stringBuilder.append(text);
-        } else {
-            getTextHelper(node.left, stringBuilder);
-            getTextHelper(node.right, stringBuilder);
-        }
+    private int lineEnd(int lineIndex) {
+        return (lineIndex < pieceTree.newlineCount()) ? pieceTree.newlineOffset(lineIndex + 1) + 1 : totalLength;
     }
 
-    private void collectPieces(RBTree.Node<Piece> node, List<Piece> out) {
-        if (node == null) return;
-        if (node.isLeaf()) out.add(node.payload);
-        else {
-            collectPieces(node.left, out);
-            collectPieces(node.right, out);
+    private void checkLineIndex(int lineIndex) {
+        if (lineIndex < 0 || lineIndex >= getLineCount()) {
+            throw new IndexOutOfBoundsException("Line index out of bounds: " + lineIndex);
         }
     }
-    public List<Piece> toPieceList() {
-        List<Piece> out = new ArrayList<>();
-        collectPieces(pieceTree.root, out);
-        return out;
-    }
 
-    public int getTreeLength() { return pieceTree.treeLength(); }
+    @Override
+    public String getText(int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(end, totalLength);
+        return (start >= end) ? "" : copyRange(start, end - start);
+    }
 
-    private void rebuildLineCache() {
-        List<Piece> pieces = toPieceList();
-        lineCache.clear();
-        if (pieces.isEmpty()) {
-            lineCache.add(new Line(0, 0, 0));
-            return;
+    @Override
+    public void appendText(int start, int end, StringBuilder out) {
+        start = Math.max(0, start);
+        end = Math.min(end, totalLength);
+        if (start >= end) return;
+
+        int remainingLength = end - start;
+        PieceTree.PieceIterator it = pieceTree.pieces(start);
+        int offsetInPiece = it.startOffset();
+        while (remainingLength > 0 && it.hasNext()) {
+            Piece p = it.next();
+            int charsToRead = Math.min(remainingLength, p.getLength() - offsetInPiece);
+            p.appendTo(out, originalBuffer, addBuffer, offsetInPiece, offsetInPiece + charsToRead);
+            remainingLength -= charsToRead;
+            offsetInPiece = 0;
         }
+    }
 
-        int currentLineStartPiece = 0;
-        int currentLineStartOffset = 0;
-        int currentLineLength = 0;
+    private String copyRange(int start, int length) {
+        if (length == 0) return "";
 
-        for (int pieceIndex = 0; pieceIndex < pieces.size(); pieceIndex++) {
-            Piece piece = pieces.get(pieceIndex);
-            List<Integer> lineStarts = piece.getLineStarts(originalBuffer, addBuffer);
+        StringBuilder builder = new StringBuilder(length);
+        appendText(start, start + length, builder);
+        return builder.toString();
+    }
 
-            if (lineStarts.size() <= 1) {
-                currentLineLength += piece.getLength();
-            } else {
-                for (int i = 1; i < lineStarts.size(); i++) {
-                    int lineStartInPiece = (i == 1) ? 0 : lineStarts.get(i - 1);
-                    int lineEndInPiece = lineStarts.get(i) - 1;
-                    int segmentLength = lineEndInPiece - lineStartInPiece + 1;
+    private static final class Snapshot implements ReadOnlyDocument {
+        private final String originalBuffer;
+        private final AddBuffer addBuffer;
+        private final NewlineIndex originalNewlines;
+        private final NewlineIndex addNewlines;
+        private final Piece[] pieces;
+        private final int[] pieceStarts;
+        // newlines in the pieces before each piece
+        private final int[] newlinesBefore;
+        private final int newlineCount;
+        private final int lineCount;
+        private final int length;
+
+        Snapshot(String originalBuffer, AddBuffer addBuffer, NewlineIndex originalNewlines, NewlineIndex addNewlines,
+                 List<Piece> pieces, int length) {
+            this.originalBuffer = originalBuffer;
+            this.addBuffer = addBuffer;
+            this.originalNewlines = originalNewlines;
+            this.addNewlines = addNewlines;
+            this.pieces = pieces.toArray(new Piece[0]);
+            this.pieceStarts = new int[this.pieces.length];
+            this.newlinesBefore = new int[this.pieces.length];
+            this.length = length;
+
+            int offset = 0;
+            int newlines = 0;
+            for (int i = 0; i < this.pieces.length; i++) {
+                pieceStarts[i] = offset;
+                newlinesBefore[i] = newlines;
+                offset += this.pieces[i].getLength();
+                newlines += this.pieces[i].newlineCount(newlinesOf(this.pieces[i]));
+            }
+            this.newlineCount = newlines;
+            boolean endsWithNewline = length > 0 && getText(length - 1, length).charAt(0) == '\n';
+            this.lineCount = endsWithNewline ? newlines : newlines + 1;
+        }
 
-                    currentLineLength += segmentLength;
+        private NewlineIndex newlinesOf(Piece piece) {
+            return (piece.getSource() == Piece.BufferType.ORIGINAL) ? originalNewlines : addNewlines;
+        }
 
-                    lineCache.add(new Line(currentLineStartPiece, currentLineStartOffset, currentLineLength));
+        @Override
+        public int getLength() {return length;}
 
-                    currentLineStartPiece = pieceIndex;
-                    currentLineStartOffset = lineStarts.get(i);
-                    currentLineLength = 0;
+        @Override
+        public String getText() {
+            StringBuilder sb = new StringBuilder(length);
+            for (Piece piece : pieces) piece.appendTo(sb, originalBuffer, addBuffer, 0, piece.getLength());
+            return sb.toString();
+        }
 
-                }
+        @Override
+        public int getLineCount() {return lineCount;}
 
-                int lastNewlinePos = lineStarts.getLast();
-                if (lastNewlinePos < piece.getLength()) {
-                    currentLineLength += piece.getLength() - lastNewlinePos;
-                }
-            }
+        @Override
+        public String getLine(int lineIndex) {
+            int start = getLineStart(lineIndex);
+            return copyRange(start, lineEnd(lineIndex) - start);
         }
-        if (currentLineLength > 0 || lineCache.isEmpty()) {
-            lineCache.add(new Line(currentLineStartPiece, currentLineStartOffset, currentLineLength));
-        }
-    }
 
-    public int getLineCount() {
-        return this.lineCache.size();
-    }
+        @Override
+        public String getText(int start, int end) {
+            start = Math.max(0, start);
+            end = Math.min(end, length);
+            return (start >= end) ? "" : copyRange(start, end - start);
+        }
 
-    public int getLineLength(int lineIndex) {
-        return getLine(lineIndex).length();
-    }
+        @Override
+        public void appendText(int start, int end, StringBuilder out) {
+            start = Math.max(0, start);
+            end = Math.min(end, length);
+            if (start >= end) return;
+
+            int pieceIndex = pieceAt(start);
+            int offsetInPiece = start - pieceStarts[pieceIndex];
+            int remainingLength = end - start;
+            while (remainingLength > 0 && pieceIndex < pieces.length) {
+                Piece p = pieces[pieceIndex++];
+                int charsToRead = Math.min(remainingLength, p.getLength() - offsetInPiece);
+                p.appendTo(out, originalBuffer, addBuffer, offsetInPiece, offsetInPiece + charsToRead);
+                remainingLength -= charsToRead;
+                offsetInPiece = 0;
+            }
+        }
 
-    public boolean isLastLine(int lineIndex) {
-        return lineIndex == getLineCount() - 1;
-    }
+        private int pieceAt(int position) {
+            int pieceIndex = Arrays.binarySearch(pieceStarts, position);
+            return (pieceIndex < 0) ? -pieceIndex - 2 : pieceIndex;
+        }
 
-    public String getLine(int lineIndex) {
-        List<Piece> pieces = toPieceList();
-        if (lineIndex < 0 || lineIndex >= lineCache.size()) {
-            throw new IndexOutOfBoundsException("Line index out of bounds: " + lineIndex);
+        private String copyRange(int start, int length) {
+            StringBuilder builder = new StringBuilder(length);
+            appendText(start, start + length, builder);
+            return builder.toString();
         }
 
-        Line lineInfo = lineCache.get(lineIndex);
-        if (lineInfo.length == 0) return "";
+        @Override
+        public int getLineLength(int lineIndex) {
+            return lineEnd(lineIndex) - getLineStart(lineIndex);
+        }
 
-        StringBuilder lineBuilder = new StringBuilder(lineInfo.length);
-        int remainingLength = lineInfo.length;
-        int currentPieceIndex = lineInfo.startPieceIndex;
-        int offsetInPiece = lineInfo.startOffsetInPiece;
+        @Override
+        public int getLineStart(int lineIndex) {
+            if (lineIndex < 0 || lineIndex >= lineCount) {
+                throw new IndexOutOfBoundsException("Line index out of bounds: " + lineIndex);
+            }
+            return (lineIndex == 0) ? 0 : newlineOffset(lineIndex) + 1;
+        }
 
-        while (remainingLength > 0 && currentPieceIndex < pieces.size()) {
-            Piece p = pieces.get(currentPieceIndex);
-            String bufferContent = (p.getSource() == Piece.BufferType.ORIGINAL) ? originalBuffer : addBuffer.toString();
-            int charsToRead = Math.min(remainingLength, p.getLength() - offsetInPiece);
+        @Override
+        public int getLineIndex(int position) {
+            position = Math.max(0, Math.min(position, length));
+            if (position == length) return lineCount - 1;
+            int pieceIndex = pieceAt(position);
+            Piece piece = pieces[pieceIndex];
+            int newlines = newlinesBefore[pieceIndex]
+                    + piece.newlinesBefore(newlinesOf(piece), position - pieceStarts[pieceIndex]);
+            return Math.min(newlines, lineCount - 1);
+        }
 
-            lineBuilder.append(bufferContent, p.getStart() + offsetInPiece, p.getStart() + offsetInPiece + charsToRead);
+        private int lineEnd(int lineIndex) {
+            return (lineIndex < newlineCount) ? newlineOffset(lineIndex + 1) + 1 : length;
+        }
 
-            remainingLength -= charsToRead;
-            currentPieceIndex++;
-            offsetInPiece = 0;
+        /** Document offset of the {@code n}-th newline (1-based). */
+        private int newlineOffset(int n) {
+            // last piece with fewer than n newlines before it
+            int low = 0, high = pieces.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (newlinesBefore[mid] < n) low = mid;
+                else high = mid - 1;
+            }
+            Piece piece = pieces[low];
+            return pieceStarts[low] + piece.newlineOffset(newlinesOf(piece), n - newlinesBefore[low]);
         }
-        return lineBuilder.toString();
     }
 }
-
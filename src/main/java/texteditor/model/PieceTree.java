@@ -1,11 +1,21 @@
 package texteditor.model;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Optional;
 
+/**
+ * Red-black tree of pieces in document order. Every node knows the length and the number of newlines under it, so
+ * both offsets and line numbers are found in one descent.
+ */
 public class PieceTree extends RBTree<Piece> {
+    private final NodeCursor lookupCursor = new NodeCursor();
+    private final RangeCursor rangeCursor = new RangeCursor();
+    // newlines of each buffer, for counting a piece's; null counts none
+    private final NewlineIndex originalNewlines;
+    private final NewlineIndex addNewlines;
 
     protected static class PieceNode extends Node<Piece> {
         int newlineCount;
@@ -14,6 +24,7 @@ public class PieceTree extends RBTree<Piece> {
     }
 
     public PieceTree(Piece initial) {
+        this(null, null);
         if (initial != null) {
             this.root = createLeafNode(initial);
             this.root.color = Color.BLACK;
@@ -21,6 +32,12 @@ public class PieceTree extends RBTree<Piece> {
     }
     public PieceTree() {this(null);}
 
+    /** Empty tree that counts newlines with the indexes of the buffers its pieces point into. */
+    PieceTree(NewlineIndex originalNewlines, NewlineIndex addNewlines) {
+        this.originalNewlines = originalNewlines;
+        this.addNewlines = addNewlines;
+    }
+
     protected void setRoot(Node<Piece> node) {
         this.root = node;
         this.root.color = Color.BLACK;
@@ -43,63 +60,160 @@ public class PieceTree extends RBTree<Piece> {
     protected void recompute(Node<Piece> node) {
         if (node == null) return;
 
+        PieceNode pieceNode = (PieceNode) node;
         if (node.isLeaf()) {
             node.length = (node.payload != null) ? node.payload.getLength() : 0;
+            NewlineIndex newlines = newlinesOf(node.payload);
+            pieceNode.newlineCount = (newlines != null) ? node.payload.newlineCount(newlines) : 0;
         } else {
             int leftLen = (node.left != null) ? node.left.length : 0;
             int rightLen = (node.right != null) ? node.right.length : 0;
             node.length = leftLen + rightLen;
+            pieceNode.newlineCount = newlineCount(node.left) + newlineCount(node.right);
         }
     }
-    @Override
-    protected int payloadLength(Piece piece) {
-        return (piece != null) ? piece.getLength() : 0;
-    }
 
-    void addSiblingNode(Node<Piece> oldNode, Node<Piece> newNode, boolean newOnLeft) {
-        Node<Piece> grandparent = oldNode.parent; // this was originally the parent of the node that needs a sibling
+    private NewlineIndex newlinesOf(Piece piece) {
+        if (piece == null) return null;
+        return (piece.getSource() == Piece.BufferType.ORIGINAL) ? originalNewlines : addNewlines;
+    }
 
-        newNode.color = Color.RED;
-        Color newParentColor = oldNode.color;
-        oldNode.color = Color.RED;
+    private static int newlineCount(Node<Piece> node) {
+        return (node != null) ? ((PieceNode) node).newlineCount : 0;
+    }
 
+    /** Newlines in the whole document. */
+    int newlineCount() {
+        return newlineCount(root);
+    }
 
-        Node<Piece> newParent = newOnLeft ? createInternalNode(newNode, oldNode) : createInternalNode(oldNode, newNode);
-        newParent.color = newParentColor;
-        replaceChild(grandparent, oldNode, newParent);
+    /** Document offset of the {@code n}-th newline (1-based). */
+    int newlineOffset(int n) {
+        if (n < 1 || n > newlineCount()) throw new IndexOutOfBoundsException("No newline " + n);
+        Node<Piece> node = root;
+        int offset = 0;
+        while (!node.isLeaf()) {
+            int leftNewlines = newlineCount(node.left);
+            if (n <= leftNewlines) {
+                node = node.left;
+            } else {
+                n -= leftNewlines;
+                offset += (node.left != null) ? node.left.length : 0;
+                node = node.right;
+            }
+        }
+        return offset + node.payload.newlineOffset(newlinesOf(node.payload), n);
     }
 
-    void splitLeafNode(Node<Piece> oldNode, Node<Piece> newNode, int offset) {
-        Node<Piece> grandparent = oldNode.parent;
+    /** Number of newlines in the first {@code position} characters. */
+    int newlinesBefore(int position) {
+        if (root == null || position <= 0) return 0;
+        if (position >= treeLength()) return newlineCount();
+        Node<Piece> node = root;
+        int count = 0;
+        while (!node.isLeaf()) {
+            int leftLen = (node.left != null) ? node.left.length : 0;
+            if (position < leftLen) {
+                node = node.left;
+            } else {
+                position -= leftLen;
+                count += newlineCount(node.left);
+                node = node.right;
+            }
+        }
+        return count + node.payload.newlinesBefore(newlinesOf(node.payload), position);
+    }
+    @Override
+    protected int payloadLength(Piece piece) {
+        return (piece != null) ? piece.getLength() : 0;
+    }
 
-        Piece oldPiece = oldNode.payload;
-        int oldLength = oldPiece.getLength();
+    /**
+     * Swaps the piece held by a leaf in place, keeping the node, its links and its colour.
+     */
+    void setPayload(Node<Piece> leaf, Piece piece) {
+        leaf.payload = piece;
+        bubbleRecompute(leaf);
+    }
 
-        Piece leftPiece = new Piece(oldPiece.getSource(), oldPiece.getStart(), offset);
-        Piece rightPiece = new Piece(oldPiece.getSource(), oldPiece.getStart() + offset, oldLength - offset);
+    /**
+     * Mutable result of a position lookup. A cursor is meant to be reused across lookups so that
+     * descending the tree does not allocate on the edit path.
+     */
+    static final class NodeCursor {
+        Node<Piece> node;
+        int offset;
+
+        void set(Node<Piece> node, int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
 
-        Node<Piece>leftNode = createLeafNode(leftPiece);
-        Node<Piece> rightNode = createLeafNode(rightPiece);
+        void clear() {set(null, 0);}
+    }
 
-        leftNode.color = Color.RED;
-        rightNode.color = Color.RED;
-        newNode.color = Color.RED;
+    /**
+     * Mutable result of a range lookup, holding the leaf and offset for both ends of the range.
+     */
+    static final class RangeCursor {
+        final NodeCursor start = new NodeCursor();
+        final NodeCursor end = new NodeCursor();
 
-        Node<Piece> rightSubTree = createInternalNode(newNode, rightNode);
-        rightSubTree.color = Color.RED;
+        void clear() {
+            start.clear();
+            end.clear();
+        }
+    }
 
-        Node<Piece> newParent = createInternalNode(leftNode, rightSubTree);
-        newParent.color = oldNode.color;
-        replaceChild(grandparent, oldNode, newParent);
+    /**
+     * Finds the leaf containing {@code position} and the offset inside that leaf.
+     * @return false if the tree is empty, in which case the cursor is cleared
+     */
+    boolean seek(int position, NodeCursor cursor) {
+        if (root == null) {
+            cursor.clear();
+            return false;
+        }
+        position = Math.min(treeLength(), Math.max(position, 0));
+        descend(root, position, cursor);
+        return true;
     }
 
-    record NodeOffset(Node<Piece> node, int offset) {}
-    Optional<NodeOffset> findNodeAndOffset(int position) {
-        if (root == null) return Optional.empty();
+    /**
+     * Finds both ends of {@code [position, position + length)} in a single descent: both ends walk the shared
+     * path together and only branch apart at the node where they stop agreeing.
+     * @return false if the tree is empty or the range is invalid, in which case the cursor is cleared
+     */
+    boolean seekRange(int position, int length, RangeCursor cursor) {
+        int treeLen = treeLength();
+        if (root == null || length <= 0 || position < 0 || position >= treeLen) {
+            cursor.clear();
+            return false;
+        }
+
+        int startPos = position;
+        int endPos = Math.min(treeLen, position + length);
+
         Node<Piece> node = root;
+        while (!Objects.requireNonNull(node).isLeaf()) {
+            int leftLen = (node.left != null) ? node.left.length : 0;
+            boolean startLeft = startPos < leftLen;
+            if (startLeft != (endPos < leftLen)) break;
 
-        position = Math.min(treeLength(), Math.max(position, 0));
+            if (startLeft) {
+                node = node.left;
+            } else {
+                startPos -= leftLen;
+                endPos -= leftLen;
+                node = node.right;
+            }
+        }
+        descend(node, startPos, cursor.start);
+        descend(node, endPos, cursor.end);
+        return true;
+    }
 
+    private void descend(Node<Piece> node, int position, NodeCursor cursor) {
         while (!Objects.requireNonNull(node).isLeaf()) {
             int leftLen = (node.left != null) ? node.left.length : 0;
             if (position < leftLen) {
@@ -109,194 +223,130 @@ public class PieceTree extends RBTree<Piece> {
                 node = node.right;
             }
         }
-        return Optional.of(new NodeOffset(node, position));
+        cursor.set(node, position);
     }
 
     @Override
-    protected Node<Piece> insertRecursive(int position, Piece pieceToInsert) {
-        Optional<NodeOffset> result = findNodeAndOffset(position);
-
-        if (result.isEmpty()) {
-            this.root = createLeafNode(pieceToInsert);
-            this.root.color = Color.BLACK;
-            return this.root;
+    protected void insertRecursive(int position, Piece pieceToInsert) {
+        if (!seek(position, lookupCursor)) {
+            setRoot(createLeafNode(pieceToInsert));
+            return;
         }
 
-        NodeOffset nodeAndOffset = result.get();
-        Node <Piece> node = nodeAndOffset.node;
-        int offset = nodeAndOffset.offset;
+        Node<Piece> node = lookupCursor.node;
+        int offset = lookupCursor.offset;
+        lookupCursor.clear();
 
         Piece old = node.payload;
         int oldLen = old.getLength();
+        Node<Piece> newLeaf = createLeafNode(pieceToInsert);
         if (offset == 0) {
-            Node<Piece> newLeaf = createLeafNode(pieceToInsert);
-            addSiblingNode(node, newLeaf, true);
-            return newLeaf;
+            insertLeaf(node, newLeaf, true);
         } else if (offset == oldLen) {
             // new piece after current leaf
-            Node<Piece> newNode = createLeafNode(pieceToInsert);
-            addSiblingNode(node, newNode, false);
-            return newNode;
+            insertLeaf(node, newLeaf, false);
         } else {
-            Node<Piece> newNode = createLeafNode(pieceToInsert);
-            splitLeafNode(node, newNode, offset);
-            return newNode;
+            // split: the old leaf keeps the left part, the right part and the new piece follow it
+            setPayload(node, new Piece(old.getSource(), old.getStart(), offset));
+            insertLeaf(node, createLeafNode(new Piece(old.getSource(), old.getStart() + offset, oldLen - offset)), false);
+            insertLeaf(node, newLeaf, false);
         }
     }
 
-    record NodeRange(NodeOffset start, NodeOffset end) {}
-    Optional<NodeRange> findNodeAndRange(int position, int removeLength) {
-        if (root == null || removeLength <= 0) return Optional.empty();
-
-        int treeLen = treeLength();
-        if (position < 0 || position >= treeLen) return Optional.empty();
-
-        int startPos = Math.max(0, position);
-        int endPos = Math.min(treeLength(), position + removeLength);
-
-        NodeOffset start = findNodeAndOffset(startPos).orElse(null);
-        NodeOffset end = findNodeAndOffset(endPos).orElse(null);
-
-        return (start != null && end != null) ? Optional.of(new NodeRange(start, end)) : Optional.empty();
-    }
-
     @Override
-    protected Optional<Node<Piece>> removeRecursive(int position, int removeLength) {
+    protected void removeRecursive(int position, int removeLength) {
         if (removeLength <= 0) throw new IllegalArgumentException("Illegal remove length: " + removeLength);
         if (root == null) throw new IllegalStateException("Tree is empty");
 
-        Optional<NodeRange> result = findNodeAndRange(position, removeLength);
-        if (result.isEmpty()) {
+        if (!seekRange(position, removeLength, rangeCursor)) {
             throw new IndexOutOfBoundsException("Invalid deletion range: pos=" + position + ", len=" + removeLength);
         }
 
-        NodeOffset start = result.get().start();
-        NodeOffset end = result.get().end();
+        Node<Piece> startLeaf = rangeCursor.start.node;
+        int startOffset = rangeCursor.start.offset;
+        Node<Piece> endLeaf = rangeCursor.end.node;
+        int endOffset = rangeCursor.end.offset;
+        rangeCursor.clear();
 
-        if (start.node() == end.node()) {
-            Node<Piece> leaf = start.node;
-            Piece piece = leaf.payload;
+        if (startLeaf == endLeaf) {
+            Piece piece = startLeaf.payload;
 
-            int leftLen = start.offset();
-            int rightLen = piece.getLength() - end.offset();
+            int leftLen = startOffset;
+            int rightLen = piece.getLength() - endOffset;
+            Piece rightPiece = new Piece(piece.getSource(), piece.getStart() + endOffset, rightLen);
 
             if (leftLen > 0 && rightLen > 0) {
-                Piece leftPiece = new Piece(piece.getSource(), piece.getStart(), leftLen);
-                Piece rightPiece = new Piece(piece.getSource(), piece.getStart() + end.offset(), rightLen);
-
-                Node<Piece> leftNode = createLeafNode(leftPiece);
-                Node<Piece> rightNode = createLeafNode(rightPiece);
-                Node<Piece> newParent = createInternalNode(leftNode, rightNode);
-
-                newParent.color = leaf.color;
-
-                replaceChild(leaf.parent, leaf, newParent);
-                return Optional.empty();
+                setPayload(startLeaf, new Piece(piece.getSource(), piece.getStart(), leftLen));
+                insertLeaf(startLeaf, createLeafNode(rightPiece), false);
             } else if (leftLen > 0) {
-                Piece leftPiece = new Piece(piece.getSource(), piece.getStart(), leftLen);
-                Node<Piece> leftNode = createLeafNode(leftPiece);
-                recompute(leftNode);
-
-                leftNode.color = leaf.color;
-
-                replaceChild(leaf.parent, leaf, leftNode);
-                return Optional.empty();
-
+                setPayload(startLeaf, new Piece(piece.getSource(), piece.getStart(), leftLen));
             } else if (rightLen > 0) {
-                Piece rightPiece = new Piece(piece.getSource(), piece.getStart() + end.offset(), rightLen);
-                Node<Piece> rightNode = createLeafNode(rightPiece);
-                recompute(rightNode);
-
-                rightNode.color = leaf.color;
-
-                replaceChild(leaf.parent, leaf, rightNode);
-                return Optional.empty();
+                setPayload(startLeaf, rightPiece);
             } else {
-                replaceChild(leaf.parent, leaf, null);
-                return Optional.of(leaf);
+                removeLeaf(startLeaf);
             }
+            return;
         }
-        // TODO:  create a version that grabs the interior nodes prior to trimming start and end nodes, and removes them
-        Node<Piece> startLeaf = start.node();
-        Node<Piece> endLeaf = end.node();
-
-        if (start.offset < startLeaf.payload.getLength()) {
-            Piece leftPiece = new Piece(startLeaf.payload.getSource(), startLeaf.payload.getStart(), start.offset());
-            if (leftPiece.getLength() > 0) {
-                Node<Piece> leftNode = createLeafNode(leftPiece);
-                replaceChild(startLeaf.parent, startLeaf, leftNode);
-                startLeaf = leftNode;
-            } else {
-                replaceChild(startLeaf.parent, startLeaf, null);
-            }
 
+        // interior leaves go first, walking the leaf links; the end leaf may be the one after the range
+        Node<Piece> curLeaf = startLeaf.nextLeaf;
+        while (curLeaf != endLeaf) {
+            Node<Piece> nextLeaf = curLeaf.nextLeaf;
+            removeLeaf(curLeaf);
+            curLeaf = nextLeaf;
         }
 
-        int rightLen = endLeaf.payload.getLength() - end.offset();
-        if (rightLen > 0) {
-            Piece rightPiece = new Piece(endLeaf.payload.getSource(), endLeaf.payload.getStart() + end.offset(), rightLen);
-            Node<Piece> rightNode = createLeafNode(rightPiece);
-            replaceChild(endLeaf.parent, endLeaf, rightNode);
-            endLeaf = rightNode;
-        } else {
-            replaceChild(endLeaf.parent, endLeaf, null);
+        Piece endPiece = endLeaf.payload;
+        int rightLen = endPiece.getLength() - endOffset;
+        if (rightLen == 0) {
+            removeLeaf(endLeaf);
+        } else if (endOffset > 0) {
+            setPayload(endLeaf, new Piece(endPiece.getSource(), endPiece.getStart() + endOffset, rightLen));
         }
 
-        Node<Piece> returnLeaf = removeBetweenLeaves(startLeaf, endLeaf);
-        bubbleRecompute(startLeaf);
-        bubbleRecompute(endLeaf);
-        return Optional.of(returnLeaf);
-
-    }
-
-    Node<Piece> removeBetweenLeaves(Node<Piece> startLeaf, Node<Piece> endLeaf) {
-        if (startLeaf == null || endLeaf == null) throw new IllegalArgumentException("Illegal remove between leaves");
-
-        Node<Piece> curLeaf = nextLeaf(startLeaf);
-        if (curLeaf == null || curLeaf == endLeaf) return startLeaf;
-
-        while (curLeaf != null && curLeaf != endLeaf) {
-            Node<Piece> nextLeaf = nextLeaf(curLeaf);
-
-            Node<Piece> removedLeaf = curLeaf;
-            Node<Piece> parent = removedLeaf.parent;
-            replaceChild(parent, removedLeaf, null);
-
-            if (removedLeaf.isBlack()) {
-                Node<Piece> problemNode = findNodeForFixup(removedLeaf);
-                if (problemNode != null) removeFixup(problemNode);
-            }
-            curLeaf = nextLeaf;
+        Piece startPiece = startLeaf.payload;
+        if (startOffset == 0) {
+            removeLeaf(startLeaf);
+        } else {
+            setPayload(startLeaf, new Piece(startPiece.getSource(), startPiece.getStart(), startOffset));
         }
-        return startLeaf;
     }
 
-    private Node<Piece> leftmost(Node<Piece> node) {
-        Node<Piece> cur = node;
-        while (cur != null && !cur.isLeaf()) {
-            cur = cur.left;
+    /**
+     * Returns an iterator over the pieces from the one containing {@code position} to the end of the document.
+     * Positioning costs one descent; every step after that follows the leaf links.
+     */
+    PieceIterator pieces(int position) {
+        PieceIterator iterator = new PieceIterator();
+        if (seek(position, lookupCursor)) {
+            iterator.reset(lookupCursor.node, lookupCursor.offset);
         }
-        return cur;
+        lookupCursor.clear();
+        return iterator;
     }
 
-    private Node<Piece> nextLeaf(Node<Piece> leaf) {
-        if (leaf == null) return null;
+    static final class PieceIterator implements Iterator<Piece> {
+        private Node<Piece> next;
+        private int startOffset;
+
+        void reset(Node<Piece> leaf, int offset) {
+            this.next = leaf;
+            this.startOffset = offset;
+        }
 
-        Node<Piece> p = leaf.parent;
-        if (p == null) return null;
+        /** Offset of the requested position inside the first piece returned. */
+        int startOffset() {return startOffset;}
 
-        // get the right sibling of the current left node
-        if (p.left == leaf) return leftmost(p.right);
+        @Override
+        public boolean hasNext() {return next != null;}
 
-        // traverse up the tree until the next leaf node is found
-        Node<Piece> cur = leaf;
-        Node<Piece> anc = p;
-        while (anc != null && anc.right == cur) {
-            cur = anc;
-            anc = anc.parent;
+        @Override
+        public Piece next() {
+            if (next == null) throw new NoSuchElementException();
+            Piece piece = next.payload;
+            next = next.nextLeaf;
+            return piece;
         }
-        if (anc == null) return null;
-        return leftmost(anc.right);
     }
 
     public boolean isValidRedBlack() {
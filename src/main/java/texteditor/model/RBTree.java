@@ -1,13 +1,13 @@
 package texteditor.model;
 
-import java.util.Optional;
-
 public abstract class RBTree<T> {
     enum Color {RED, BLACK}
 
     protected static class Node<T> {
         T payload;
         Node<T> left, right, parent;
+        // in-order neighbours, only maintained on leaves
+        Node<T> prevLeaf, nextLeaf;
         int length;
         Color color;
 
@@ -85,7 +85,7 @@ public abstract class RBTree<T> {
     }
 
     protected void replaceChild(Node<T> parent, Node<T> oldChild, Node<T> newChild) {
-        if (parent == newChild) {
+        if (parent != null && parent == newChild) {
             throw new IllegalStateException("Attempted to set parent as its own child");
         }
         if (parent == null) {
@@ -98,9 +98,37 @@ public abstract class RBTree<T> {
         }
 
         if (newChild != null) newChild.parent = parent;
+        if (oldChild != null && oldChild.isLeaf()) relinkLeaves(oldChild, newChild);
         bubbleRecompute(newChild != null ? newChild : parent);
     }
 
+    /**
+     * Splices the leaves of {@code replacement} into the leaf chain in place of {@code oldLeaf}.
+     * The old leaf keeps its own links so callers can still walk forward from a detached leaf.
+     * Rotations never change the in-order sequence of leaves, so this is the only place links change.
+     */
+    private void relinkLeaves(Node<T> oldLeaf, Node<T> replacement) {
+        Node<T> prev = oldLeaf.prevLeaf;
+        Node<T> next = oldLeaf.nextLeaf;
+        Node<T> last = threadLeaves(replacement, prev);
+        linkLeaves(last, next);
+    }
+
+    private Node<T> threadLeaves(Node<T> node, Node<T> prev) {
+        if (node == null) return prev;
+        if (node.isLeaf()) {
+            linkLeaves(prev, node);
+            return node;
+        }
+        Node<T> last = threadLeaves(node.left, prev);
+        return threadLeaves(node.right, last);
+    }
+
+    private static <T> void linkLeaves(Node<T> left, Node<T> right) {
+        if (left != null) left.nextLeaf = right;
+        if (right != null) right.prevLeaf = left;
+    }
+
     protected void rotateLeft(Node<T> x) {
         if (x == null || x.right == null) return;
         Node<T> y = x.right;
@@ -146,7 +174,11 @@ public abstract class RBTree<T> {
         bubbleRecompute(y.parent);
     }
 
-    protected abstract Node<T> insertRecursive(int position, T payload);
+    /**
+     * Inserts {@code payload} at {@code position} in a non-empty tree. Implementations splice leaves with {@link #insertLeaf}
+     * and {@link #removeLeaf}, which keep the red-black invariants themselves.
+     */
+    protected abstract void insertRecursive(int position, T payload);
 
     protected void insertFixup(Node<T> node) {
         while (node != null && node.parent != null && node.parent.isRed()) {
@@ -214,43 +246,52 @@ public abstract class RBTree<T> {
         if (position > treeLength) position = treeLength;
 
         if (root == null) {
-            root = new Node<>(payload);
+            root = createLeafNode(payload);
             root.color = Color.BLACK;
-            recompute(root);
             return;
         }
 
-        Node<T> insertedNode = insertRecursive(position, payload);
-
-        insertFixup(insertedNode);
+        insertRecursive(position, payload);
     }
 
-    protected abstract Optional<Node<T>> removeRecursive(int position, int removeLength);
+    /**
+     * Places {@code newLeaf} directly before or after {@code leaf}. Both leaves hang off a new red joint that
+     * takes the old leaf's place, so black heights are unchanged and only a red-red fixup can be needed.
+     */
+    protected void insertLeaf(Node<T> leaf, Node<T> newLeaf, boolean before) {
+        Node<T> parent = leaf.parent;
+        leaf.color = Color.BLACK;
+        newLeaf.color = Color.BLACK;
+
+        Node<T> joint = before ? createInternalNode(newLeaf, leaf) : createInternalNode(leaf, newLeaf);
+        joint.color = Color.RED;
+        replaceChild(parent, leaf, joint);
+        insertFixup(joint);
+    }
 
-    protected Node<T> findNodeForFixup(Node<T> removedNode) {
-        // The removed node's parent should now point to whatever replaced it
-        Node<T> parent = removedNode.parent;
+    /**
+     * Detaches {@code leaf} and lets its sibling take the parent's place. Leaves are always black, so a black
+     * height is only lost when the removed parent was black as well.
+     */
+    protected void removeLeaf(Node<T> leaf) {
+        Node<T> parent = leaf.parent;
         if (parent == null) {
-            // Root was removed, new root (if any) is the replacement
-            return root;
+            replaceChild(null, leaf, null);
+            return;
         }
-        // Find what's now in the removed node's position
-        if (parent.left == null && parent.right == null) {
-            // Parent became a leaf, so nothing replaced the removed node
-            // The parent itself needs to be treated as having a "null child" problem
-            return parent;
-        } else if (parent.left == null) {
-            // Left child was removed, right child might be the replacement
-            return parent.right;
-        } else if (parent.right == null) {
-            // Right child was removed, left child might be the replacement
-            return parent.left;
+
+        Node<T> sibling = (parent.left == leaf) ? parent.right : parent.left;
+        linkLeaves(leaf.prevLeaf, leaf.nextLeaf);
+        replaceChild(parent.parent, parent, sibling);
+
+        if (parent.isBlack()) {
+            if (sibling.isRed()) sibling.color = Color.BLACK;
+            else removeFixup(sibling);
         }
-        // Both children still exist, so an internal restructuring happened
-        // In this case, no single node replacement occurred
-        return null;
     }
 
+    protected abstract void removeRecursive(int position, int removeLength);
+
     protected void removeFixup(Node<T> problemNode) {
         if (problemNode == null) {
             throw new IllegalArgumentException("Node not found");
@@ -326,12 +367,6 @@ public abstract class RBTree<T> {
             removeLength = treeLength - position; // trim to valid range
         }
 
-        Optional<Node<T>> resultNode = removeRecursive(position, removeLength);
-        if (!resultNode.isEmpty() && resultNode.get().isBlack()) {
-            Node<T> problemNode = findNodeForFixup(resultNode.get());
-            if (problemNode != null) {
-                removeFixup(problemNode);
-            }
-        }
+        removeRecursive(position, removeLength);
     }
 }
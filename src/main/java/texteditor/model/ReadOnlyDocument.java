@@ -0,0 +1,73 @@
+package texteditor.model;
+
+/**
+ * Read access to document text. Lines keep their trailing newline, and a document that ends in a newline does
+ * not get an extra empty line after it; an empty document still has one empty line.
+ */
+public interface ReadOnlyDocument {
+
+    int getLength();
+
+    String getText();
+
+    /**
+     * Text of {@code [start, end)}, clamped to the document. Engines should override this to copy only the
+     * range; the default assembles it from the lines it spans.
+     */
+    default String getText(int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(end, getLength());
+        if (start >= end) return "";
+
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int line = getLineIndex(start); sb.length() < end - start; line++) {
+            int lineStart = getLineStart(line);
+            String text = getLine(line);
+            sb.append(text, Math.max(0, start - lineStart), Math.min(text.length(), end - lineStart));
+        }
+        return sb.toString();
+    }
+
+    /** Characters the default {@link #appendText} copies at a time. */
+    int APPEND_CHUNK = 64 * 1024;
+
+    /**
+     * Appends {@code [start, end)}, clamped to the document, to {@code out}. Engines should override this to
+     * append straight from their storage; the default copies the range {@link #APPEND_CHUNK} characters at a
+     * time with {@link #getText(int, int)}, so no string of the whole range is made besides {@code out}.
+     */
+    default void appendText(int start, int end, StringBuilder out) {
+        start = Math.max(0, start);
+        end = Math.min(end, getLength());
+        for (int from = start; from < end; from += APPEND_CHUNK) {
+            out.append(getText(from, Math.min(end, from + APPEND_CHUNK)));
+        }
+    }
+
+    int getLineCount();
+
+    String getLine(int lineIndex);
+
+    int getLineLength(int lineIndex);
+
+    /** Offset of the first character of the given line. */
+    int getLineStart(int lineIndex);
+
+    /**
+     * Returns the line containing {@code position}, clamped to the document. A position right after a newline
+     * belongs to the next line; the end of the document belongs to the last line.
+     */
+    default int getLineIndex(int position) {
+        int left = 0, right = getLineCount() - 1;
+        while (left < right) {
+            int mid = (left + right + 1) >>> 1;
+            if (getLineStart(mid) <= position) left = mid;
+            else right = mid - 1;
+        }
+        return left;
+    }
+
+    default boolean isLastLine(int lineIndex) {
+        return lineIndex == getLineCount() - 1;
+    }
+}
@@ -0,0 +1,276 @@
+package texteditor.model;
+
+/**
+ * A persistent, height-balanced tree of text chunks. Edits rebuild only the O(log n) nodes on the path to the
+ * change and share everything else, so a snapshot is just the current root.
+ */
+public class Rope extends AbstractDocument {
+    private static final int MAX_LEAF = 512;
+    private static final Leaf EMPTY = new Leaf("");
+
+    private Node root;
+
+    public Rope(String text) {
+        this.root = build(text, 0, text.length());
+    }
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    @Override
+    protected void insertText(int position, String text) {
+        Node inserted = build(text, 0, text.length());
+        root = concat(concat(prefix(root, position), inserted), suffix(root, position));
+    }
+
+    @Override
+    protected void removeText(int position, int length) {
+        root = concat(prefix(root, position), suffix(root, position + length));
+    }
+
+    @Override
+    public ReadOnlyDocument snapshot() {
+        return new Rope(root);
+    }
+
+    @Override
+    public int getLength() {
+        return root.length;
+    }
+
+    @Override
+    public String getText() {
+        StringBuilder sb = new StringBuilder(root.length);
+        appendRange(root, 0, root.length, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public String getText(int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(end, root.length);
+        if (start >= end) return "";
+        StringBuilder sb = new StringBuilder(end - start);
+        appendRange(root, start, end, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public int getLineCount() {
+        boolean endsWithNewline = root.length > 0 && charAt(root, root.length - 1) == '\n';
+        return endsWithNewline ? root.newlines : root.newlines + 1;
+    }
+
+    @Override
+    public String getLine(int lineIndex) {
+        checkLineIndex(lineIndex);
+        int start = lineStart(lineIndex);
+        int end = lineEnd(lineIndex);
+        StringBuilder sb = new StringBuilder(end - start);
+        appendRange(root, start, end, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public int getLineLength(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return lineEnd(lineIndex) - lineStart(lineIndex);
+    }
+
+    @Override
+    public int getLineStart(int lineIndex) {
+        checkLineIndex(lineIndex);
+        return lineStart(lineIndex);
+    }
+
+    @Override
+    public int getLineIndex(int position) {
+        position = Math.max(0, Math.min(position, root.length));
+        return Math.min(newlinesBefore(root, position), getLineCount() - 1);
+    }
+
+    private int lineStart(int lineIndex) {
+        return (lineIndex == 0) ? 0 : newlineOffset(root, lineIndex) + 1;
+    }
+
+    private int lineEnd(int lineIndex) {
+        return (lineIndex < root.newlines) ? newlineOffset(root, lineIndex + 1) + 1 : root.length;
+    }
+
+    private void checkLineIndex(int lineIndex) {
+        if (lineIndex < 0 || lineIndex >= getLineCount()) {
+            throw new IndexOutOfBoundsException("Line index out of bounds: " + lineIndex);
+        }
+    }
+
+    /** Offset of the {@code n}-th newline (1-based) under {@code node}. */
+    private static int newlineOffset(Node node, int n) {
+        int offset = 0;
+        while (node instanceof Branch branch) {
+            if (n <= branch.left.newlines) {
+                node = branch.left;
+            } else {
+                n -= branch.left.newlines;
+                offset += branch.left.length;
+                node = branch.right;
+            }
+        }
+        String text = ((Leaf) node).text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' && --n == 0) return offset + i;
+        }
+        throw new IllegalStateException("Newline count out of sync");
+    }
+
+    /** Number of newlines in the first {@code position} characters under {@code node}. */
+    private static int newlinesBefore(Node node, int position) {
+        int count = 0;
+        while (node instanceof Branch branch) {
+            if (position < branch.left.length) {
+                node = branch.left;
+            } else {
+                position -= branch.left.length;
+                count += branch.left.newlines;
+                node = branch.right;
+            }
+        }
+        String text = ((Leaf) node).text;
+        for (int i = 0; i < position; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static char charAt(Node node, int index) {
+        while (node instanceof Branch branch) {
+            if (index < branch.left.length) {
+                node = branch.left;
+            } else {
+                index -= branch.left.length;
+                node = branch.right;
+            }
+        }
+        return ((Leaf) node).text.charAt(index);
+    }
+
+    private static void appendRange(Node node, int start, int end, StringBuilder out) {
+        if (start >= end) return;
+        if (node instanceof Leaf leaf) {
+            out.append(leaf.text, start, end);
+            return;
+        }
+        Branch branch = (Branch) node;
+        int leftLen = branch.left.length;
+        if (start < leftLen) appendRange(branch.left, start, Math.min(end, leftLen), out);
+        if (end > leftLen) appendRange(branch.right, Math.max(0, start - leftLen), end - leftLen, out);
+    }
+
+    private static Node build(String text, int start, int end) {
+        if (end - start <= MAX_LEAF) {
+            return (start == end) ? EMPTY : new Leaf(text.substring(start, end));
+        }
+        int mid = (start + end) >>> 1;
+        return new Branch(build(text, start, mid), build(text, mid, end));
+    }
+
+    private static Node prefix(Node node, int position) {
+        if (position <= 0) return EMPTY;
+        if (position >= node.length) return node;
+        if (node instanceof Leaf leaf) return new Leaf(leaf.text.substring(0, position));
+
+        Branch branch = (Branch) node;
+        if (position <= branch.left.length) return prefix(branch.left, position);
+        return concat(branch.left, prefix(branch.right, position - branch.left.length));
+    }
+
+    private static Node suffix(Node node, int position) {
+        if (position <= 0) return node;
+        if (position >= node.length) return EMPTY;
+        if (node instanceof Leaf leaf) return new Leaf(leaf.text.substring(position));
+
+        Branch branch = (Branch) node;
+        if (position >= branch.left.length) return suffix(branch.right, position - branch.left.length);
+        return concat(suffix(branch.left, position), branch.right);
+    }
+
+    /** Joins two trees, descending the taller one's spine and rebalancing on the way back up. */
+    private static Node concat(Node left, Node right) {
+        if (left.length == 0) return right;
+        if (right.length == 0) return left;
+        if (left instanceof Leaf l && right instanceof Leaf r && l.length + r.length <= MAX_LEAF) {
+            return new Leaf(l.text + r.text);
+        }
+
+        if (left.height > right.height + 1) {
+            Branch tall = (Branch) left;
+            return balance(tall.left, concat(tall.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch tall = (Branch) right;
+            return balance(concat(left, tall.left), tall.right);
+        }
+        return new Branch(left, right);
+    }
+
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Branch l = (Branch) left;
+            if (l.left.height >= l.right.height) {
+                return new Branch(l.left, new Branch(l.right, right));
+            }
+            Branch lr = (Branch) l.right;
+            return new Branch(new Branch(l.left, lr.left), new Branch(lr.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch r = (Branch) right;
+            if (r.right.height >= r.left.height) {
+                return new Branch(new Branch(left, r.left), r.right);
+            }
+            Branch rl = (Branch) r.left;
+            return new Branch(new Branch(left, rl.left), new Branch(rl.right, r.right));
+        }
+        return new Branch(left, right);
+    }
+
+    private abstract static class Node {
+        final int length;
+        final int newlines;
+        final int height;
+
+        Node(int length, int newlines, int height) {
+            this.length = length;
+            this.newlines = newlines;
+            this.height = height;
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final String text;
+
+        Leaf(String text) {
+            super(text.length(), countNewlines(text), 0);
+            this.text = text;
+        }
+
+        private static int countNewlines(String text) {
+            int count = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') count++;
+            }
+            return count;
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node left;
+        final Node right;
+
+        Branch(Node left, Node right) {
+            super(left.length + right.length, left.newlines + right.newlines,
+                    Math.max(left.height, right.height) + 1);
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
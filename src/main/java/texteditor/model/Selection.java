@@ -0,0 +1,73 @@
+package texteditor.model;
+
+/**
+ * The selected range, from an anchor to the caret. Both ends are plain offsets that edits move like anchors: an
+ * edit before an end shifts it, and an edit that removes the text around an end leaves it where the removal
+ * began. Selecting everything only sets the two offsets, so it costs the same in any size of document. Edits
+ * reach the anchor through {@link #documentChanged}; the caret is moved by whoever made the edit.
+ */
+public class Selection implements DocumentListener {
+    private final Document document;
+    private final Caret caret;
+    private int anchor;
+
+    public Selection(Document document, Caret caret) {
+        this.document = document;
+        this.caret = caret;
+        this.anchor = caret.getPosition();
+    }
+
+    public int getAnchor() {
+        return anchor;
+    }
+
+    public Caret getCaret() {
+        return caret;
+    }
+
+    public int getStart() {
+        return Math.min(anchor, caret.getPosition());
+    }
+
+    public int getEnd() {
+        return Math.max(anchor, caret.getPosition());
+    }
+
+    public boolean isEmpty() {
+        return anchor == caret.getPosition();
+    }
+
+    /** Drops the selection, leaving the caret where it is. */
+    public void collapse() {
+        anchor = caret.getPosition();
+    }
+
+    public void selectAll() {
+        anchor = 0;
+        caret.setPosition(document.getLength());
+    }
+
+    /** Selects {@code [anchor, caret)}; the caret may come before the anchor. */
+    public void select(int anchor, int caret) {
+        this.caret.setPosition(caret);
+        this.anchor = Math.max(0, Math.min(anchor, document.getLength()));
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        anchor = moveThrough(anchor, event);
+    }
+
+    /** Where an offset ends up after the edit. */
+    public static int moveThrough(int offset, DocumentEvent event) {
+        int removedEnd = event.offset() + event.removedLength();
+        if (offset >= removedEnd) {
+            // at the edit offset, an insertion pushes the offset along with the text after it
+            if (offset > event.offset() || event.removedLength() == 0) {
+                return offset - event.removedLength() + event.insertedLength();
+            }
+            return offset;
+        }
+        return Math.min(offset, event.offset());
+    }
+}
@@ -0,0 +1,26 @@
+package texteditor.trace;
+
+/**
+ * One recorded editing operation.
+ * @param kind what happened
+ * @param elapsedMillis time since the previous event, as recorded
+ * @param position document offset the operation applies to (the new caret offset for {@link Kind#MOVE})
+ * @param length number of removed characters for {@link Kind#DELETE}, otherwise the inserted text length
+ * @param text inserted text for {@link Kind#INSERT}, otherwise empty
+ */
+public record TraceEvent(Kind kind, long elapsedMillis, int position, int length, String text) {
+
+    public enum Kind {INSERT, DELETE, MOVE}
+
+    public static TraceEvent insert(long elapsedMillis, int position, String text) {
+        return new TraceEvent(Kind.INSERT, elapsedMillis, position, text.length(), text);
+    }
+
+    public static TraceEvent delete(long elapsedMillis, int position, int length) {
+        return new TraceEvent(Kind.DELETE, elapsedMillis, position, length, "");
+    }
+
+    public static TraceEvent move(long elapsedMillis, int position) {
+        return new TraceEvent(Kind.MOVE, elapsedMillis, position, 0, "");
+    }
+}
@@ -0,0 +1,69 @@
+package texteditor.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads traces produced by {@link TraceWriter}, one event at a time.
+ */
+public class TraceReader implements Closeable {
+    private final DataInputStream in;
+    private final int initialLength;
+    private int lastPosition;
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != TraceWriter.MAGIC) {
+            throw new IOException("Not an editing trace");
+        }
+        this.initialLength = (int) readVarint();
+    }
+
+    /** Length of the document the trace was recorded against. */
+    public int getInitialLength() {return initialLength;}
+
+    /**
+     * @return the next event, or null at the end of the trace
+     */
+    public TraceEvent next() throws IOException {
+        int tag = in.read();
+        if (tag == -1) return null;
+
+        long elapsed = readVarint();
+        int zigzag = (int) readVarint();
+        int position = lastPosition + ((zigzag >>> 1) ^ -(zigzag & 1));
+        lastPosition = position;
+
+        return switch (tag) {
+            case TraceWriter.INSERT -> {
+                byte[] bytes = new byte[(int) readVarint()];
+                in.readFully(bytes);
+                yield TraceEvent.insert(elapsed, position, new String(bytes, StandardCharsets.UTF_8));
+            }
+            case TraceWriter.DELETE -> TraceEvent.delete(elapsed, position, (int) readVarint());
+            case TraceWriter.MOVE -> TraceEvent.move(elapsed, position);
+            default -> throw new IOException("Unknown trace tag: " + tag);
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) throw new EOFException("Truncated trace");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
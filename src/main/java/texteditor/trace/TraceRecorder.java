@@ -0,0 +1,56 @@
+package texteditor.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Hook for the controller to capture live editing sessions as replayable traces.
+ */
+public class TraceRecorder implements Closeable {
+    private final TraceWriter writer;
+    private long lastEventNanos;
+
+    public TraceRecorder(TraceWriter writer) {
+        this.writer = writer;
+        this.lastEventNanos = System.nanoTime();
+    }
+
+    public static TraceRecorder toFile(Path path, int initialLength) throws IOException {
+        return new TraceRecorder(new TraceWriter(Files.newOutputStream(path), initialLength));
+    }
+
+    public void recordInsert(int position, String text) {
+        record(TraceEvent.insert(elapsedMillis(), position, text));
+    }
+
+    public void recordDelete(int position, int length) {
+        record(TraceEvent.delete(elapsedMillis(), position, length));
+    }
+
+    public void recordMove(int position) {
+        record(TraceEvent.move(elapsedMillis(), position));
+    }
+
+    private void record(TraceEvent event) {
+        try {
+            writer.write(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long elapsedMillis() {
+        long now = System.nanoTime();
+        long elapsed = (now - lastEventNanos) / 1_000_000;
+        lastEventNanos = now;
+        return elapsed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,70 @@
+package texteditor.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes editing traces in a compact binary form:
+ * <pre>
+ *   header: "ETR1" magic, varint initial document length
+ *   event:  tag byte ('i', 'd' or 'm'), varint elapsed millis, zigzag varint position delta,
+ *           then for 'i' a varint byte count and UTF-8 text, for 'd' a varint length
+ * </pre>
+ * Positions are stored relative to the previous event, so a typing run costs about four bytes per keystroke.
+ */
+public class TraceWriter implements Closeable {
+    static final int MAGIC = 0x45545231; // "ETR1"
+    static final int INSERT = 'i';
+    static final int DELETE = 'd';
+    static final int MOVE = 'm';
+
+    private final DataOutputStream out;
+    private int lastPosition;
+
+    public TraceWriter(OutputStream out, int initialLength) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        writeVarint(initialLength);
+    }
+
+    public void write(TraceEvent event) throws IOException {
+        out.writeByte(switch (event.kind()) {
+            case INSERT -> INSERT;
+            case DELETE -> DELETE;
+            case MOVE -> MOVE;
+        });
+        writeVarint(event.elapsedMillis());
+        int delta = event.position() - lastPosition;
+        writeVarint(Integer.toUnsignedLong((delta << 1) ^ (delta >> 31)));
+        lastPosition = event.position();
+
+        if (event.kind() == TraceEvent.Kind.INSERT) {
+            byte[] bytes = event.text().getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.write(bytes);
+        } else if (event.kind() == TraceEvent.Kind.DELETE) {
+            writeVarint(event.length());
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -1,16 +1,36 @@
 package texteditor.view;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import texteditor.model.ReadOnlyDocument;
 import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RenderSurface;
+import texteditor.view.style.StyleProvider;
+import texteditor.view.style.TextStyle;
 import texteditor.view.text.TextMeasurer;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
 
 public class CanvasRenderer {
+    // pixels around the caret line repainted by a blink; covers the stroke width and its anti-aliasing
+    private static final double CARET_MARGIN = 2;
+    private static final Color SELECTION_FILL = Color.rgb(173, 214, 255);
+
     private final TextMeasurer measurer;
     private final double paddingHorizontal;
     private final double paddingTop;
+    // rows are drawn from rasterized tiles when set
+    private LineTileCache tileCache;
+    // document range whose rows are filled as text even with tiles; none when the end is before the start
+    private int liveStart;
+    private int liveEnd = -1;
+    // rows are drawn in plain text when null
+    private StyleProvider styleProvider;
+    // document range highlighted behind the text; empty when the two are equal
+    private int selectionStart;
+    private int selectionEnd;
 
     public CanvasRenderer(TextMeasurer measurer, double paddingHorizontal, double paddingTop) {
         this.measurer = measurer;
@@ -18,38 +38,258 @@ public class CanvasRenderer {
         this.paddingTop = paddingTop;
     }
 
-    public void drawDocumentLines(GraphicsContext gc, List<VisualLine> visualLines) {
-        if (gc == null) throw new IllegalArgumentException("gc is null");
+    /** Draws rows from a cache of rasterized tiles instead of filling their text each time; null turns it off. */
+    public void setLineTileCache(LineTileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * Fills the rows holding any of {@code [start, end]} as text instead of drawing them from tiles, as the caret's
+     * row always is, so that rows being edited are not rasterized again for every keystroke. An end before the
+     * start leaves every row but the caret's to the tiles.
+     */
+    public void setLiveRange(int start, int end) {
+        this.liveStart = start;
+        this.liveEnd = end;
+    }
+
+    /**
+     * Colours the text by the provider's style runs; null draws everything {@link TextStyle#PLAIN}. The runs of
+     * all the rows drawn together are grouped by style, so a frame changes font and fill once per style it uses.
+     */
+    public void setStyleProvider(StyleProvider styleProvider) {
+        this.styleProvider = styleProvider;
+    }
+
+    /**
+     * Highlights {@code [start, end)} behind the text of the rows drawn from now on. Only rows being drawn are
+     * measured, so selecting a whole document costs no more per frame than selecting one line.
+     */
+    public void setSelection(int start, int end) {
+        this.selectionStart = Math.min(start, end);
+        this.selectionEnd = Math.max(start, end);
+    }
+
+    public void drawDocumentLines(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines) {
+        drawDocumentLines(surface, document, visualLines, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Draws {@code rowCount} visual lines starting at {@code firstRow}, with {@code firstRow} at the top. Only the
+     * text of those rows is read from {@code document}.
+     */
+    public void drawDocumentLines(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines,
+                                  int firstRow, int rowCount) {
+        if (surface == null) throw new IllegalArgumentException("surface is null");
         if (visualLines == null || visualLines.isEmpty()) return;
 
-        var font = measurer.getFont();
-        double baseline = measurer.getBaselineOffset();
+        int endRow = (int) Math.min(visualLines.size(), (long) firstRow + rowCount);
+        drawRows(surface, document, visualLines, firstRow, Math.max(0, firstRow) - firstRow, endRow - firstRow, -1);
+    }
+
+    /**
+     * Repaints the bands of the screen rows in {@code dirtyRows} across the full width of the canvas; adjacent dirty
+     * rows make one band. Each band is cleared and its rows redrawn clipped to it, together with the rows either
+     * side in case their glyphs reach in, so the rest of the canvas is left as the last frame drew it. The caret is
+     * drawn if it is in one of the bands.
+     */
+    public void drawDirtyRows(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines,
+                              int firstRow, BitSet dirtyRows, double cursorX, double cursorY, boolean caretVisible) {
+        if (surface == null) throw new IllegalArgumentException("surface is null");
+
         double lineHeight = measurer.getLineHeight();
+        double canvasWidth = surface.getWidth();
+        int caretRow = screenRowAt(cursorY);
 
-        gc.setFont(font);
-        gc.setFill(Color.BLACK);
+        for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row)) {
+            int end = dirtyRows.nextClearBit(row);
+            double top = Math.floor(paddingTop + row * lineHeight);
+            double height = Math.ceil(paddingTop + end * lineHeight) - top;
+
+            surface.save();
+            surface.clipRect(0, top, canvasWidth, height);
+            surface.clearRect(0, top, canvasWidth, height);
+            drawRows(surface, document, visualLines, firstRow, row - 1, end + 1, caretRow);
+            if (caretRow >= row - 1 && caretRow <= end) drawCaret(surface, cursorX, cursorY, caretVisible);
+            surface.restore();
+            row = end;
+        }
+    }
+
+    /**
+     * Moves the rows on the surface up by {@code rows} rows, or down if negative, leaving the rows that scroll into
+     * view for the caller to repaint. Nothing is moved, and false returned, if the distance is not a whole number
+     * of device pixels, since the moved rows would then be resampled and no longer line up with freshly drawn ones,
+     * or if the surface cannot move pixels cheaply.
+     */
+    public boolean scrollRows(RenderSurface surface, int rows) {
+        if (surface == null) throw new IllegalArgumentException("surface is null");
+
+        double scale = surface.getOutputScale();
+        double dy = rows * measurer.getLineHeight();
+        double height = surface.getHeight() - paddingTop;
+        if (height - Math.abs(dy) <= 0 || !isWholePixels(dy * scale) || !isWholePixels(paddingTop * scale)) {
+            return false;
+        }
+        return surface.moveArea(paddingTop, height, -dy);
+    }
+
+    private static boolean isWholePixels(double pixels) {
+        return Math.abs(pixels - Math.rint(pixels)) < 1e-6;
+    }
+
+    /** Screen row whose baseline is at {@code baselineY}, such as the caret's. */
+    public int screenRowAt(double baselineY) {
+        return (int) Math.round((baselineY - measurer.getBaselineOffset() - paddingTop) / measurer.getLineHeight());
+    }
+
+    /**
+     * Draws screen rows {@code [fromScreenRow, toScreenRow)}, skipping any outside {@code visualLines}; the row of
+     * {@code visualLines.get(firstRow)} is screen row 0.
+     * @param caretRow screen row of the caret, which is never drawn from tiles; -1 for none
+     */
+    private void drawRows(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines,
+                          int firstRow, int fromScreenRow, int toScreenRow, int caretRow) {
+        int from = Math.max(fromScreenRow, -firstRow);
+        int to = Math.min(toScreenRow, visualLines.size() - firstRow);
+        drawSelection(surface, document, visualLines, firstRow, from, to);
+        if (styleProvider == null) {
+            surface.setFont(measurer.getFont());
+            surface.setFill(TextStyle.PLAIN.fill());
+            for (int row = from; row < to; row++) {
+                VisualLine visualLine = visualLines.get(firstRow + row);
+                drawRow(surface, document, visualLine, row, isLive(visualLine, row, caretRow));
+            }
+            return;
+        }
 
-        for (int l = 0; l < visualLines.size(); l++) {
-            VisualLine visualLine = visualLines.get(l);
-            String lineToDraw = visualLine.text();
-            double y = paddingTop + baseline + (l * lineHeight);
-            gc.fillText(lineToDraw, paddingHorizontal, y);
+        StyleBatch batch = new StyleBatch();
+        for (int row = from; row < to; row++) {
+            VisualLine visualLine = visualLines.get(firstRow + row);
+            addStyledRow(batch, document, visualLine, row, isLive(visualLine, row, caretRow));
         }
+        for (var group : batch.byStyle().entrySet()) {
+            TextStyle style = group.getKey();
+            Font font = (style.font() != null) ? style.font() : measurer.getFont();
+            if (!Objects.equals(font, surface.getFont())) surface.setFont(font);
+            if (!Objects.equals(style.fill(), surface.getFill())) surface.setFill(style.fill());
+            for (StyleBatch.Piece piece : group.getValue()) {
+                drawText(surface, piece.text(), piece.x(), piece.y(), piece.width(), piece.live());
+            }
+        }
+    }
+
+    /** Fills the selected part of screen rows {@code [from, to)}, one rectangle per row. */
+    private void drawSelection(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines,
+                               int firstRow, int from, int to) {
+        if (selectionStart >= selectionEnd) return;
+        boolean filled = false;
+        for (int row = from; row < to; row++) {
+            VisualLine visualLine = visualLines.get(firstRow + row);
+            int start = visualLine.startPosition();
+            if (selectionEnd <= start || selectionStart >= visualLine.endPosition()) continue;
+
+            String text = rowText(document, visualLine);
+            int contentEnd = start + text.length();
+            int selectedFrom = Math.max(0, Math.min(selectionStart, contentEnd) - start);
+            double left = paddingHorizontal + measurer.measureWidth(text, 0, selectedFrom);
+            double right = paddingHorizontal + measurer.measureWidth(text, 0, Math.min(selectionEnd, contentEnd) - start);
+            // a selected newline shows as one space past the end of the row
+            if (selectionEnd > contentEnd) right += measurer.measureWidth(" ");
+            if (!filled) {
+                surface.setFill(SELECTION_FILL);
+                filled = true;
+            }
+            double top = Math.floor(paddingTop + row * measurer.getLineHeight());
+            surface.fillRect(left, top, right - left, Math.ceil(paddingTop + (row + 1) * measurer.getLineHeight()) - top);
+        }
+    }
+
+    private double baselineY(int screenRow) {
+        return paddingTop + measurer.getBaselineOffset() + (screenRow * measurer.getLineHeight());
+    }
+
+    /** Whether the row is filled as text rather than drawn from a tile. */
+    private boolean isLive(VisualLine visualLine, int screenRow, int caretRow) {
+        return tileCache == null || screenRow == caretRow || (liveStart <= liveEnd
+                && visualLine.startPosition() <= liveEnd && visualLine.endPosition() >= liveStart);
+    }
+
+    /** Draws a row's text at screen row {@code screenRow}; font and fill are the caller's. */
+    private void drawRow(RenderSurface surface, ReadOnlyDocument document, VisualLine visualLine, int screenRow,
+                         boolean live) {
+        double y = baselineY(screenRow);
+        if (live) {
+            surface.fillText(visualLine.text(document), paddingHorizontal, y);
+            return;
+        }
+        drawText(surface, rowText(document, visualLine), paddingHorizontal, y, visualLine.width(), false);
+    }
+
+    private void drawText(RenderSurface surface, String text, double x, double y, double width, boolean live) {
+        if (live) {
+            surface.fillText(text, x, y);
+        } else {
+            tileCache.draw(surface, text, x, y, width,
+                    measurer.getLineHeight(), measurer.getBaselineOffset(), surface.getOutputScale());
+        }
+    }
+
+    /** The row's text without its newline, which draws nothing and would keep the row from sharing tiles. */
+    private static String rowText(ReadOnlyDocument document, VisualLine visualLine) {
+        int end = visualLine.hasNewlineChar() ? visualLine.endPosition() - 1 : visualLine.endPosition();
+        return document.getText(visualLine.startPosition(), end);
+    }
+
+    private void addStyledRow(StyleBatch batch, ReadOnlyDocument document, VisualLine visualLine, int screenRow,
+                              boolean live) {
+        String text = rowText(document, visualLine);
+        if (text.isEmpty()) return;
+        int start = visualLine.startPosition();
+        batch.addRow(text, start, styleProvider.styleRuns(document, start, start + text.length()),
+                paddingHorizontal, baselineY(screenRow), measurer, live);
+    }
+
+    /**
+     * Repaints only the small rectangle around the caret: the rectangle is cleared, the one row under it is redrawn
+     * clipped to it, and the caret is stroked on top if visible. A blink costs this instead of a frame, and needs
+     * no layout since {@code visualLines} is the layout of the last frame.
+     */
+    public void redrawCaret(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines, int firstRow,
+                            double cursorX, double cursorY, boolean visible) {
+        if (surface == null) throw new IllegalArgumentException("surface is null");
+
+        double lineHeight = measurer.getLineHeight();
+        double lineTop = cursorY - measurer.getBaselineOffset();
+        double left = Math.floor(cursorX) - CARET_MARGIN;
+        double top = Math.floor(lineTop) - CARET_MARGIN;
+        double width = 2 * CARET_MARGIN + 1;
+        double height = Math.ceil(lineHeight) + 2 * CARET_MARGIN;
+
+        surface.save();
+        surface.clipRect(left, top, width, height);
+        surface.clearRect(left, top, width, height);
+
+        int screenRow = screenRowAt(cursorY);
+        // rows either side can reach into the margin with descenders and accents
+        drawRows(surface, document, visualLines, firstRow, screenRow - 1, screenRow + 2, screenRow);
+        drawCaret(surface, cursorX, cursorY, visible);
+        surface.restore();
     }
 
-    public void drawCaret(GraphicsContext gc, double cursorX, double cursorY, boolean visible) {
-        if (gc == null) throw new IllegalArgumentException("gc is null");
+    public void drawCaret(RenderSurface surface, double cursorX, double cursorY, boolean visible) {
+        if (surface == null) throw new IllegalArgumentException("surface is null");
         if (!visible) {return;}
 
         double lineTop = cursorY - measurer.getBaselineOffset();
         double lineHeight = measurer.getLineHeight();
 
-        gc.setLineWidth(1.5);
-        gc.setStroke(Color.BLACK);
+        surface.setLineWidth(1.5);
+        surface.setStroke(Color.BLACK);
 
         double x = Math.round(cursorX) + 0.5;
         double top = Math.round(lineTop) + 0.5;
         double bottom = Math.round(lineTop + lineHeight) + 0.5;
-        gc.strokeLine(x, top, x, bottom);
+        surface.strokeLine(x, top, x, bottom);
     }
 }
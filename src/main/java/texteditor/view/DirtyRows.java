@@ -0,0 +1,122 @@
+package texteditor.view;
+
+import texteditor.model.DocumentEvent;
+import texteditor.model.DocumentListener;
+import texteditor.view.layout.VisualLine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Works out which screen rows changed since the last frame. The rows on screen are remembered as document ranges;
+ * edits made since then move those ranges, and a row stays clean only if the edits did not touch it and the new
+ * frame has the same range at the same screen row, or at the row it scrolled to. The rows the caret left and
+ * entered are always dirty. Anything the ranges cannot show, such as a resize, is reported with
+ * {@link #invalidateAll()}.
+ */
+final class DirtyRows implements DocumentListener {
+    private List<VisualLine> lastRows;
+    private int lastCaretRow = -1;
+    private final List<DocumentEvent> edits = new ArrayList<>();
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        if (lastRows != null) edits.add(event);
+    }
+
+    /** Makes the next frame repaint every row. */
+    void invalidateAll() {
+        lastRows = null;
+        edits.clear();
+    }
+
+    /**
+     * Rows to repaint after the last frame's pixels have been moved up by {@code shift} rows (down if negative).
+     */
+    record Repaint(int shift, BitSet rows) {
+    }
+
+    /**
+     * Compares the rows now on screen with the last frame's and remembers them for the next one. If the viewport
+     * scrolled by fewer rows than it shows, the comparison is made against the last frame moved by that many rows,
+     * so that only the rows that scrolled into view are dirty once the pixels are moved the same way.
+     * @param rows rows from the top of the viewport down, one per screen row
+     * @param caretRow screen row the caret is drawn in, or -1 if it is off screen
+     * @return what to repaint, or null if the whole viewport has to be repainted
+     */
+    Repaint update(List<VisualLine> rows, int caretRow) {
+        List<VisualLine> previous = lastRows;
+        int previousCaretRow = lastCaretRow;
+        lastRows = List.copyOf(rows);
+        lastCaretRow = caretRow;
+        if (previous == null || rows.isEmpty()) {
+            edits.clear();
+            return null;
+        }
+
+        // where the last frame's rows are now, or -1 for rows an edit touched
+        int[] starts = new int[previous.size()];
+        int[] ends = new int[previous.size()];
+        for (int row = 0; row < previous.size(); row++) {
+            moveThroughEdits(previous.get(row), starts, ends, row);
+        }
+        int shift = findShift(starts, ends, rows);
+
+        BitSet dirty = new BitSet();
+        for (int row = 0; row < rows.size(); row++) {
+            int before = row + shift;
+            boolean same = before >= 0 && before < previous.size()
+                    && starts[before] == rows.get(row).startPosition()
+                    && ends[before] == rows.get(row).endPosition()
+                    && previous.get(before).hasNewlineChar() == rows.get(row).hasNewlineChar()
+                    && previous.get(before).width() == rows.get(row).width();
+            if (!same) dirty.set(row);
+        }
+        // moved rows past the end of the document, which have to be cleared
+        int lastDrawn = Math.min(previous.size(), previous.size() - shift);
+        dirty.set(rows.size(), Math.max(rows.size(), lastDrawn));
+        int movedCaretRow = previousCaretRow - shift;
+        if (previousCaretRow >= 0 && movedCaretRow >= 0) dirty.set(movedCaretRow);
+        if (caretRow >= 0) dirty.set(caretRow);
+        edits.clear();
+        return new Repaint(shift, dirty);
+    }
+
+    /**
+     * Rows the view scrolled by: the last frame's row now at the top, or minus the row the last frame's top row
+     * moved down to. Zero if neither is on screen in both frames.
+     */
+    private static int findShift(int[] starts, int[] ends, List<VisualLine> rows) {
+        VisualLine top = rows.getFirst();
+        for (int before = 0; before < starts.length; before++) {
+            if (starts[before] == top.startPosition() && ends[before] == top.endPosition()) return before;
+        }
+        for (int row = 1; row < rows.size(); row++) {
+            if (starts[0] == rows.get(row).startPosition() && ends[0] == rows.get(row).endPosition()) return -row;
+        }
+        return 0;
+    }
+
+    /** Records where {@code before} is after the edits since the last frame, or -1 if one of them touched it. */
+    private void moveThroughEdits(VisualLine before, int[] starts, int[] ends, int index) {
+        int start = before.startPosition();
+        int end = before.endPosition();
+        for (DocumentEvent edit : edits) {
+            int editEnd = edit.offset() + edit.removedLength();
+            boolean removesFromRow = edit.offset() < end && editEnd > start;
+            boolean insertsInsideRow = edit.removedLength() == 0 && edit.offset() > start && edit.offset() < end;
+            if (removesFromRow || insertsInsideRow) {
+                start = -1;
+                end = -1;
+                break;
+            }
+
+            int shift = edit.insertedLength() - edit.removedLength();
+            if (start >= editEnd) start += shift;
+            if (end > editEnd) end += shift;
+        }
+        starts[index] = start;
+        ends[index] = end;
+    }
+}
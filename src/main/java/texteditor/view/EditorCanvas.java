@@ -1,24 +1,55 @@
 package texteditor.view;
 
 import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.util.Duration;
-import texteditor.model.PieceTable;
+import javafx.scene.input.MouseEvent;
+import texteditor.model.Document;
+import texteditor.model.Selection;
 import texteditor.view.caret.CaretController;
+import texteditor.view.layout.BackgroundRewrapper;
+import texteditor.view.layout.HeightMap;
 import texteditor.view.layout.LayoutEngine;
 import texteditor.view.layout.VisualLine;
+import texteditor.view.render.CanvasSurface;
+import texteditor.view.text.TextMeasurer;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class EditorCanvas extends Canvas {
-    private final PieceTable document;
+    private static final int OVERSCAN_LINES = 8;
+    private static final int WHEEL_SCROLL_ROWS = 3;
+    // how long the width has to stay put before the rest of the document is re-wrapped
+    private static final Duration REWRAP_DELAY = Duration.millis(150);
+
+    private final Document document;
     private final LayoutEngine layoutEngine;
     private final CaretController caretController;
     private final CanvasRenderer renderer;
+    private final CanvasSurface surface = new CanvasSurface(this);
+    private final FramePainter framePainter;
+    private final FrameStats frameStats = new FrameStats();
+    private final FrameScheduler frameScheduler = new FrameScheduler(this::draw);
+    // position to scroll into view on the next frame, or -1
+    private int pendingReveal = -1;
+    private final List<Runnable> frameListeners = new ArrayList<>();
+    // highlighted behind the text when set
+    private Selection selection;
 
     private List<VisualLine> visualLines;
+    // document-wide visual row at the top of the viewport, and where that row sits in visualLines
+    private int scrollRow = 0;
+    private int viewportRow = 0;
+    // pixels scrolled by a trackpad that do not add up to a row yet
+    private double scrollRemainder = 0;
+
+    private final BackgroundRewrapper rewrapper;
+    private final PauseTransition rewrapDelay = new PauseTransition(REWRAP_DELAY);
+    private double wrapWidth = Double.NaN;
 
     private final double paddingHorizontal;
     private final double paddingTop;
@@ -27,8 +58,18 @@ public class EditorCanvas extends Canvas {
     private boolean isCursorVisible = true;
     private final Timeline cursorBlinkTimeline;
 
-    public EditorCanvas(PieceTable document, LayoutEngine layoutEngine, CaretController caretController,
+    public EditorCanvas(Document document, LayoutEngine layoutEngine, CaretController caretController,
                         CanvasRenderer renderer, double paddingHorizontal, double paddingTop) {
+        this(document, layoutEngine, layoutEngine.getTextMeasurer(), caretController, renderer,
+                paddingHorizontal, paddingTop);
+    }
+
+    /**
+     * @param workerMeasurer thread-safe measurer for re-wrapping the document off the FX thread after a resize
+     */
+    public EditorCanvas(Document document, LayoutEngine layoutEngine, TextMeasurer workerMeasurer,
+                        CaretController caretController, CanvasRenderer renderer,
+                        double paddingHorizontal, double paddingTop) {
         super(250, 300);
 
         this.document = document;
@@ -38,38 +79,209 @@ public class EditorCanvas extends Canvas {
 
         this.paddingHorizontal = paddingHorizontal;
         this.paddingTop = paddingTop;
+        this.framePainter = new FramePainter(renderer);
+        document.addDocumentListener(framePainter);
 
+        this.rewrapper = new BackgroundRewrapper(layoutEngine, workerMeasurer, Platform::runLater);
+        rewrapper.setOnStale(rewrapDelay::playFromStart);
+        document.addDocumentListener(rewrapper);
+        rewrapDelay.setOnFinished(event -> rewrapper.start(document, wrapWidth));
 
         this.cursorBlinkTimeline = createCursorBlinkTimeline();
         setupFocusHandling();
+        setupResizeHandling();
         setupMouseHandling();
+        setupScrollHandling();
 
         this.visualLines = recalculateLayout();
         draw();
     }
 
-    public void draw() {
-        GraphicsContext gc = this.getGraphicsContext2D();
-        gc.clearRect(0, 0, getWidth(), getHeight());
+    /** Draws a frame on the next pulse, together with anything else requested before it. */
+    public void requestDraw() {
+        frameScheduler.requestFrame();
+    }
+
+    /**
+     * Scrolls {@code position} into view on the next frame. Only the latest request before the frame counts, so a
+     * burst of caret moves scrolls once, to where the caret ended up.
+     */
+    public void requestReveal(int position) {
+        pendingReveal = position;
+        frameScheduler.requestFrame();
+    }
 
-        visualLines = recalculateLayout();
+    /**
+     * Lays out the viewport and repaints the rows that changed since the last frame, or all of them after a
+     * resize or anything else that moved every row. Input should call {@link #requestDraw()} instead, which
+     * draws at most once per pulse.
+     */
+    public void draw() {
+        long frameStart = System.nanoTime();
+        long drawCalls = surface.getDrawCalls();
+        long stateChanges = surface.getStateChanges();
 
-        renderer.drawDocumentLines(gc, visualLines);
+        if (pendingReveal >= 0) {
+            int position = pendingReveal;
+            pendingReveal = -1;
+            visualLines = revealPosition(position);
+        } else {
+            visualLines = recalculateLayout();
+        }
         caretController.updateCursorLocation(visualLines);
-        renderer.drawCaret(gc, caretController.getCursorX(), caretController.getCursorY(), isCursorVisible);
+
+        int selectionStart = (selection != null) ? selection.getStart() : 0;
+        int selectionEnd = (selection != null) ? selection.getEnd() : 0;
+        FramePainter.PaintedFrame frame = framePainter.paint(surface, document, visualLines, viewportRow,
+                visibleRows(), caretController.getCursorX(), caretController.getCursorY(), isCursorVisible,
+                selectionStart, selectionEnd);
+        frameStats.record(System.nanoTime() - frameStart, frame.rowsPainted(), frame.scrolled(), frame.full());
+        frameStats.recordCalls(surface.getDrawCalls() - drawCalls, surface.getStateChanges() - stateChanges);
+        for (Runnable listener : frameListeners) listener.run();
+    }
+
+    /**
+     * Highlights {@code selection} from the next frame on, and lets the mouse set it: pressing places the caret
+     * and drops the selection unless Shift is held, and dragging extends it to the pointer.
+     */
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+        requestDraw();
+    }
+
+    /** Runs {@code listener} after every frame, for views that follow the viewport such as the gutter. */
+    public void addFrameListener(Runnable listener) {
+        frameListeners.add(listener);
     }
 
+    /** Layout of the last frame, starting with the overscan rows above the viewport. */
+    public List<VisualLine> getVisualLines() {
+        return visualLines;
+    }
+
+    /** Index in {@link #getVisualLines()} of the row at the top of the viewport. */
+    public int getViewportRow() {
+        return viewportRow;
+    }
+
+    /** Rows the viewport shows, counting a partly visible last row. */
+    public int getVisibleRows() {
+        return visibleRows();
+    }
+
+    /** Timings of the recent frames. */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Lays out the lines in and around the viewport. The returned list starts with overscan lines above the
+     * viewport; the caret controller is told where the viewport begins. When the width has changed, only these
+     * lines are wrapped now; the rest of the document is re-wrapped once the width settles.
+     */
     public List<VisualLine> recalculateLayout() {
-        double availableWidth = getWidth() - (paddingHorizontal * 2);
-        var layoutResult = layoutEngine.calculateLayout(document, availableWidth);
+        double availableWidth = availableWidth();
+        if (availableWidth != wrapWidth) {
+            wrapWidth = availableWidth;
+            rewrapper.cancel();
+            rewrapDelay.playFromStart();
+        }
+        HeightMap heights = layoutEngine.getHeightMap(document, availableWidth);
+        scrollRow = Math.max(0, Math.min(scrollRow, heights.totalRows() - 1));
+        int topLine = heights.lineAtRow(scrollRow);
+        int rowInLine = scrollRow - heights.rowsBefore(topLine);
+
+        var layoutResult = layoutEngine.calculateViewportLayout(document, availableWidth, topLine, rowInLine,
+                visibleRows(), OVERSCAN_LINES);
+
+        // wrapping the overscan lines may have replaced estimates above the top line; keep that line in place
+        rowInLine = Math.min(rowInLine, heights.getRows(topLine) - 1);
+        scrollRow = heights.rowsBefore(topLine) + rowInLine;
+        viewportRow = layoutResult.getViewportRow();
+        caretController.setViewportRow(viewportRow);
         return layoutResult.getVisualLines();
     }
 
+    /**
+     * Scrolls the fewest rows that bring {@code position} into the viewport, and returns the layout around it.
+     */
+    public List<VisualLine> revealPosition(int position) {
+        List<VisualLine> lines = recalculateLayout();
+        if (position < lines.getFirst().startPosition() || position > lines.getLast().endPosition()) {
+            // too far away to count rows in the current layout: bring its row to the top first
+            int line = document.getLineIndex(position);
+            int rowInLine = layoutEngine.rowInLine(document, availableWidth(), position);
+            scrollRow = layoutEngine.getHeightMap(document, availableWidth()).rowsBefore(line) + rowInLine;
+            lines = recalculateLayout();
+        }
+
+        int rows = visibleRows();
+        int row = caretController.findVisualLineIndex(position, lines);
+        row = caretController.adjustForAffinity(position, row, lines);
+        if (row < viewportRow) {
+            scrollRow -= viewportRow - row;
+        } else if (row >= viewportRow + rows) {
+            scrollRow += row - (viewportRow + rows - 1);
+        } else {
+            return lines;
+        }
+        return recalculateLayout();
+    }
+
+    /** Scrolls so that the first row of {@code line} is at the top of the viewport. */
+    public void scrollToLine(int line) {
+        line = Math.max(0, Math.min(line, document.getLineCount() - 1));
+        scrollRow = layoutEngine.getHeightMap(document, availableWidth()).rowsBefore(line);
+        requestDraw();
+    }
+
+    /** Scrolls so that the row at document y-coordinate {@code y} is at the top of the viewport. */
+    public void scrollToPixel(double y) {
+        scrollRow = (int) Math.floor(Math.max(0, y) / lineHeight());
+        requestDraw();
+    }
+
+    /** Document y-coordinate of the top of the viewport. */
+    public double getScrollY() {
+        return scrollRow * lineHeight();
+    }
+
+    /** Logical line at the top of the viewport. */
+    public int getFirstVisibleLine() {
+        return layoutEngine.getHeightMap(document, availableWidth()).lineAtRow(scrollRow);
+    }
+
+    /** Logical line at the bottom of the viewport, which may be only partly visible. */
+    public int getLastVisibleLine() {
+        HeightMap heights = layoutEngine.getHeightMap(document, availableWidth());
+        return heights.lineAtRow(Math.min(heights.totalRows() - 1, scrollRow + visibleRows() - 1));
+    }
+
+    /**
+     * Height of the whole document at the current width, for sizing a scrollbar. Lines that have never been
+     * on screen are estimated from their length.
+     */
+    public double getContentHeight() {
+        return layoutEngine.getHeightMap(document, availableWidth()).totalRows() * lineHeight();
+    }
+
+    private double availableWidth() {
+        return getWidth() - (paddingHorizontal * 2);
+    }
+
+    private double lineHeight() {
+        return layoutEngine.getTextMeasurer().getLineHeight();
+    }
+
+    private int visibleRows() {
+        return (int) Math.ceil(Math.max(0, getHeight() - paddingTop) / lineHeight());
+    }
+
     private Timeline createCursorBlinkTimeline() {
         var timeline = new Timeline(
                 new KeyFrame(Duration.seconds(0.5), event -> {
                     isCursorVisible = !isCursorVisible;
-                    draw();
+                    redrawCaret();
                 })
         );
         timeline.setCycleCount(Timeline.INDEFINITE);
@@ -77,6 +289,13 @@ public class EditorCanvas extends Canvas {
         return timeline;
     }
 
+    /** Repaints only the caret, from the layout and caret location of the last frame. */
+    private void redrawCaret() {
+        if (visualLines == null) return;
+        renderer.redrawCaret(surface, document, visualLines, viewportRow,
+                caretController.getCursorX(), caretController.getCursorY(), isCursorVisible);
+    }
+
     public void resetCursorBlink() {
         isCursorVisible = true;
         cursorBlinkTimeline.playFromStart();
@@ -89,20 +308,58 @@ public class EditorCanvas extends Canvas {
                 cursorBlinkTimeline.play();
             } else {
                 isCursorVisible = false;
-                draw();
+                redrawCaret();
                 cursorBlinkTimeline.pause();
             }
         });
     }
 
+    private void setupResizeHandling() {
+        widthProperty().addListener((observable, oldValue, newValue) -> {
+            framePainter.invalidateAll();
+            requestDraw();
+        });
+        heightProperty().addListener((observable, oldValue, newValue) -> {
+            framePainter.invalidateAll();
+            requestDraw();
+        });
+    }
+
     private void setupMouseHandling() {
-        this.setOnMouseClicked(event -> {
-            double clickX = event.getX();
-            double clickY = event.getY();
+        this.setOnMousePressed(event -> {
+            moveCaretTo(event);
+            if (selection != null && !event.isShiftDown()) selection.collapse();
+        });
+        this.setOnMouseDragged(this::moveCaretTo);
+    }
+
+    private void moveCaretTo(MouseEvent event) {
+        // the click is mapped through visualLines, so bring them up to date with the layout first
+        frameScheduler.flush();
+        double clickX = event.getX();
+        double clickY = event.getY();
+
+        caretController.moveToClickPosition(clickX, clickY, visualLines);
+        resetCursorBlink();
+        requestDraw();
+    }
 
-            caretController.moveToClickPosition(clickX, clickY, visualLines);
-            resetCursorBlink();
-            draw();
+    private void setupScrollHandling() {
+        this.setOnScroll(event -> {
+            int delta = switch (event.getTextDeltaYUnits()) {
+                case LINES -> (int) -Math.signum(event.getTextDeltaY()) * WHEEL_SCROLL_ROWS;
+                case PAGES -> (int) -Math.signum(event.getTextDeltaY()) * Math.max(1, visibleRows() - 1);
+                case NONE -> {
+                    // trackpads and momentum send small pixel deltas; move a row once they add up to one
+                    scrollRemainder -= event.getDeltaY();
+                    int pixelRows = (int) (scrollRemainder / lineHeight());
+                    scrollRemainder -= pixelRows * lineHeight();
+                    yield pixelRows;
+                }
+            };
+            if (delta == 0) return;
+            scrollRow = Math.max(0, scrollRow + delta);
+            requestDraw();
         });
     }
 
@@ -0,0 +1,128 @@
+package texteditor.view;
+
+import texteditor.model.DocumentEvent;
+import texteditor.model.DocumentListener;
+import texteditor.model.ReadOnlyDocument;
+import texteditor.model.Selection;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RenderSurface;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Paints one frame of a laid-out viewport: finds what changed since the last frame, moves the surface's pixels
+ * if the viewport scrolled and the surface can move them, and repaints the rest. Edits have to be passed on through
+ * {@link #documentChanged(DocumentEvent)}. Nothing here needs the FX toolkit, so the same frames can be painted
+ * on a canvas or on a recording surface.
+ */
+public class FramePainter implements DocumentListener {
+    private final CanvasRenderer renderer;
+    private final DirtyRows dirtyRows = new DirtyRows();
+    // selection the last frame drew, moved along by edits since
+    private int paintedSelectionStart;
+    private int paintedSelectionEnd;
+    // text edited since the last frame painted without an edit, moved along by later edits; none while end < start
+    private int editedStart;
+    private int editedEnd = -1;
+    private boolean editedSinceFrame;
+
+    /**
+     * @param rowsPainted rows whose text was drawn again
+     * @param scrolled whether the last frame's pixels were moved
+     * @param full whether the whole surface was cleared and repainted
+     */
+    public record PaintedFrame(int rowsPainted, boolean scrolled, boolean full) {
+    }
+
+    public FramePainter(CanvasRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        dirtyRows.documentChanged(event);
+        paintedSelectionStart = Selection.moveThrough(paintedSelectionStart, event);
+        paintedSelectionEnd = Selection.moveThrough(paintedSelectionEnd, event);
+        int insertedEnd = event.offset() + event.insertedLength();
+        if (editedEnd < editedStart) {
+            editedStart = event.offset();
+            editedEnd = insertedEnd;
+        } else {
+            editedStart = Math.min(Selection.moveThrough(editedStart, event), event.offset());
+            editedEnd = Math.max(Selection.moveThrough(editedEnd, event), insertedEnd);
+        }
+        editedSinceFrame = true;
+    }
+
+    /** Makes the next frame repaint everything, for changes the rows cannot show, such as a resize. */
+    public void invalidateAll() {
+        dirtyRows.invalidateAll();
+    }
+
+    public PaintedFrame paint(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines,
+                              int viewportRow, int visibleRows, double cursorX, double cursorY, boolean caretVisible) {
+        return paint(surface, document, visualLines, viewportRow, visibleRows, cursorX, cursorY, caretVisible, 0, 0);
+    }
+
+    /**
+     * Paints the frame with {@code [selectionStart, selectionEnd)} highlighted. Rows are repainted for a change of
+     * selection only where it gained or lost text, so extending a selection repaints the rows it grew into. Rows
+     * edited since the last frame without an edit are filled as text rather than drawn from the renderer's tiles,
+     * so a run of typing rasterizes nothing; the first frame after it lets them be tiled again.
+     * @param visualLines layout around the viewport
+     * @param viewportRow index in {@code visualLines} of the row at the top of the viewport
+     * @param visibleRows rows the surface shows
+     */
+    public PaintedFrame paint(RenderSurface surface, ReadOnlyDocument document, List<VisualLine> visualLines,
+                              int viewportRow, int visibleRows, double cursorX, double cursorY, boolean caretVisible,
+                              int selectionStart, int selectionEnd) {
+        int start = Math.min(selectionStart, selectionEnd);
+        int end = Math.max(selectionStart, selectionEnd);
+        renderer.setSelection(start, end);
+        if (!editedSinceFrame) editedEnd = editedStart - 1;
+        editedSinceFrame = false;
+        renderer.setLiveRange(editedStart, editedEnd);
+        int firstOnScreen = Math.min(viewportRow, visualLines.size());
+        List<VisualLine> onScreen = visualLines.subList(firstOnScreen,
+                Math.min(visualLines.size(), viewportRow + visibleRows));
+        int caretRow = renderer.screenRowAt(cursorY);
+        if (caretRow < 0 || caretRow >= visibleRows) caretRow = -1;
+
+        DirtyRows.Repaint repaint = dirtyRows.update(onScreen, caretRow);
+        int oldStart = paintedSelectionStart, oldEnd = paintedSelectionEnd;
+        paintedSelectionStart = start;
+        paintedSelectionEnd = end;
+        // an empty selection draws nothing wherever it is, so only the other one's text changes
+        if (oldStart >= oldEnd) oldStart = oldEnd = start;
+        if (start >= end) start = end = oldStart;
+        boolean scrolled = repaint != null && repaint.shift() != 0;
+        if (scrolled && !renderer.scrollRows(surface, repaint.shift())) {
+            scrolled = false;
+            repaint = null;
+        }
+
+        if (repaint == null) {
+            surface.clearRect(0, 0, surface.getWidth(), surface.getHeight());
+            renderer.drawDocumentLines(surface, document, visualLines, viewportRow, visibleRows);
+            renderer.drawCaret(surface, cursorX, cursorY, caretVisible);
+            return new PaintedFrame(onScreen.size(), false, true);
+        }
+        markSelectionChange(repaint.rows(), onScreen, oldStart, start);
+        markSelectionChange(repaint.rows(), onScreen, oldEnd, end);
+        renderer.drawDirtyRows(surface, document, visualLines, viewportRow, repaint.rows(),
+                cursorX, cursorY, caretVisible);
+        return new PaintedFrame(repaint.rows().cardinality(), scrolled, false);
+    }
+
+    /** Marks the rows holding any of the text between where a selection end was drawn and where it is now. */
+    private static void markSelectionChange(BitSet rows, List<VisualLine> onScreen, int before, int now) {
+        int from = Math.min(before, now);
+        int to = Math.max(before, now);
+        if (from == to) return;
+        for (int row = 0; row < onScreen.size(); row++) {
+            VisualLine line = onScreen.get(row);
+            if (line.startPosition() < to && line.endPosition() > from) rows.set(row);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package texteditor.view;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Coalesces requests to redraw into at most one frame per JavaFX pulse. Input handlers only call
+ * {@link #requestFrame()}; the frame runs on the next pulse however many requests came in before it, so key
+ * repeat or trackpad momentum faster than the display cannot queue up layouts and repaints. The pulse timer runs
+ * only while frames are being requested, and stops after a pulse that had nothing to draw.
+ */
+public class FrameScheduler {
+    private final Runnable frame;
+    private final Runnable startPulses;
+    private final Runnable stopPulses;
+    private boolean requested;
+    private boolean running;
+    private long requests;
+    private long frames;
+
+    /** Runs {@code frame} on the FX pulse; must be created and used on the FX thread. */
+    public FrameScheduler(Runnable frame) {
+        this.frame = frame;
+        AnimationTimer timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse();
+            }
+        };
+        this.startPulses = timer::start;
+        this.stopPulses = timer::stop;
+    }
+
+    /** Scheduler driven by whoever calls {@link #onPulse()}, which calls back to start and stop the pulses. */
+    FrameScheduler(Runnable frame, Runnable startPulses, Runnable stopPulses) {
+        this.frame = frame;
+        this.startPulses = startPulses;
+        this.stopPulses = stopPulses;
+    }
+
+    /** Asks for a frame on the next pulse. */
+    public void requestFrame() {
+        requests++;
+        requested = true;
+        if (!running) {
+            running = true;
+            startPulses.run();
+        }
+    }
+
+    public boolean isFrameRequested() {
+        return requested;
+    }
+
+    /** Runs a requested frame now instead of on the next pulse. */
+    public void flush() {
+        if (!requested) return;
+        requested = false;
+        frames++;
+        frame.run();
+    }
+
+    void onPulse() {
+        if (!requested) {
+            running = false;
+            stopPulses.run();
+            return;
+        }
+        flush();
+    }
+
+    /** Calls to {@link #requestFrame()} so far. */
+    public long getRequests() {
+        return requests;
+    }
+
+    /** Frames run so far; the difference from {@link #getRequests()} is what coalescing saved. */
+    public long getFrames() {
+        return frames;
+    }
+}
@@ -0,0 +1,99 @@
+package texteditor.view;
+
+import java.util.Arrays;
+
+/**
+ * Times of the most recent frames, for telling whether drawing keeps up with the display. A frame is the time
+ * {@link EditorCanvas#draw()} takes, layout included; it has to stay under {@link #FRAME_BUDGET_NANOS} for the
+ * editor to keep up with a 60Hz display while scrolling.
+ */
+public class FrameStats {
+    public static final long FRAME_BUDGET_NANOS = 1_000_000_000L / 60;
+    /** Frames kept, about ten seconds of continuous scrolling. */
+    static final int WINDOW = 600;
+
+    private final long[] nanos = new long[WINDOW];
+    private int next;
+    private int size;
+    private long frames;
+    private long rowsPainted;
+    private long scrolledFrames;
+    private long fullFrames;
+    private long drawCalls;
+    private long stateChanges;
+
+    /**
+     * @param rowsPainted rows the frame drew text for
+     * @param scrolled whether the frame moved the last frame's pixels instead of repainting them
+     * @param full whether the frame repainted the whole viewport
+     */
+    public void record(long frameNanos, int rowsPainted, boolean scrolled, boolean full) {
+        nanos[next] = frameNanos;
+        next = (next + 1) % WINDOW;
+        size = Math.min(size + 1, WINDOW);
+        frames++;
+        this.rowsPainted += rowsPainted;
+        if (scrolled) scrolledFrames++;
+        if (full) fullFrames++;
+    }
+
+    /**
+     * Adds what the last recorded frame asked of the surface.
+     * @param stateChanges calls that set the font, fill or stroke
+     */
+    public void recordCalls(long drawCalls, long stateChanges) {
+        this.drawCalls += drawCalls;
+        this.stateChanges += stateChanges;
+    }
+
+    public long getFrames() {return frames;}
+
+    public long getScrolledFrames() {return scrolledFrames;}
+
+    public long getFullFrames() {return fullFrames;}
+
+    public double averageRowsPainted() {
+        return frames == 0 ? 0 : (double) rowsPainted / frames;
+    }
+
+    public double averageDrawCalls() {
+        return frames == 0 ? 0 : (double) drawCalls / frames;
+    }
+
+    public double averageStateChanges() {
+        return frames == 0 ? 0 : (double) stateChanges / frames;
+    }
+
+    /** Frame time at {@code quantile} of the recent frames, in milliseconds. */
+    public double percentileMillis(double quantile) {
+        if (size == 0) return 0;
+        long[] sorted = Arrays.copyOf(nanos, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, rank))] / 1e6;
+    }
+
+    /** Share of the recent frames that fit in the 60Hz frame budget. */
+    public double withinBudget() {
+        if (size == 0) return 1;
+        int within = 0;
+        for (int i = 0; i < size; i++) {
+            if (nanos[i] <= FRAME_BUDGET_NANOS) within++;
+        }
+        return (double) within / size;
+    }
+
+    /** Frames per second that the recent 99th percentile frame time would sustain. */
+    public double sustainableFps() {
+        double p99 = percentileMillis(0.99);
+        return p99 == 0 ? Double.POSITIVE_INFINITY : 1000 / p99;
+    }
+
+    public String summary() {
+        return String.format("frames=%d p50=%.2fms p99=%.2fms max=%.2fms fps(p99)=%.0f within60Hz=%.1f%% "
+                        + "scrolled=%d full=%d rows/frame=%.1f calls/frame=%.1f stateChanges/frame=%.1f",
+                frames, percentileMillis(0.50), percentileMillis(0.99), percentileMillis(1.0), sustainableFps(),
+                100 * withinBudget(), scrolledFrames, fullFrames, averageRowsPainted(), averageDrawCalls(),
+                averageStateChanges());
+    }
+}
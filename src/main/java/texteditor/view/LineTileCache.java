@@ -0,0 +1,155 @@
+package texteditor.view;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.transform.Transform;
+import texteditor.view.render.RenderSurface;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rows of text rasterized once into images, so that redrawing or scrolling to a row that is already cached is a
+ * single {@code drawImage} instead of laying out and filling its glyphs again. Tiles are keyed by the row's text,
+ * font and fill, so equal rows share a tile wherever they are in the document, and an edited row simply misses.
+ * The least recently drawn tiles are dropped once the cache holds more than its byte budget.
+ * <p>
+ * Tiles are rasterized with a snapshot, which must happen on the FX thread.
+ */
+public class LineTileCache {
+    /** Pixels of room either side of the text for glyphs that overhang their advance. */
+    static final int MARGIN = 2;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** Draws {@code key}'s text into an image of {@code width} by {@code height} pixels. */
+    @FunctionalInterface
+    public interface Rasterizer {
+        Image rasterize(TileKey key, int width, int height, double baseline, double scale);
+    }
+
+    public record TileKey(String text, Font font, Paint fill) {
+    }
+
+    record Tile(Image image, double width, double height, long bytes) {
+    }
+
+    private final long maxBytes;
+    private final Rasterizer rasterizer;
+    // access order, so the first entry is the least recently drawn
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private double scale = 1;
+    private long hits;
+    private long misses;
+
+    public LineTileCache(long maxBytes) {
+        this(maxBytes, new SnapshotRasterizer());
+    }
+
+    public LineTileCache(long maxBytes, Rasterizer rasterizer) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+        this.rasterizer = rasterizer;
+    }
+
+    /**
+     * Draws {@code text} with its baseline at {@code y}, as {@code fillText(text, x, y)} would, from a cached
+     * tile if there is one.
+     * @param textWidth width of the text, which sizes a new tile
+     * @param scale output scale of the screen; tiles are rasterized at it and the cache is cleared if it changes
+     */
+    public void draw(RenderSurface surface, String text, double x, double y, double textWidth,
+                     double lineHeight, double baseline, double scale) {
+        if (text.isEmpty()) return;
+        Tile tile = tile(new TileKey(text, surface.getFont(), surface.getFill()), textWidth, lineHeight, baseline, scale);
+        surface.drawImage(tile.image(), x - MARGIN, y - baseline, tile.width(), tile.height());
+    }
+
+    /** Finds or rasterizes the tile for {@code key}, and marks it the most recently drawn. */
+    Tile tile(TileKey key, double textWidth, double lineHeight, double baseline, double scale) {
+        if (scale != this.scale) {
+            clear();
+            this.scale = scale;
+        }
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            misses++;
+            tile = rasterize(key, textWidth, lineHeight, baseline);
+            tiles.put(key, tile);
+            bytes += tile.bytes();
+            evict();
+        } else {
+            hits++;
+        }
+        return tile;
+    }
+
+    private Tile rasterize(TileKey key, double textWidth, double lineHeight, double baseline) {
+        double width = Math.ceil(textWidth) + 2 * MARGIN;
+        double height = Math.ceil(lineHeight);
+        int pixelWidth = (int) Math.ceil(width * scale);
+        int pixelHeight = (int) Math.ceil(height * scale);
+        Image image = rasterizer.rasterize(key, pixelWidth, pixelHeight, baseline, scale);
+        return new Tile(image, width, height, (long) pixelWidth * pixelHeight * BYTES_PER_PIXEL);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<TileKey, Tile>> eldest = tiles.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    public void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    public int size() {
+        return tiles.size();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Fills the text on a scratch canvas and snapshots it with a transparent background. */
+    private static final class SnapshotRasterizer implements Rasterizer {
+        private final Canvas scratch = new Canvas();
+        private final SnapshotParameters parameters = new SnapshotParameters();
+
+        SnapshotRasterizer() {
+            parameters.setFill(Color.TRANSPARENT);
+        }
+
+        @Override
+        public Image rasterize(TileKey key, int width, int height, double baseline, double scale) {
+            scratch.setWidth(width / scale);
+            scratch.setHeight(height / scale);
+            GraphicsContext gc = scratch.getGraphicsContext2D();
+            gc.clearRect(0, 0, scratch.getWidth(), scratch.getHeight());
+            gc.setFont(key.font());
+            gc.setFill(key.fill());
+            gc.fillText(key.text(), MARGIN, baseline);
+
+            parameters.setTransform(Transform.scale(scale, scale));
+            return scratch.snapshot(parameters, new WritableImage(width, height));
+        }
+    }
+}
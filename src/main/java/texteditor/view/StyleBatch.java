@@ -0,0 +1,86 @@
+package texteditor.view;
+
+import texteditor.view.style.StyleRun;
+import texteditor.view.style.TextStyle;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Styled pieces of text collected from several rows, grouped by style so that they can be drawn with one font
+ * and fill change per style instead of one per run. Glyphs of different pieces do not overlap, so drawing them
+ * out of document order paints the same pixels.
+ */
+final class StyleBatch {
+    /** Text to fill with its baseline at {@code (x, y)}; a live piece is never drawn from a tile. */
+    record Piece(String text, double x, double y, double width, boolean live) {
+    }
+
+    // in order of first use, which keeps the order of state changes stable from frame to frame
+    private final Map<TextStyle, List<Piece>> pieces = new LinkedHashMap<>();
+
+    // the piece of the current row being extended, as characters [pieceStart, pieceEnd) of its text
+    private String rowText;
+    private TextStyle pieceStyle;
+    private int pieceStart;
+    private int pieceEnd;
+    private double x;
+    private double y;
+    private TextMeasurer measurer;
+    private boolean live;
+
+    /**
+     * Splits a row at its style runs and adds the pieces, merging neighbours of the same style so that a row is
+     * split no more than its colours need. Characters no run covers are {@link TextStyle#PLAIN}.
+     * @param rowStart document offset of the row's first character
+     * @param x left edge of the row
+     * @param live whether the row's pieces are filled as text even when rows are drawn from tiles
+     */
+    void addRow(String text, int rowStart, List<StyleRun> runs, double x, double y, TextMeasurer measurer,
+                boolean live) {
+        this.rowText = text;
+        this.pieceStyle = TextStyle.PLAIN;
+        this.pieceStart = this.pieceEnd = 0;
+        this.x = x;
+        this.y = y;
+        this.measurer = measurer;
+        this.live = live;
+
+        for (StyleRun run : runs) {
+            int start = Math.max(run.start() - rowStart, pieceEnd);
+            int end = Math.min(run.end() - rowStart, text.length());
+            if (end <= start) continue;
+            extend(TextStyle.PLAIN, start);
+            extend(run.style(), end);
+        }
+        extend(TextStyle.PLAIN, text.length());
+        flushPiece();
+        rowText = null;
+    }
+
+    /** Takes the row up to {@code end} into the current piece if it has this style, or into a new one. */
+    private void extend(TextStyle style, int end) {
+        if (end <= pieceEnd) return;
+        if (!style.equals(pieceStyle)) {
+            flushPiece();
+            pieceStyle = style;
+            pieceStart = pieceEnd;
+        }
+        pieceEnd = end;
+    }
+
+    private void flushPiece() {
+        if (pieceEnd <= pieceStart) return;
+        String text = rowText.substring(pieceStart, pieceEnd);
+        double width = measurer.measureWidth(text);
+        pieces.computeIfAbsent(pieceStyle, s -> new ArrayList<>()).add(new Piece(text, x, y, width, live));
+        x += width;
+    }
+
+    Map<TextStyle, List<Piece>> byStyle() {
+        return pieces;
+    }
+}
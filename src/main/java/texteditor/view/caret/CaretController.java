@@ -1,23 +1,24 @@
 package texteditor.view.caret;
 
 import texteditor.model.Caret;
-import texteditor.model.PieceTable;
+import texteditor.model.Document;
 import texteditor.view.layout.VisualLine;
 import texteditor.view.text.TextMeasurer;
 
 import java.util.List;
 
 public class CaretController {
-    private final PieceTable document;
+    private final Document document;
     private final TextMeasurer measurer;
     private final Caret cursor;
     private double cursorX = 0;
     private double cursorY = 0;
+    private int viewportRow = 0;
 
     private final double paddingHorizontal;
     private final double paddingTop;
 
-    public CaretController(PieceTable document, TextMeasurer measurer, Caret cursor, double paddingHorizontal, double paddingTop) {
+    public CaretController(Document document, TextMeasurer measurer, Caret cursor, double paddingHorizontal, double paddingTop) {
         this.document = document;
         this.measurer = measurer;
         this.cursor = cursor;
@@ -25,6 +26,14 @@ public class CaretController {
         this.paddingTop = paddingTop;
     }
 
+    /**
+     * Sets which of the visual lines passed to this controller is drawn at the top of the viewport,
+     * for layouts that include overscan lines above it.
+     */
+    public void setViewportRow(int viewportRow) {
+        this.viewportRow = Math.max(0, viewportRow);
+    }
+
     public void moveLeft() {
         if (cursor == null) {return;}
         int currentPosition = cursor.getPosition();
@@ -37,7 +46,7 @@ public class CaretController {
     public void moveRight() {
         if (cursor == null) {return;}
         int currentPosition = cursor.getPosition();
-        if (currentPosition < document.getTreeLength()) {
+        if (currentPosition < document.getLength()) {
             cursor.setPosition(currentPosition + 1);
             cursor.setAffinity(Caret.Affinity.RIGHT);
         }
@@ -46,7 +55,7 @@ public class CaretController {
     public void moveToLineStart(List<VisualLine> visualLines) {
         if (cursor == null) {return;}
         int currentPosition = cursor.getPosition();
-        if (currentPosition > document.getTreeLength()) {return;}
+        if (currentPosition > document.getLength()) {return;}
 
         int lineIndex = findVisualLineIndex(currentPosition, visualLines);
         lineIndex = adjustForAffinity(currentPosition, lineIndex, visualLines);
@@ -60,7 +69,7 @@ public class CaretController {
     public void moveToLineEnd(List<VisualLine> visualLines) {
         if (cursor == null) {return;}
         int currentPosition = cursor.getPosition();
-        if (currentPosition > document.getTreeLength()) {return;}
+        if (currentPosition > document.getLength()) {return;}
 
         int lineIndex = findVisualLineIndex(currentPosition, visualLines);
         lineIndex = adjustForAffinity(currentPosition, lineIndex, visualLines);
@@ -84,7 +93,7 @@ public class CaretController {
      */
     public void moveUpOrDown(List<VisualLine> visualLines, int direction) {
         int currentPosition = cursor.getPosition();
-        if (currentPosition > document.getTreeLength()) {return;}
+        if (currentPosition > document.getLength()) {return;}
 
         int currentLineIndex = findVisualLineIndex(currentPosition, visualLines);
         currentLineIndex = adjustForAffinity(currentPosition, currentLineIndex, visualLines);
@@ -112,20 +121,13 @@ public class CaretController {
     }
 
     public void moveToClickPosition(double clickX, double clickY, List<VisualLine> visualLines) {
-        int lineIndex = (int)((clickY - paddingTop) / measurer.getLineHeight());
+        int lineIndex = viewportRow + (int)((clickY - paddingTop) / measurer.getLineHeight());
         lineIndex = Math.max(0, Math.min(lineIndex, visualLines.size() - 1));
         VisualLine line = visualLines.get(lineIndex);
 
-        // Convert X to column
-        int column = 0;
-        double width = paddingHorizontal;
-        for (; column < line.length(); column++) {
-            double charWidth = measurer.measureWidth(line.text().substring(column, column + 1));
-            width += charWidth;
-            if (width >= clickX) break;
-        }
+        int column = columnAtX(line, clickX - paddingHorizontal);
 
-        if (width < clickX) {
+        if (column >= line.length()) {
             int newPos = line.startPosition() + line.length();
             moveToLineEnd(visualLines);
         } else {
@@ -156,7 +158,7 @@ public class CaretController {
     public int findVisualLineIndex(int position, List<VisualLine> visualLines) {
         if (visualLines.isEmpty()) return -1;
 
-        int docLength = document.getTreeLength();
+        int docLength = document.getLength();
         position = Math.max(0, Math.min(position, docLength));
 
         int left = 0, right = visualLines.size() - 1;
@@ -210,16 +212,45 @@ public class CaretController {
         int col = pos - lineStart;
         col = Math.max(0, Math.min(col, vline.length()));
 
-        double x = (col == 0) ? paddingHorizontal :
-                paddingHorizontal + measurer.measureWidth(vline.text().substring(0, col));
+        double x = paddingHorizontal + widthToColumn(vline, col);
 
 
-        double y = paddingTop + measurer.getBaselineOffset() + (vIndex * measurer.getLineHeight());
+        double y = paddingTop + measurer.getBaselineOffset() + ((vIndex - viewportRow) * measurer.getLineHeight());
 
         this.cursorX = x;
         this.cursorY = y;
     }
 
+    /** Width of the first {@code column} characters of a row, read from the document. */
+    private double widthToColumn(VisualLine line, int column) {
+        if (column == 0) return 0;
+        return measurer.measureWidth(line.text(document), 0, Math.min(column, contentLength(line)));
+    }
+
+    /**
+     * First column whose character reaches {@code x}, measured from the left of the text, or the row length
+     * if {@code x} is past its end. The row is measured once and searched by its cumulative advances.
+     */
+    private int columnAtX(VisualLine line, double x) {
+        String text = line.text(document);
+        int contentLength = Math.min(contentLength(line), text.length());
+        float[] advances = new float[contentLength + 1];
+        measurer.measureAdvances(text, 0, contentLength, advances);
+        if (advances[contentLength] < x) return line.length();
+
+        int left = 0, right = contentLength;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (advances[mid + 1] >= x) right = mid;
+            else left = mid + 1;
+        }
+        return left;
+    }
+
+    private static int contentLength(VisualLine line) {
+        return line.hasNewlineChar() ? line.length() - 1 : line.length();
+    }
+
     public double getCursorX() { return cursorX;}
     public double getCursorY() { return cursorY;}
 
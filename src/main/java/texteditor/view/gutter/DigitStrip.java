@@ -0,0 +1,110 @@
+package texteditor.view.gutter;
+
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Transform;
+import texteditor.view.render.RenderSurface;
+import texteditor.view.text.TextMeasurer;
+
+/**
+ * The digits 0 to 9 rasterized once, side by side in cells as wide as the widest digit. A line number is drawn
+ * by copying one cell per digit, so numbers are never converted to strings, measured or laid out as text.
+ * <p>
+ * The default rasterizer takes a snapshot, which must happen on the FX thread.
+ */
+public final class DigitStrip {
+
+    /** Draws the ten digits into an image of ten cells of {@code cellWidth} by {@code height}, in pixels. */
+    @FunctionalInterface
+    public interface Rasterizer {
+        Image rasterize(Font font, Paint fill, int cellWidth, int height, double baseline, double scale);
+    }
+
+    private final Image image;
+    private final double digitWidth;
+    private final double height;
+    private final double scale;
+
+    /**
+     * @param scale output scale of the screen the strip is drawn on; the cells are rasterized at it
+     */
+    public DigitStrip(TextMeasurer measurer, Paint fill, double scale) {
+        this(measurer, fill, scale, DigitStrip::snapshot);
+    }
+
+    public DigitStrip(TextMeasurer measurer, Paint fill, double scale, Rasterizer rasterizer) {
+        double widest = 0;
+        for (char digit = '0'; digit <= '9'; digit++) {
+            widest = Math.max(widest, measurer.measureWidth(String.valueOf(digit)));
+        }
+        // whole device pixels per cell, so that copied cells line up
+        this.digitWidth = Math.ceil(widest * scale) / scale;
+        this.height = Math.ceil(measurer.getLineHeight() * scale) / scale;
+        this.scale = scale;
+        this.image = rasterizer.rasterize(measurer.getFont(), fill, (int) Math.round(digitWidth * scale),
+                (int) Math.round(height * scale), measurer.getBaselineOffset(), scale);
+    }
+
+    public double getDigitWidth() {
+        return digitWidth;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /** Number of decimal digits of a non-negative {@code number}. */
+    public static int digits(int number) {
+        int digits = 1;
+        while (number >= 10) {
+            number /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Draws {@code number} right-aligned to {@code right}, in the row whose top is {@code top}.
+     * @return the digits drawn
+     */
+    public int drawNumber(RenderSurface surface, int number, double right, double top) {
+        int digits = 0;
+        double x = right;
+        do {
+            x -= digitWidth;
+            int digit = number % 10;
+            double cell = digit * digitWidth * scale;
+            surface.drawImage(image, cell, 0, digitWidth * scale, height * scale, x, top, digitWidth, height);
+            number /= 10;
+            digits++;
+        } while (number > 0);
+        return digits;
+    }
+
+    /** Fills each digit centred in its cell on a scratch canvas and snapshots it with a transparent background. */
+    private static Image snapshot(Font font, Paint fill, int cellWidth, int height, double baseline, double scale) {
+        Canvas scratch = new Canvas(10 * cellWidth / scale, height / scale);
+        GraphicsContext gc = scratch.getGraphicsContext2D();
+        gc.setFont(font);
+        gc.setFill(fill);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.BASELINE);
+        double cell = cellWidth / scale;
+        for (int digit = 0; digit < 10; digit++) {
+            gc.fillText(String.valueOf(digit), (digit + 0.5) * cell, baseline);
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        parameters.setTransform(Transform.scale(scale, scale));
+        return scratch.snapshot(parameters, new WritableImage(10 * cellWidth, height));
+    }
+}
@@ -0,0 +1,52 @@
+package texteditor.view.gutter;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.paint.Color;
+import texteditor.model.Document;
+import texteditor.view.EditorCanvas;
+import texteditor.view.render.CanvasSurface;
+import texteditor.view.text.TextMeasurer;
+
+/**
+ * Line numbers beside the editor, painted right after each editor frame from that frame's layout. The canvas is
+ * as wide as the line count needs, so a binding on its width can make room for it.
+ */
+public class GutterCanvas extends Canvas {
+    private static final Color NUMBER_FILL = Color.GRAY;
+
+    private final Document document;
+    private final EditorCanvas editor;
+    private final TextMeasurer measurer;
+    private final CanvasSurface surface = new CanvasSurface(this);
+    private final LineNumberGutter gutter;
+    private DigitStrip strip;
+
+    /**
+     * @param measurer the editor's measurer, whose font the numbers are drawn in
+     * @param paddingTop space above the first row, as in the editor
+     */
+    public GutterCanvas(Document document, EditorCanvas editor, TextMeasurer measurer, double paddingTop) {
+        super(0, 300);
+        this.document = document;
+        this.editor = editor;
+        this.measurer = measurer;
+        this.gutter = new LineNumberGutter(measurer.getLineHeight(), paddingTop);
+        editor.addFrameListener(this::draw);
+        heightProperty().addListener((obs, oldHeight, newHeight) -> {
+            gutter.invalidateAll();
+            draw();
+        });
+    }
+
+    public void draw() {
+        double scale = surface.getOutputScale();
+        if (strip == null || strip.getScale() != scale) {
+            strip = new DigitStrip(measurer, NUMBER_FILL, scale);
+            gutter.invalidateAll();
+        }
+        setWidth(gutter.widthFor(document.getLineCount(), strip));
+        if (editor.getVisualLines() == null) return;
+        gutter.paint(surface, strip, document, editor.getVisualLines(), editor.getViewportRow(),
+                editor.getVisibleRows());
+    }
+}
@@ -0,0 +1,97 @@
+package texteditor.view.gutter;
+
+import texteditor.model.ReadOnlyDocument;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RenderSurface;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line numbers for the rows on screen. Only the first on-screen row is looked up in the document's line index;
+ * the rows after it count up at every newline, and rows that continue a wrapped line get no number. Each frame
+ * repaints only the rows whose number changed, so typing within a line draws nothing here. Nothing here needs
+ * the FX toolkit.
+ */
+public class LineNumberGutter {
+    /** Logical pixels either side of the numbers. */
+    static final double PADDING = 8;
+    // room for at least this many digits, so that short documents do not make the gutter jump at line 10
+    private static final int MIN_DIGITS = 2;
+    private static final int BLANK = 0;
+
+    private final double lineHeight;
+    private final double paddingTop;
+    // the number each screen row showed after the last paint, BLANK for none; null repaints every row
+    private int[] shown;
+    private double shownWidth;
+
+    /**
+     * @param lineHeight height of a row, as in the editor
+     * @param paddingTop space above the first row, as in the editor
+     */
+    public LineNumberGutter(double lineHeight, double paddingTop) {
+        this.lineHeight = lineHeight;
+        this.paddingTop = paddingTop;
+    }
+
+    /** Width for a document of {@code lineCount} lines; depends only on how many digits the count has. */
+    public double widthFor(int lineCount, DigitStrip strip) {
+        return 2 * PADDING + Math.max(MIN_DIGITS, DigitStrip.digits(lineCount)) * strip.getDigitWidth();
+    }
+
+    /** Makes the next paint repaint every row, for changes such as a new digit strip or surface size. */
+    public void invalidateAll() {
+        shown = null;
+    }
+
+    /**
+     * Paints the numbers of the {@code visibleRows} rows starting at {@code visualLines.get(viewportRow)}.
+     * @return rows repainted
+     */
+    public int paint(RenderSurface surface, DigitStrip strip, ReadOnlyDocument document, List<VisualLine> visualLines,
+                     int viewportRow, int visibleRows) {
+        int[] numbers = numbers(document, visualLines, viewportRow, visibleRows);
+        double width = surface.getWidth();
+        if (shown == null || shown.length != numbers.length || width != shownWidth) {
+            surface.clearRect(0, 0, width, surface.getHeight());
+            shown = new int[numbers.length];
+            shownWidth = width;
+        }
+
+        int painted = 0;
+        double right = width - PADDING;
+        for (int row = 0; row < numbers.length; row++) {
+            if (numbers[row] == shown[row]) continue;
+            double top = Math.floor(paddingTop + row * lineHeight);
+            double bottom = Math.ceil(paddingTop + (row + 1) * lineHeight);
+            surface.clearRect(0, top, width, bottom - top);
+            if (numbers[row] != BLANK) strip.drawNumber(surface, numbers[row], right, paddingTop + row * lineHeight);
+            shown[row] = numbers[row];
+            painted++;
+        }
+        return painted;
+    }
+
+    /** 1-based line number shown on each screen row, or {@link #BLANK}. */
+    int[] numbers(ReadOnlyDocument document, List<VisualLine> visualLines, int viewportRow, int visibleRows) {
+        int[] numbers = new int[visibleRows];
+        if (viewportRow >= visualLines.size()) return numbers;
+
+        int start = visualLines.get(viewportRow).startPosition();
+        int line = document.getLineIndex(start);
+        boolean lineStart = start == document.getLineStart(line);
+        int lineCount = document.getLineCount();
+        int end = Math.min(visualLines.size(), viewportRow + visibleRows);
+        for (int row = viewportRow; row < end; row++) {
+            if (row > viewportRow) {
+                lineStart = visualLines.get(row - 1).hasNewlineChar();
+                if (lineStart) line++;
+            }
+            // the empty row after a final newline is not a line of its own
+            if (lineStart && line < lineCount) numbers[row - viewportRow] = line + 1;
+        }
+        Arrays.fill(numbers, end - viewportRow, visibleRows, BLANK);
+        return numbers;
+    }
+}
@@ -0,0 +1,206 @@
+package texteditor.view.layout;
+
+import texteditor.model.Document;
+import texteditor.model.DocumentEvent;
+import texteditor.model.DocumentListener;
+import texteditor.model.ReadOnlyDocument;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the wrapped rows of every line after the wrap width changes, so that the height map's estimates become
+ * exact without the resize itself paying for the whole document. The pass reads a snapshot in batches of lines;
+ * each batch is handed back through the commit executor (the FX thread in the editor) and applied only if the
+ * document and width are still the ones it was counted for. Lines laid out in the meantime are left alone.
+ * <p>
+ * With a thread-safe measurer the batches are counted on a worker thread, which spreads each group of batches
+ * over the common fork-join pool and then hands them over in document order. Otherwise they are counted on the
+ * commit executor, one batch per task, so input and rendering still get a turn between them.
+ * <p>
+ * Edits have to be passed on through {@link #documentChanged(DocumentEvent)}. An edit stops a running pass, since
+ * its snapshot is out of date, but the lines counted so far stay counted: the next pass at the same width resumes
+ * from the first line not yet counted, moved by the lines the edit added or removed above it. Only a new width
+ * starts again from the first line.
+ */
+public class BackgroundRewrapper implements DocumentListener {
+    static final int BATCH_LINES = 1024;
+
+    private final LayoutEngine layoutEngine;
+    // engine the rows are counted with; shares nothing with layoutEngine but its measurer, if that is thread-safe
+    private final LayoutEngine countingEngine;
+    private final Executor commitExecutor;
+    // null when the measurer is confined to the commit thread
+    private final ExecutorService worker;
+    private final AtomicInteger generation = new AtomicInteger();
+    private Runnable onStale = () -> {};
+    // commit thread: where the next pass over resumeDocument at resumeWidth starts
+    private Document resumeDocument;
+    private double resumeWidth = Double.NaN;
+    private int resumeLine;
+    private boolean running;
+
+    public BackgroundRewrapper(LayoutEngine layoutEngine, Executor commitExecutor) {
+        this(layoutEngine, layoutEngine.getTextMeasurer(), commitExecutor);
+    }
+
+    /**
+     * @param workerMeasurer measurer to count rows with; if it is thread-safe the counting moves to a worker
+     *                       thread, at the cost of counts that may differ slightly from the layout engine's own
+     *                       until those lines are laid out
+     */
+    public BackgroundRewrapper(LayoutEngine layoutEngine, TextMeasurer workerMeasurer, Executor commitExecutor) {
+        this.layoutEngine = layoutEngine;
+        this.countingEngine = (workerMeasurer == layoutEngine.getTextMeasurer())
+                ? layoutEngine
+                : new LayoutEngine(workerMeasurer);
+        this.commitExecutor = commitExecutor;
+        this.worker = workerMeasurer.isThreadSafe()
+                ? Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "background-rewrap");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    /** Called on the commit thread when an edit made a pass stale, so the owner can start another one. */
+    public void setOnStale(Runnable onStale) {
+        this.onStale = onStale;
+    }
+
+    public boolean isBackground() {
+        return worker != null;
+    }
+
+    /**
+     * Starts counting the rows of {@code document} at {@code availableWidth}, abandoning any earlier pass. A pass
+     * at the width of the last one resumes where that one stopped. Must be called on the commit thread.
+     */
+    public void start(Document document, double availableWidth) {
+        if (document != resumeDocument || availableWidth != resumeWidth) {
+            resumeDocument = document;
+            resumeWidth = availableWidth;
+            resumeLine = 0;
+        }
+        Pass pass = new Pass(generation.incrementAndGet(), document, document.snapshot(),
+                document.getVersion(), availableWidth, resumeLine);
+        running = resumeLine < pass.snapshot.getLineCount();
+        if (!running) return;
+        if (worker != null) {
+            worker.execute(pass::countAll);
+        } else {
+            commitExecutor.execute(pass::countNextBatch);
+        }
+    }
+
+    /** Abandons the current pass; batches already counted are dropped when they arrive. */
+    public void cancel() {
+        generation.incrementAndGet();
+        running = false;
+    }
+
+    /** Commit thread: moves the resume line along with the lines above it, and stops a running pass. */
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        int editEnd = event.startLine() + event.removedLines();
+        if (editEnd <= resumeLine) {
+            resumeLine += event.insertedLines() - event.removedLines();
+        } else if (event.startLine() < resumeLine) {
+            resumeLine = event.startLine();
+        }
+        if (running) {
+            cancel();
+            onStale.run();
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        if (worker != null) worker.shutdownNow();
+    }
+
+    private final class Pass {
+        private final int generation;
+        private final Document document;
+        private final ReadOnlyDocument snapshot;
+        private final long version;
+        private final double availableWidth;
+        private final int fromLine;
+        private int nextLine;
+
+        Pass(int generation, Document document, ReadOnlyDocument snapshot, long version, double availableWidth,
+             int fromLine) {
+            this.generation = generation;
+            this.document = document;
+            this.snapshot = snapshot;
+            this.version = version;
+            this.availableWidth = availableWidth;
+            this.fromLine = fromLine;
+            this.nextLine = fromLine;
+        }
+
+        private boolean isCurrent() {
+            return BackgroundRewrapper.this.generation.get() == generation;
+        }
+
+        /**
+         * Worker thread: counts the lines a group at a time, one fork-join leaf per core, and queues each batch of
+         * a group for commit in order, so the lines committed are always the ones from {@code fromLine} down.
+         */
+        void countAll() {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            int groupLines = LayoutEngine.PARALLEL_LEAF_LINES * pool.getParallelism();
+            int lineCount = snapshot.getLineCount();
+            for (int group = fromLine; group < lineCount && isCurrent(); group += groupLines) {
+                int groupEnd = Math.min(lineCount, group + groupLines);
+                int[] groupRows = countingEngine.countRowsParallel(snapshot, availableWidth, group, groupEnd, pool);
+                for (int from = group; from < groupEnd; from += BATCH_LINES) {
+                    int batchStart = from;
+                    int[] rows = Arrays.copyOfRange(groupRows, from - group,
+                            Math.min(groupEnd, from + BATCH_LINES) - group);
+                    commitExecutor.execute(() -> commit(batchStart, rows));
+                }
+            }
+        }
+
+        /** Commit thread: counts and commits one batch, then queues the next. */
+        void countNextBatch() {
+            if (!isCurrent()) return;
+            int lineCount = snapshot.getLineCount();
+            int to = Math.min(lineCount, nextLine + BATCH_LINES);
+            if (!commit(nextLine, countingEngine.countRows(snapshot, availableWidth, nextLine, to))) return;
+            nextLine = to;
+            if (nextLine < lineCount) commitExecutor.execute(this::countNextBatch);
+        }
+
+        private boolean commit(int fromLine, int[] rows) {
+            if (!isCurrent()) return false;
+            if (document.getVersion() != version) {
+                // an edit that was not passed on, so nothing says which lines it moved
+                resumeLine = 0;
+                cancel();
+                onStale.run();
+                return false;
+            }
+            HeightMap heights = layoutEngine.currentHeightMap(document);
+            if (heights == null || heights.getAvailableWidth() != availableWidth) {
+                // a newer width or document; whoever changed it starts its own pass
+                cancel();
+                return false;
+            }
+
+            for (int i = 0; i < rows.length; i++) {
+                if (!heights.isExact(fromLine + i)) heights.setRows(fromLine + i, rows[i]);
+            }
+            resumeLine = fromLine + rows.length;
+            if (resumeLine >= snapshot.getLineCount()) running = false;
+            return true;
+        }
+    }
+}
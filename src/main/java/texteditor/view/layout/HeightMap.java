@@ -0,0 +1,155 @@
+package texteditor.view.layout;
+
+import texteditor.model.DocumentEvent;
+import texteditor.model.DocumentListener;
+import texteditor.model.ReadOnlyDocument;
+
+import java.util.Arrays;
+
+/**
+ * Number of visual rows per logical line, summed in a Fenwick tree so that "rows before line n" and "line at
+ * row r" are O(log n). Lines that have not been laid out yet carry an estimate from their length, which is
+ * replaced by the exact count the first time the layout engine wraps them. Typing within a line is a point
+ * update; edits that add or remove lines splice the arrays and rebuild the tree in one linear pass.
+ */
+public class HeightMap implements DocumentListener {
+    private final ReadOnlyDocument document;
+    private double availableWidth = Double.NaN;
+    private double charWidth = 1;
+
+    private int lineCount;
+    private int[] rows = new int[0];
+    private boolean[] exact = new boolean[0];
+    // tree[i] holds the sum of rows[i - lowbit(i), i) for 1-based i
+    private int[] tree = new int[1];
+
+    public HeightMap(ReadOnlyDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Re-estimates every line if the wrap width changed since the last call.
+     * @param charWidth typical character width used for the estimates
+     */
+    public void ensureWidth(double availableWidth, double charWidth) {
+        if (availableWidth == this.availableWidth && lineCount == document.getLineCount()) return;
+        this.availableWidth = availableWidth;
+        this.charWidth = Math.max(charWidth, 1e-3);
+
+        lineCount = document.getLineCount();
+        rows = new int[Math.max(16, lineCount)];
+        exact = new boolean[rows.length];
+        for (int line = 0; line < lineCount; line++) rows[line] = estimate(line);
+        rebuild();
+    }
+
+    /** Width the row counts are for, or NaN before the first {@link #ensureWidth}. */
+    public double getAvailableWidth() {
+        return availableWidth;
+    }
+
+    private int estimate(int line) {
+        if (!(availableWidth > 0)) return 1;
+        double width = document.getLineLength(line) * charWidth;
+        return Math.max(1, (int) Math.ceil(width / availableWidth));
+    }
+
+    /** Records the exact row count of a line that has just been laid out. */
+    public void setRows(int line, int rowCount) {
+        exact[line] = true;
+        updateRows(line, rowCount);
+    }
+
+    private void updateRows(int line, int rowCount) {
+        int delta = rowCount - rows[line];
+        if (delta == 0) return;
+        rows[line] = rowCount;
+        for (int i = line + 1; i <= lineCount; i += i & -i) tree[i] += delta;
+    }
+
+    public int getRows(int line) {
+        return rows[line];
+    }
+
+    public boolean isExact(int line) {
+        return exact[line];
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /** Visual rows above {@code line}, counting estimates for lines not laid out yet. */
+    public int rowsBefore(int line) {
+        int sum = 0;
+        for (int i = Math.min(line, lineCount); i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    public int totalRows() {
+        return rowsBefore(lineCount);
+    }
+
+    /** Logical line containing visual row {@code row}, clamped to the document. */
+    public int lineAtRow(int row) {
+        if (lineCount == 0 || row < 0) return 0;
+
+        int line = 0;
+        int remaining = row;
+        for (int step = Integer.highestOneBit(lineCount); step > 0; step >>= 1) {
+            int next = line + step;
+            if (next <= lineCount && tree[next] <= remaining) {
+                line = next;
+                remaining -= tree[next];
+            }
+        }
+        return Math.min(line, lineCount - 1);
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        if (Double.isNaN(availableWidth)) return;
+
+        int start = event.startLine();
+        int removed = event.removedLines();
+        int inserted = event.insertedLines();
+        if (start + removed > lineCount) {
+            availableWidth = Double.NaN;  // out of step; re-estimate on next use
+            return;
+        }
+
+        if (removed == inserted) {
+            for (int line = start; line < start + inserted; line++) {
+                updateRows(line, estimate(line));
+                exact[line] = false;
+            }
+            return;
+        }
+
+        int newCount = lineCount - removed + inserted;
+        if (newCount > rows.length) {
+            int capacity = Math.max(newCount, rows.length + (rows.length >> 1));
+            rows = Arrays.copyOf(rows, capacity);
+            exact = Arrays.copyOf(exact, capacity);
+        }
+        int tail = lineCount - (start + removed);
+        System.arraycopy(rows, start + removed, rows, start + inserted, tail);
+        System.arraycopy(exact, start + removed, exact, start + inserted, tail);
+        lineCount = newCount;
+        for (int line = start; line < start + inserted; line++) {
+            rows[line] = estimate(line);
+            exact[line] = false;
+        }
+        rebuild();
+    }
+
+    /** Builds the Fenwick tree from {@code rows} in linear time. */
+    private void rebuild() {
+        if (tree.length < lineCount + 1) tree = new int[rows.length + 1];
+        for (int i = 1; i <= lineCount; i++) tree[i] = rows[i - 1];
+        for (int i = 1; i <= lineCount; i++) {
+            int parent = i + (i & -i);
+            if (parent <= lineCount) tree[parent] += tree[i];
+        }
+    }
+}
@@ -1,101 +1,435 @@
 package texteditor.view.layout;
 
-import texteditor.model.PieceTable;
+import texteditor.model.Document;
+import texteditor.model.ReadOnlyDocument;
 import texteditor.view.text.TextMeasurer;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 public class LayoutEngine {
+    // lines per fork-join leaf: enough that forking is cheap next to wrapping, few enough to balance the pool
+    static final int PARALLEL_LEAF_LINES = 2048;
 
     private final TextMeasurer textMeasurer;
+    private Document cachedDocument;
+    private LineLayoutCache lineCache;
+    private HeightMap heightMap;
+    private double estimateCharWidth = Double.NaN;
 
     public LayoutEngine(TextMeasurer textMeasurer) {
         this.textMeasurer = textMeasurer;
     }
 
-    public LayoutResult calculateLayout(PieceTable document, double availableWidth) {
+    public LayoutResult calculateLayout(ReadOnlyDocument document, double availableWidth) {
         if (document == null) {
             return new LayoutResult(Collections.emptyList());
         }
 
         List<VisualLine> visualLines = new ArrayList<>();
-        int logicalLineStartPosition = 0;
         int lineCount = document.getLineCount();
+        layoutLines(document, availableWidth, 0, lineCount, Integer.MAX_VALUE, visualLines);
+        return new LayoutResult(visualLines, 0, lineCount, 0);
+    }
 
-        for (int i = 0; i < lineCount; i++) {
-            String logicalLine = document.getLine(i);
-            LineComponents components = parseLineComponents(logicalLine);
+    /**
+     * Lays out the whole document on {@code pool}: ranges of logical lines are wrapped concurrently and their rows
+     * joined in document order, giving the same rows as {@link #calculateLayout}. The document is read from
+     * several threads, so pass a snapshot of a document that is being edited. The line cache is not used. With a
+     * measurer that is not thread-safe the layout runs sequentially on the calling thread.
+     */
+    public LayoutResult calculateLayoutParallel(ReadOnlyDocument document, double availableWidth, ForkJoinPool pool) {
+        if (document == null) {
+            return new LayoutResult(Collections.emptyList());
+        }
 
-            double contentWidth = textMeasurer.measureWidth(components.content());
+        int lineCount = document.getLineCount();
+        int leafCount = (lineCount + PARALLEL_LEAF_LINES - 1) / PARALLEL_LEAF_LINES;
+        List<List<VisualLine>> leaves = new ArrayList<>(Collections.nCopies(leafCount, null));
+        charWidthEstimate();  // settle the lazy field before workers read it
 
-            if (contentWidth <= availableWidth) {
-                createSingleVisualLine(visualLines, components, logicalLineStartPosition);
+        if (textMeasurer.isThreadSafe()) {
+            pool.invoke(new LeafTask(0, leafCount,
+                    leaf -> leaves.set(leaf, layoutLeaf(document, availableWidth, leaf))));
+        } else {
+            for (int leaf = 0; leaf < leafCount; leaf++) leaves.set(leaf, layoutLeaf(document, availableWidth, leaf));
+        }
+
+        int rowCount = 0;
+        for (List<VisualLine> rows : leaves) rowCount += rows.size();
+        // appended one by one, since addAll would copy each leaf to an array first
+        List<VisualLine> visualLines = new ArrayList<>(rowCount);
+        for (List<VisualLine> rows : leaves) {
+            for (VisualLine row : rows) visualLines.add(row);
+        }
+        return new LayoutResult(visualLines, 0, lineCount, 0);
+    }
+
+    /**
+     * Counts the rows of lines {@code [fromLine, toLine)} on {@code pool}, giving the same counts as
+     * {@link #countRows(ReadOnlyDocument, double, int, int)}. This is the whole-document pass that only needs
+     * heights, so no rows are built. As with {@link #calculateLayoutParallel}, pass a snapshot of a document that
+     * is being edited; with a measurer that is not thread-safe the lines are counted on the calling thread.
+     */
+    public int[] countRowsParallel(ReadOnlyDocument document, double availableWidth, int fromLine, int toLine,
+                                   ForkJoinPool pool) {
+        if (!textMeasurer.isThreadSafe()) return countRows(document, availableWidth, fromLine, toLine);
+
+        int[] rows = new int[Math.max(0, toLine - fromLine)];
+        int leafCount = (rows.length + PARALLEL_LEAF_LINES - 1) / PARALLEL_LEAF_LINES;
+        pool.invoke(new LeafTask(0, leafCount, leaf -> {
+            int from = fromLine + leaf * PARALLEL_LEAF_LINES;
+            int to = Math.min(toLine, from + PARALLEL_LEAF_LINES);
+            System.arraycopy(countRows(document, availableWidth, from, to), 0, rows, from - fromLine, to - from);
+        }));
+        return rows;
+    }
+
+    /** Splits a range of leaves in half until one is left, then runs {@code leafAction} on it. */
+    @SuppressWarnings("serial")  // RecursiveAction is Serializable, but these tasks only live inside one invoke
+    private static final class LeafTask extends RecursiveAction {
+        private final int fromLeaf;
+        private final int toLeaf;
+        private final IntConsumer leafAction;
+
+        LeafTask(int fromLeaf, int toLeaf, IntConsumer leafAction) {
+            this.fromLeaf = fromLeaf;
+            this.toLeaf = toLeaf;
+            this.leafAction = leafAction;
+        }
+
+        @Override
+        protected void compute() {
+            if (toLeaf - fromLeaf <= 1) {
+                if (fromLeaf < toLeaf) leafAction.accept(fromLeaf);
+                return;
+            }
+            int mid = (fromLeaf + toLeaf) >>> 1;
+            invokeAll(new LeafTask(fromLeaf, mid, leafAction), new LeafTask(mid, toLeaf, leafAction));
+        }
+    }
+
+    /** Rows of one leaf's lines at their document positions, without touching any engine state. */
+    private List<VisualLine> layoutLeaf(ReadOnlyDocument document, double availableWidth, int leaf) {
+        int fromLine = leaf * PARALLEL_LEAF_LINES;
+        int toLine = Math.min(document.getLineCount(), fromLine + PARALLEL_LEAF_LINES);
+        List<VisualLine> rows = new ArrayList<>(toLine - fromLine);
+
+        int lineStart = document.getLineStart(fromLine);
+        for (int line = fromLine; line < toLine; line++) {
+            int lineLength = document.getLineLength(line);
+            if (LongLineLayout.isLong(lineLength)) {
+                int contentLength = contentLength(document, lineStart, lineLength);
+                new LongLineLayout(contentLength, contentLength < lineLength, availableWidth, estimateCharWidth)
+                        .appendRows(document, lineStart, 0, Integer.MAX_VALUE, this, rows);
             } else {
-                createWrappedVisualLines(visualLines, components, logicalLineStartPosition, availableWidth);
+                String text = document.getLine(line);
+                int contentLength = contentLength(text);
+                Collections.addAll(rows, wrap(text, contentLength, contentLength < text.length(), lineStart,
+                        availableWidth));
             }
-            logicalLineStartPosition += document.getLineLength(i);
+            lineStart += lineLength;
         }
-        return new LayoutResult(visualLines);
+        return rows;
     }
 
-    public void createSingleVisualLine(List<VisualLine> visualLines, LineComponents components, int startPosition) {
-        String fullText = components.content() + components.newline();
-        boolean hasNewlineChar = !components.newline().isEmpty();
-        visualLines.add(new VisualLine(fullText, startPosition, hasNewlineChar));
+    /**
+     * Lays out only the logical lines around the viewport: up to {@code overscanLines} lines above
+     * {@code topLine}, then enough lines to fill {@code visibleRows} visual rows plus {@code overscanLines}
+     * more. The cost depends on the viewport size, not on the document length.
+     * @param topLine logical line shown at the top of the viewport
+     */
+    public LayoutResult calculateViewportLayout(ReadOnlyDocument document, double availableWidth,
+                                                int topLine, int visibleRows, int overscanLines) {
+        return calculateViewportLayout(document, availableWidth, topLine, 0, visibleRows, overscanLines);
     }
 
-    public void createWrappedVisualLines(List<VisualLine> visualLines, LineComponents components,
-                                         int startPosition, double availableWidth) {
-        String remainingString = components.content();
-        int currentPosition = startPosition;
+    /**
+     * Viewport layout whose top row is row {@code rowInLine} of {@code topLine}. Lines up to
+     * {@link LongLineLayout#LONG_LINE_CHARS} are laid out whole; of a longer line only the chunks within
+     * {@code overscanLines} rows of the viewport are read and wrapped.
+     */
+    public LayoutResult calculateViewportLayout(ReadOnlyDocument document, double availableWidth,
+                                                int topLine, int rowInLine, int visibleRows, int overscanLines) {
+        if (document == null) {
+            return new LayoutResult(Collections.emptyList());
+        }
+
+        int lineCount = document.getLineCount();
+        topLine = Math.max(0, Math.min(topLine, lineCount - 1));
+        int topLineStart = document.getLineStart(topLine);
+        List<VisualLine> visualLines = new ArrayList<>();
 
-        while (!remainingString.isEmpty()) {
-            int breakpoint = findOptimalBreakpoint(remainingString, availableWidth);
-            String piece = remainingString.substring(0, breakpoint);
-            remainingString = remainingString.substring(breakpoint);
+        // start far enough up the top line for the overscan; only a long line can start part way down
+        int firstRow = 0;
+        LongLineLayout longLine = longLineOf(document, availableWidth, topLine);
+        if (longLine != null) {
+            rowInLine = Math.min(Math.max(0, rowInLine), longLine.totalRows() - 1);
+            firstRow = Math.max(0, rowInLine - overscanLines);
+        }
+        int firstLine = (firstRow > 0) ? topLine : Math.max(0, topLine - overscanLines);
+        layoutLines(document, availableWidth, firstLine, topLine, Integer.MAX_VALUE, visualLines);
 
-            boolean isLastPiece = remainingString.isEmpty();
-            String pieceText = isLastPiece ? piece + components.newline() : piece;
-            boolean hasNewLineChar = isLastPiece && !components.newline().isEmpty();
+        int topLineRow = visualLines.size() - firstRow;
+        int rowsWanted = Math.max(0, rowInLine) + Math.max(0, visibleRows) + overscanLines;
+        int topLineRows = appendLineRows(document, availableWidth, topLine, topLineStart, firstRow,
+                rowsWanted, visualLines);
+        int viewportRow = topLineRow + Math.min(Math.max(0, rowInLine), topLineRows - 1);
 
-            visualLines.add(new VisualLine(pieceText, currentPosition, hasNewLineChar));
+        int endLine = layoutLines(document, availableWidth, topLine + 1, lineCount,
+                viewportRow + Math.max(0, visibleRows) + overscanLines, visualLines);
+        return new LayoutResult(visualLines, firstLine, endLine, viewportRow);
+    }
+
+    /**
+     * Appends the visual lines of logical lines {@code [fromLine, toLine)}, stopping early once
+     * {@code maxVisualLines} is reached.
+     * @return the first logical line that was not laid out
+     */
+    private int layoutLines(ReadOnlyDocument document, double availableWidth, int fromLine, int toLine,
+                            int maxVisualLines, List<VisualLine> visualLines) {
+        if (fromLine >= toLine) return fromLine;
+
+        int lineStart = document.getLineStart(fromLine);
+        int line = fromLine;
+        for (; line < toLine && visualLines.size() < maxVisualLines; line++) {
+            appendLineRows(document, availableWidth, line, lineStart, 0, maxVisualLines - visualLines.size(),
+                    visualLines);
+            lineStart += document.getLineLength(line);
+        }
+        return line;
+    }
 
-            currentPosition += piece.length();
-            if (isLastPiece && !components.newline().isEmpty()) {
-                currentPosition += components.newline().length();
+    /**
+     * Appends rows {@code [fromRow, toRow)} of one logical line, clamped to the rows it has, and records the
+     * line's row count in the height map.
+     * @return the number of rows the line has
+     */
+    private int appendLineRows(ReadOnlyDocument document, double availableWidth, int line, int lineStart,
+                               int fromRow, int toRow, List<VisualLine> visualLines) {
+        LineLayoutCache cache = cacheFor(document);
+        HeightMap heights = (cache != null) ? getHeightMap((Document) document, availableWidth) : null;
+
+        LongLineLayout longLine = longLineOf(document, availableWidth, line);
+        if (longLine != null) {
+            longLine.appendRows(document, lineStart, fromRow, toRow, this, visualLines);
+            if (heights != null && heights.getRows(line) != longLine.totalRows()) {
+                heights.setRows(line, longLine.totalRows());
             }
+            return longLine.totalRows();
+        }
+
+        int lineCount = document.getLineCount();
+        VisualLine[] rows = (cache != null) ? cache.get(line, lineCount, availableWidth) : null;
+        if (rows == null) {
+            rows = layoutLine(document.getLine(line), availableWidth);
+            if (cache != null) cache.put(line, rows);
+            if (heights != null) heights.setRows(line, rows.length);
+        }
+        for (int i = Math.max(0, fromRow); i < rows.length && i < toRow; i++) {
+            visualLines.add(rows[i].withStartPosition(lineStart + rows[i].startPosition()));
         }
+        return rows.length;
     }
 
-    public int findOptimalBreakpoint(String text, double availableWidth) {
-        if (text.isEmpty()) return 0;
+    /** The chunked layout of {@code line} if it is long enough to need one, else null. */
+    private LongLineLayout longLineOf(ReadOnlyDocument document, double availableWidth, int line) {
+        int lineLength = document.getLineLength(line);
+        if (!LongLineLayout.isLong(lineLength)) return null;
 
-        int left = 0, right = text.length();
-        while (left < right) {
-            int mid = left + (right - left + 1) / 2; // +1 gets the last passing index and prevents infinite loop (upper bound)
-            String sub = text.substring(0, mid);
+        LineLayoutCache cache = cacheFor(document);
+        int lineCount = document.getLineCount();
+        LongLineLayout layout = (cache != null) ? cache.getLongLine(line, lineCount, availableWidth) : null;
+        if (layout == null) {
+            int contentLength = contentLength(document, document.getLineStart(line), lineLength);
+            layout = new LongLineLayout(contentLength, contentLength < lineLength, availableWidth, charWidthEstimate());
+            if (cache != null) cache.putLongLine(line, layout);
+        }
+        return layout;
+    }
 
-            if (textMeasurer.measureWidth(sub) <= availableWidth) {
-                left = mid;
-            } else {
-                right = mid - 1;
+    /**
+     * Row of its logical line that {@code position} falls in, at the start of the row when it sits on a wrap.
+     * Only the part of the line around the position is laid out.
+     */
+    public int rowInLine(Document document, double availableWidth, int position) {
+        int line = document.getLineIndex(position);
+        int lineStart = document.getLineStart(line);
+        int offset = position - lineStart;
+
+        LongLineLayout longLine = longLineOf(document, availableWidth, line);
+        if (longLine != null) return longLine.rowOf(document, lineStart, offset, this);
+
+        List<VisualLine> rows = new ArrayList<>();
+        appendLineRows(document, availableWidth, line, lineStart, 0, Integer.MAX_VALUE, rows);
+        int row = 0;
+        while (row < rows.size() - 1 && rows.get(row).endPosition() <= position) row++;
+        return row;
+    }
+
+    /**
+     * Wraps one logical line into rows whose positions are relative to the start of the line. The line is measured
+     * once; the rows keep only their range and width, not its text.
+     */
+    private VisualLine[] layoutLine(String logicalLine, double availableWidth) {
+        int contentLength = contentLength(logicalLine);
+        return wrap(logicalLine, contentLength, contentLength < logicalLine.length(), 0, availableWidth);
+    }
+
+    /**
+     * Wraps {@code text[0, contentLength)} into rows starting at {@code startPosition}; the last row also covers
+     * the newline if there is one.
+     */
+    VisualLine[] wrap(CharSequence text, int contentLength, boolean hasNewline, int startPosition,
+                      double availableWidth) {
+        float[] advances = new float[contentLength + 1];
+        textMeasurer.measureAdvances(text, 0, contentLength, advances);
+
+        List<VisualLine> rows = new ArrayList<>(1);
+        if (advances[contentLength] <= availableWidth || contentLength == 0) {
+            createSingleVisualLine(rows, contentLength, hasNewline, startPosition, advances);
+        } else {
+            createWrappedVisualLines(rows, contentLength, hasNewline, startPosition, availableWidth, advances);
+        }
+        return rows.toArray(new VisualLine[0]);
+    }
+
+    /**
+     * Counts the rows each of lines {@code [fromLine, toLine)} wraps into, without building the rows or touching
+     * the line cache. Long lines are read and counted a chunk at a time, as they are laid out. With a thread-safe
+     * measurer this may run on any thread against a snapshot.
+     */
+    public int[] countRows(ReadOnlyDocument document, double availableWidth, int fromLine, int toLine) {
+        int[] rows = new int[Math.max(0, toLine - fromLine)];
+        for (int line = fromLine; line < toLine; line++) {
+            int lineLength = document.getLineLength(line);
+            if (!LongLineLayout.isLong(lineLength)) {
+                String text = document.getLine(line);
+                rows[line - fromLine] = countRows(text, contentLength(text), availableWidth);
+                continue;
+            }
+
+            int lineStart = document.getLineStart(line);
+            int contentLength = contentLength(document, lineStart, lineLength);
+            int count = 0;
+            for (int chunk = 0, start = 0; start < contentLength; chunk++) {
+                int end = LongLineLayout.chunkBoundary(document, lineStart, contentLength, chunk + 1);
+                String text = document.getText(lineStart + start, lineStart + end);
+                count += countRows(text, text.length(), availableWidth);
+                start = end;
             }
+            rows[line - fromLine] = Math.max(1, count);
         }
-        return Math.max(1, Math.min(left, text.length()));
+        return rows;
     }
 
-    public LineComponents parseLineComponents(String logicalLine) {
-        if (logicalLine.endsWith("\n")) {
-            return new LineComponents(logicalLine.substring(0, logicalLine.length() - 1), "\n");
-        } else {
-            return new LineComponents(logicalLine, "");
+    private int countRows(String text, int contentLength, double availableWidth) {
+        float[] advances = new float[contentLength + 1];
+        textMeasurer.measureAdvances(text, 0, contentLength, advances);
+        if (advances[contentLength] <= availableWidth) return 1;
+
+        int count = 0;
+        for (int rowStart = 0; rowStart < contentLength; count++) {
+            rowStart = findOptimalBreakpoint(advances, rowStart, contentLength, availableWidth);
         }
+        return count;
     }
 
+    /** Length of a line without its trailing newline, reading only its last character. */
+    private static int contentLength(ReadOnlyDocument document, int lineStart, int lineLength) {
+        int lineEnd = lineStart + lineLength;
+        boolean newline = lineLength > 0 && document.getText(lineEnd - 1, lineEnd).charAt(0) == '\n';
+        return newline ? lineLength - 1 : lineLength;
+    }
 
-    private record LineComponents(String content, String newline) {
+    /**
+     * Returns the line cache for an editable document, starting a new one when a different document is passed.
+     * Snapshots are short-lived and get no cache.
+     */
+    private LineLayoutCache cacheFor(ReadOnlyDocument document) {
+        if (!(document instanceof Document editable)) return null;
+        if (editable != cachedDocument) {
+            if (cachedDocument != null) {
+                cachedDocument.removeDocumentListener(lineCache);
+                cachedDocument.removeDocumentListener(heightMap);
+            }
+            cachedDocument = editable;
+            lineCache = new LineLayoutCache();
+            heightMap = new HeightMap(editable);
+            editable.addDocumentListener(lineCache);
+            editable.addDocumentListener(heightMap);
+        }
+        return lineCache;
+    }
+
+    /**
+     * Returns the row counts of {@code document} at {@code availableWidth}: exact for every line this engine
+     * has wrapped, estimated from line length for the rest.
+     */
+    public HeightMap getHeightMap(Document document, double availableWidth) {
+        cacheFor(document);
+        heightMap.ensureWidth(availableWidth, charWidthEstimate());
+        return heightMap;
+    }
+
+    /** Typical character width, for estimating the rows of text that has not been laid out. */
+    private double charWidthEstimate() {
+        if (Double.isNaN(estimateCharWidth)) estimateCharWidth = textMeasurer.measureWidth("0");
+        return estimateCharWidth;
+    }
+
+    /** The height map of {@code document} as it stands, or null if this engine is tracking another document. */
+    HeightMap currentHeightMap(Document document) {
+        return (document == cachedDocument) ? heightMap : null;
+    }
+
+    public TextMeasurer getTextMeasurer() {
+        return textMeasurer;
+    }
+
+    public void createSingleVisualLine(List<VisualLine> visualLines, int contentLength, boolean hasNewline,
+                                       int startPosition, float[] advances) {
+        int length = contentLength + (hasNewline ? 1 : 0);
+        visualLines.add(new VisualLine(startPosition, length, hasNewline, advances[contentLength]));
+    }
+
+    public void createWrappedVisualLines(List<VisualLine> visualLines, int contentLength, boolean hasNewline,
+                                         int startPosition, double availableWidth, float[] advances) {
+        int rowStart = 0;
+
+        while (rowStart < contentLength) {
+            int rowEnd = findOptimalBreakpoint(advances, rowStart, contentLength, availableWidth);
+
+            boolean isLastPiece = rowEnd == contentLength;
+            boolean hasNewLineChar = isLastPiece && hasNewline;
+            int length = rowEnd - rowStart + (hasNewLineChar ? 1 : 0);
+
+            visualLines.add(new VisualLine(startPosition + rowStart, length, hasNewLineChar,
+                    advances[rowEnd] - advances[rowStart]));
+            rowStart = rowEnd;
+        }
+    }
+
+    /**
+     * Returns the end of the longest row starting at {@code rowStart} that fits in {@code availableWidth},
+     * taking at least one character so that wrapping always makes progress. Walking forward from the row start
+     * keeps wrapping a whole line linear in its length.
+     * @param advances cumulative widths, {@code advances[i]} being the width of the first {@code i} characters
+     */
+    public int findOptimalBreakpoint(float[] advances, int rowStart, int contentLength, double availableWidth) {
+        double limit = advances[rowStart] + availableWidth;
+        int rowEnd = rowStart;
+        while (rowEnd < contentLength && advances[rowEnd + 1] <= limit) rowEnd++;
+        return Math.max(rowStart + 1, rowEnd);
+    }
+
+    /** Length of a logical line without its trailing newline. */
+    private static int contentLength(String logicalLine) {
+        return logicalLine.endsWith("\n") ? logicalLine.length() - 1 : logicalLine.length();
     }
 
     /**
@@ -104,9 +438,19 @@ public class LayoutEngine {
 
     public static class LayoutResult {
         private final List<VisualLine> visualLines;
+        private final int firstLine;
+        private final int endLine;
+        private final int viewportRow;
 
         public LayoutResult(List<VisualLine> visualLines) {
+            this(visualLines, 0, 0, 0);
+        }
+
+        public LayoutResult(List<VisualLine> visualLines, int firstLine, int endLine, int viewportRow) {
             this.visualLines = Collections.unmodifiableList(new ArrayList<>(visualLines));
+            this.firstLine = firstLine;
+            this.endLine = endLine;
+            this.viewportRow = viewportRow;
         }
 
         public List<VisualLine> getVisualLines() {
@@ -120,5 +464,20 @@ public class LayoutEngine {
         public boolean isEmpty() {
             return visualLines.isEmpty();
         }
+
+        /** First logical line that was laid out. */
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        /** Logical line after the last one that was laid out. */
+        public int getEndLine() {
+            return endLine;
+        }
+
+        /** Index of the visual line drawn at the top of the viewport; the lines before it are overscan. */
+        public int getViewportRow() {
+            return viewportRow;
+        }
     }
 }
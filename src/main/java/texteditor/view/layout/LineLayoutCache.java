@@ -0,0 +1,67 @@
+package texteditor.view.layout;
+
+import texteditor.model.DocumentEvent;
+import texteditor.model.DocumentListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wrapped rows of each logical line, kept between frames. Rows are stored relative to the start of their line,
+ * so an edit only drops the lines it replaced; lines after it shift in the list but stay valid. Long lines keep
+ * their chunked layout in a parallel list that is spliced the same way.
+ */
+class LineLayoutCache implements DocumentListener {
+    private final List<VisualLine[]> lines = new ArrayList<>();
+    private final List<LongLineLayout> longLines = new ArrayList<>();
+    private double width = Double.NaN;
+
+    /**
+     * @return the cached rows of {@code line} at {@code width}, or null if they need to be laid out
+     */
+    VisualLine[] get(int line, int lineCount, double width) {
+        return sync(lineCount, width) ? lines.get(line) : null;
+    }
+
+    void put(int line, VisualLine[] rows) {
+        lines.set(line, rows);
+    }
+
+    /** @return the chunked layout of a long line at {@code width}, or null if there is none yet */
+    LongLineLayout getLongLine(int line, int lineCount, double width) {
+        return sync(lineCount, width) ? longLines.get(line) : null;
+    }
+
+    void putLongLine(int line, LongLineLayout layout) {
+        longLines.set(line, layout);
+    }
+
+    /** @return false if the cache had to be emptied */
+    private boolean sync(int lineCount, double width) {
+        if (width != this.width || lines.size() != lineCount) {
+            // first use, a resize, or an edit we were not told about
+            lines.clear();
+            lines.addAll(Collections.nCopies(lineCount, null));
+            longLines.clear();
+            longLines.addAll(Collections.nCopies(lineCount, null));
+            this.width = width;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        int start = event.startLine();
+        if (start + event.removedLines() > lines.size()) {
+            lines.clear();
+            longLines.clear();
+            return;
+        }
+        lines.subList(start, start + event.removedLines()).clear();
+        lines.addAll(start, Collections.nCopies(event.insertedLines(), null));
+        longLines.subList(start, start + event.removedLines()).clear();
+        longLines.addAll(start, Collections.nCopies(event.insertedLines(), null));
+    }
+}
@@ -0,0 +1,130 @@
+package texteditor.view.layout;
+
+import texteditor.model.ReadOnlyDocument;
+
+import java.util.List;
+
+/**
+ * Layout of one very long logical line (minified JSON, single-line logs), wrapped a fixed-size chunk at a time.
+ * Only the chunks that rows are asked for are read from the document and measured; the others count an estimate
+ * of their rows until then. Rows never span a chunk boundary, so a chunk's rows do not depend on its neighbours.
+ * Chunks are {@link #CHUNK_CHARS} long, less one where a boundary would split a surrogate pair.
+ */
+final class LongLineLayout {
+    /** Lines longer than this many characters are laid out in chunks. */
+    static final int LONG_LINE_CHARS = 64 * 1024;
+    static final int CHUNK_CHARS = 4096;
+
+    private final int contentLength;
+    private final boolean hasNewline;
+    private final double availableWidth;
+    private final int[] chunkRows;
+    // rows of each chunk relative to the start of the line; null until the chunk is laid out
+    private final VisualLine[][] chunks;
+    private int totalRows;
+
+    /**
+     * @param contentLength length of the line without its newline
+     * @param charWidth typical character width, for estimating the rows of chunks not laid out yet
+     */
+    LongLineLayout(int contentLength, boolean hasNewline, double availableWidth, double charWidth) {
+        this.contentLength = contentLength;
+        this.hasNewline = hasNewline;
+        this.availableWidth = availableWidth;
+        int chunkCount = Math.max(1, (contentLength + CHUNK_CHARS - 1) / CHUNK_CHARS);
+        this.chunkRows = new int[chunkCount];
+        this.chunks = new VisualLine[chunkCount][];
+
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            double width = (chunkEnd(chunk) - chunkStart(chunk)) * charWidth;
+            chunkRows[chunk] = (availableWidth > 0) ? Math.max(1, (int) Math.ceil(width / availableWidth)) : 1;
+            totalRows += chunkRows[chunk];
+        }
+    }
+
+    static boolean isLong(int lineLength) {
+        return lineLength > LONG_LINE_CHARS;
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    int chunkStart(int chunk) {
+        return chunk * CHUNK_CHARS;
+    }
+
+    int chunkEnd(int chunk) {
+        return Math.min(contentLength, (chunk + 1) * CHUNK_CHARS);
+    }
+
+    /**
+     * Where chunk {@code chunk} of a line starts, relative to the line start: {@code chunk * CHUNK_CHARS}, moved
+     * back one char if that falls between the two halves of a surrogate pair. Reads at most one char.
+     */
+    static int chunkBoundary(ReadOnlyDocument document, int lineStart, int contentLength, int chunk) {
+        long boundary = (long) chunk * CHUNK_CHARS;
+        if (boundary <= 0) return 0;
+        if (boundary >= contentLength) return contentLength;
+        int offset = (int) boundary;
+        char before = document.getText(lineStart + offset - 1, lineStart + offset).charAt(0);
+        return Character.isHighSurrogate(before) ? offset - 1 : offset;
+    }
+
+    /** Rows of the whole line, counting estimates for chunks not laid out yet. */
+    int totalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Appends rows {@code [fromRow, toRow)} of the line, clamped to the rows it has, laying out the chunks they
+     * fall in. Estimates that turn out wrong shift the rows after them, so callers re-read {@link #totalRows()}.
+     */
+    void appendRows(ReadOnlyDocument document, int lineStart, int fromRow, int toRow, LayoutEngine engine,
+                    List<VisualLine> out) {
+        int chunk = 0;
+        int chunkFirstRow = 0;
+        while (chunk < chunks.length - 1 && chunkFirstRow + chunkRows[chunk] <= fromRow) {
+            chunkFirstRow += chunkRows[chunk++];
+        }
+
+        int row = fromRow;
+        for (; chunk < chunks.length && row < toRow; chunk++) {
+            VisualLine[] rows = rowsOf(document, lineStart, chunk, engine);
+            for (int i = Math.max(0, row - chunkFirstRow); i < rows.length && row < toRow; i++, row++) {
+                out.add(rows[i].withStartPosition(lineStart + rows[i].startPosition()));
+            }
+            chunkFirstRow += rows.length;
+            row = Math.max(row, chunkFirstRow);
+        }
+    }
+
+    /** Row of the line that {@code offset} (relative to the line start) falls in, laying out only its chunk. */
+    int rowOf(ReadOnlyDocument document, int lineStart, int offset, LayoutEngine engine) {
+        int chunk = Math.max(0, Math.min(offset / CHUNK_CHARS, chunks.length - 1));
+        if (chunk < chunks.length - 1 && offset >= chunkBoundary(document, lineStart, contentLength, chunk + 1)) {
+            chunk++;
+        }
+        VisualLine[] rows = rowsOf(document, lineStart, chunk, engine);
+
+        int row = 0;
+        for (int i = 0; i < chunk; i++) row += chunkRows[i];
+        int inChunk = 0;
+        while (inChunk < rows.length - 1 && rows[inChunk].endPosition() <= offset) inChunk++;
+        return row + inChunk;
+    }
+
+    private VisualLine[] rowsOf(ReadOnlyDocument document, int lineStart, int chunk, LayoutEngine engine) {
+        if (chunks[chunk] == null) {
+            int start = chunkBoundary(document, lineStart, contentLength, chunk);
+            int end = chunkBoundary(document, lineStart, contentLength, chunk + 1);
+            String text = document.getText(lineStart + start, lineStart + end);
+            boolean last = chunk == chunks.length - 1;
+            VisualLine[] rows = engine.wrap(text, text.length(), last && hasNewline, start, availableWidth);
+            chunks[chunk] = rows;
+            totalRows += rows.length - chunkRows[chunk];
+            chunkRows[chunk] = rows.length;
+        }
+        return chunks[chunk];
+    }
+}
@@ -1,40 +1,53 @@
 package texteditor.view.layout;
 
-import texteditor.model.PieceTable;
+import texteditor.model.ReadOnlyDocument;
 
+/**
+ * One row of wrapped text, kept as a range of the document rather than a copy of its characters. The text is read
+ * from the document only when the row is drawn or the caret needs to measure inside it.
+ */
 public class VisualLine {
-    private final String text;
     private final int startPosition;
+    private final int length;
     private final boolean hasNewlineChar;
+    // width of the row's text, not counting a trailing newline
+    private final float width;
 
-
-    public VisualLine(String text, int startPosition, boolean hasNewlineChar) {
-        this.text = text != null ? text : "";
+    public VisualLine(int startPosition, int length, boolean hasNewlineChar, float width) {
         this.startPosition = Math.max(0, startPosition);
+        this.length = Math.max(0, length);
         this.hasNewlineChar = hasNewlineChar;
+        this.width = width;
     }
 
     public VisualLine() {
-        this.text = "";
-        this.startPosition = 0;
-        this.hasNewlineChar = false;
+        this(0, 0, false, 0);
     }
 
-    public String text() {return text;}
-
     public int startPosition() {return startPosition;}
 
     public boolean hasNewlineChar() {return hasNewlineChar;}
 
-    public int length() {return text.length();}
+    /** Characters in this row, including a trailing newline. */
+    public int length() {return length;}
+
+    public int endPosition() {return startPosition + length;}
 
-    public int endPosition() {return startPosition + text.length();}
+    public double width() {return width;}
+
+    /** Reads this row's characters, including a trailing newline, from {@code document}. */
+    public String text(ReadOnlyDocument document) {
+        return document.getText(startPosition(), endPosition());
+    }
+
+    /** Same row at another document position. */
+    public VisualLine withStartPosition(int startPosition) {
+        return new VisualLine(startPosition, length, hasNewlineChar, width);
+    }
 
     @Override
     public String toString() {
-        return String.format("VisualLine{text='%s', start=%d, hasNewline=%b}",
-                text, startPosition, hasNewlineChar);
+        return String.format("VisualLine{start=%d, length=%d, hasNewline=%b}",
+                startPosition, length, hasNewlineChar);
     }
 }
-
-
@@ -0,0 +1,109 @@
+package texteditor.view.minimap;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import texteditor.model.Document;
+import texteditor.view.EditorCanvas;
+import texteditor.view.FrameScheduler;
+import texteditor.view.render.CanvasSurface;
+import texteditor.view.render.RenderSurface;
+
+/**
+ * Overview of the document beside the editor, with the editor's viewport marked on it. The lines come from a
+ * {@link MinimapIndex} kept up to date by edits and a background pass, and are rasterized by a
+ * {@link MinimapRaster} into an image of which only the changed rows are uploaded. A frame that changed nothing
+ * is one image and one rectangle. Clicking or dragging scrolls the editor to that part of the document.
+ */
+public class MinimapCanvas extends Canvas {
+    private static final Color VIEWPORT_FILL = Color.rgb(128, 128, 128, 0.18);
+
+    private final Document document;
+    private final EditorCanvas editor;
+    private final MinimapIndex index;
+    private final RenderSurface surface = new CanvasSurface(this);
+    private final FrameScheduler frameScheduler = new FrameScheduler(this::draw);
+
+    private MinimapRaster raster;
+    private WritableImage image;
+
+    public MinimapCanvas(Document document, EditorCanvas editor, double width) {
+        super(width, 300);
+        this.document = document;
+        this.editor = editor;
+        this.index = new MinimapIndex(document, Platform::runLater);
+        index.setChangeListener((fromLine, toLine, linesAfterMoved) -> {
+            if (raster != null) raster.invalidate(fromLine, toLine, linesAfterMoved);
+            requestDraw();
+        });
+        document.addDocumentListener(index);
+        editor.addFrameListener(this::requestDraw);
+        heightProperty().addListener((obs, oldHeight, newHeight) -> requestDraw());
+        setOnMousePressed(this::scrollEditor);
+        setOnMouseDragged(this::scrollEditor);
+
+        index.start();
+        requestDraw();
+    }
+
+    public void requestDraw() {
+        frameScheduler.requestFrame();
+    }
+
+    public MinimapIndex getIndex() {
+        return index;
+    }
+
+    public void shutdown() {
+        index.shutdown();
+    }
+
+    private void draw() {
+        int width = (int) Math.ceil(getWidth());
+        int height = (int) Math.ceil(getHeight());
+        if (width <= 0 || height <= 0) return;
+        if (raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+            raster = new MinimapRaster(width, height);
+            image = new WritableImage(width, height);
+        }
+
+        int topLine = editor.getFirstVisibleLine();
+        int bottomLine = editor.getLastVisibleLine();
+        int firstLine = firstLine(topLine, bottomLine - topLine + 1);
+        MinimapRaster.Change change = raster.update(index, firstLine);
+        if (!change.isEmpty()) {
+            image.getPixelWriter().setPixels(0, change.fromY(), width, change.toY() - change.fromY(),
+                    PixelFormat.getIntArgbInstance(), raster.getPixels(), change.fromY() * width, width);
+        }
+
+        surface.clearRect(0, 0, getWidth(), getHeight());
+        surface.drawImage(image, 0, 0, width, height);
+        surface.setFill(VIEWPORT_FILL);
+        surface.fillRect(0, (topLine - firstLine) * MinimapRaster.LINE_PIXELS, getWidth(),
+                (bottomLine - topLine + 1) * MinimapRaster.LINE_PIXELS);
+    }
+
+    /**
+     * First line of the minimap's window: the window moves through the document at the rate that keeps the
+     * editor's first line at the top of the window when the editor is at the top of the document, and its last
+     * line at the bottom when the editor is at the end.
+     */
+    private int firstLine(int topLine, int visibleLines) {
+        int lineCount = document.getLineCount();
+        int linesShown = raster.getLinesShown();
+        if (lineCount <= linesShown) return 0;
+        int scrollableLines = Math.max(1, lineCount - visibleLines);
+        return (int) ((long) Math.min(topLine, scrollableLines) * (lineCount - linesShown) / scrollableLines);
+    }
+
+    private void scrollEditor(MouseEvent event) {
+        if (raster == null) return;
+        int topLine = editor.getFirstVisibleLine();
+        int visibleLines = editor.getLastVisibleLine() - topLine + 1;
+        int line = raster.getFirstLine() + (int) (Math.max(0, event.getY()) / MinimapRaster.LINE_PIXELS);
+        editor.scrollToLine(line - visibleLines / 2);
+    }
+}
@@ -0,0 +1,245 @@
+package texteditor.view.minimap;
+
+import texteditor.model.Document;
+import texteditor.model.DocumentEvent;
+import texteditor.model.DocumentListener;
+import texteditor.model.ReadOnlyDocument;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A few bytes per line describing its shape for the minimap: the column its text starts at and the column it
+ * ends at, with tabs expanded. The whole document is sketched on a worker thread from a snapshot, in batches
+ * that are handed back through the commit executor (the FX thread in the editor). Edits keep the sketches in
+ * step: the arrays are spliced like the height map's, and the edited lines are sketched again on the spot, so a
+ * batch that arrives after an edit is dropped and its lines are read again from a newer snapshot.
+ * <p>
+ * Everything but the background pass must be used on the commit thread.
+ */
+public class MinimapIndex implements DocumentListener {
+    static final int BATCH_LINES = 4096;
+    /** Columns a line is sketched up to; the minimap is narrower than this. */
+    static final int MAX_COLUMNS = 1024;
+    static final int TAB_COLUMNS = 4;
+    // characters read per line: a column takes at most two, for a surrogate pair, and a tab takes one for several
+    private static final int MAX_LINE_CHARS = 2 * MAX_COLUMNS;
+    // edits that insert more lines than this leave them for the background pass
+    private static final int EAGER_LINES = 256;
+    private static final int UNKNOWN = -1;
+
+    /** Lines whose sketch changed, and whether the lines after them moved. */
+    public interface ChangeListener {
+        void linesChanged(int fromLine, int toLine, boolean linesAfterMoved);
+    }
+
+    private final Document document;
+    private final Executor commitExecutor;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "minimap-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger generation = new AtomicInteger();
+    private ChangeListener changeListener = (from, to, moved) -> {};
+
+    private int lineCount;
+    // indent << 16 | end column, or UNKNOWN until sketched
+    private int[] sketches;
+    private int unknownLines;
+
+    public MinimapIndex(Document document, Executor commitExecutor) {
+        this.document = document;
+        this.commitExecutor = commitExecutor;
+        this.lineCount = document.getLineCount();
+        this.sketches = new int[Math.max(16, lineCount)];
+        Arrays.fill(sketches, UNKNOWN);
+        this.unknownLines = lineCount;
+    }
+
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /** Starts sketching the lines not sketched yet on the worker thread. */
+    public void start() {
+        int from = firstUnknownLine(0);
+        if (from < lineCount) {
+            Pass pass = new Pass(generation.incrementAndGet(), document.snapshot(), document.getVersion(), from);
+            worker.execute(pass::sketchAll);
+        }
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        worker.shutdownNow();
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isSketched(int line) {
+        return sketches[line] != UNKNOWN;
+    }
+
+    /** Lines not sketched yet. */
+    public int getUnknownLines() {
+        return unknownLines;
+    }
+
+    /** Column the line's text starts at; 0 for a line not sketched yet. */
+    public int getIndent(int line) {
+        return isSketched(line) ? sketches[line] >>> 16 : 0;
+    }
+
+    /** Column the line's text ends at, without trailing whitespace; 0 for a blank or unsketched line. */
+    public int getEnd(int line) {
+        return isSketched(line) ? sketches[line] & 0xFFFF : 0;
+    }
+
+    /** Sketch of one line, without its newline: start and end columns of its text, packed into an int. */
+    static int sketch(CharSequence text, int start, int end) {
+        int column = 0;
+        int indent = -1;
+        int lastColumn = 0;
+        for (int i = start; i < end && column < MAX_COLUMNS; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') break;
+            if (c == '\t') {
+                column = (column / TAB_COLUMNS + 1) * TAB_COLUMNS;
+                continue;
+            }
+            if (Character.isLowSurrogate(c)) continue;
+            column++;
+            if (c != ' ') {
+                if (indent < 0) indent = column - 1;
+                lastColumn = column;
+            }
+        }
+        column = Math.min(lastColumn, MAX_COLUMNS);
+        return (indent < 0) ? 0 : (Math.min(indent, column) << 16) | column;
+    }
+
+    /** Sketches a line from no more of its text than {@link #MAX_COLUMNS} columns can hold. */
+    private int sketchLine(ReadOnlyDocument source, int line) {
+        int lineStart = source.getLineStart(line);
+        String text = source.getText(lineStart, lineStart + Math.min(source.getLineLength(line), MAX_LINE_CHARS));
+        return sketch(text, 0, text.length());
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        int start = event.startLine();
+        int removed = event.removedLines();
+        int inserted = event.insertedLines();
+        if (start + removed > lineCount) {
+            reset();
+            return;
+        }
+
+        if (removed != inserted) {
+            int newCount = lineCount - removed + inserted;
+            if (newCount > sketches.length) {
+                sketches = Arrays.copyOf(sketches, Math.max(newCount, sketches.length + (sketches.length >> 1)));
+            }
+            for (int line = start; line < start + removed; line++) {
+                if (sketches[line] == UNKNOWN) unknownLines--;
+            }
+            System.arraycopy(sketches, start + removed, sketches, start + inserted, lineCount - (start + removed));
+            for (int line = start; line < start + inserted; line++) sketches[line] = UNKNOWN;
+            unknownLines += inserted;
+            lineCount = newCount;
+        }
+
+        if (inserted <= EAGER_LINES) {
+            for (int line = start; line < start + inserted; line++) setSketch(line, sketchLine(document, line));
+        } else {
+            for (int line = start; line < start + inserted; line++) setUnknown(line);
+            start();
+        }
+        changeListener.linesChanged(start, start + inserted, removed != inserted);
+    }
+
+    private void setSketch(int line, int sketch) {
+        if (sketches[line] == UNKNOWN) unknownLines--;
+        sketches[line] = sketch;
+    }
+
+    private void setUnknown(int line) {
+        if (sketches[line] != UNKNOWN) unknownLines++;
+        sketches[line] = UNKNOWN;
+    }
+
+    private void reset() {
+        generation.incrementAndGet();
+        lineCount = document.getLineCount();
+        sketches = new int[Math.max(16, lineCount)];
+        Arrays.fill(sketches, UNKNOWN);
+        unknownLines = lineCount;
+        start();
+        changeListener.linesChanged(0, lineCount, true);
+    }
+
+    private int firstUnknownLine(int from) {
+        if (unknownLines == 0) return lineCount;
+        int line = from;
+        while (line < lineCount && sketches[line] != UNKNOWN) line++;
+        return line;
+    }
+
+    private final class Pass {
+        private final int generation;
+        private final ReadOnlyDocument snapshot;
+        private final long version;
+        private final int fromLine;
+
+        Pass(int generation, ReadOnlyDocument snapshot, long version, int fromLine) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+            this.version = version;
+            this.fromLine = fromLine;
+        }
+
+        private boolean isCurrent() {
+            return MinimapIndex.this.generation.get() == generation;
+        }
+
+        /** Worker thread: sketches every batch and queues each one for commit as soon as it is ready. */
+        void sketchAll() {
+            int count = snapshot.getLineCount();
+            for (int from = fromLine; from < count && isCurrent(); from += BATCH_LINES) {
+                int batchStart = from;
+                int[] batch = new int[Math.min(BATCH_LINES, count - from)];
+                for (int i = 0; i < batch.length; i++) batch[i] = sketchLine(snapshot, from + i);
+                boolean last = from + batch.length >= count;
+                commitExecutor.execute(() -> commit(batchStart, batch, last));
+            }
+        }
+
+        private void commit(int fromLine, int[] batch, boolean last) {
+            if (!isCurrent()) return;
+            if (document.getVersion() != version) {
+                // the edits kept the lines they touched in step; read the rest again from a new snapshot
+                start();
+                return;
+            }
+
+            int changedFrom = -1;
+            int changedTo = -1;
+            for (int i = 0; i < batch.length; i++) {
+                int line = fromLine + i;
+                if (sketches[line] != UNKNOWN) continue;
+                setSketch(line, batch[i]);
+                if (changedFrom < 0) changedFrom = line;
+                changedTo = line + 1;
+            }
+            if (changedFrom >= 0) changeListener.linesChanged(changedFrom, changedTo, false);
+            // lines marked unknown behind the pass by a large paste
+            if (last && unknownLines > 0) start();
+        }
+    }
+}
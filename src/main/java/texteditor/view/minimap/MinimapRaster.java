@@ -0,0 +1,139 @@
+package texteditor.view.minimap;
+
+import java.util.Arrays;
+
+/**
+ * The minimap's pixels: {@link #LINE_PIXELS} rows of an ARGB buffer per line, one pixel per column, for the
+ * window of lines starting at {@link #getFirstLine()}. Nothing is drawn twice: when the window moves the pixels
+ * of the lines still in it are moved, and only lines that came into view or whose sketch changed since the last
+ * {@link #update} are rasterized again.
+ */
+public class MinimapRaster {
+    static final int LINE_PIXELS = 2;
+    static final int INK = 0xB0A0A0A0;
+    // a line the index has not sketched yet
+    static final int PLACEHOLDER = 0x30A0A0A0;
+    private static final int PLACEHOLDER_COLUMNS = 12;
+
+    /** Pixel rows {@code [fromY, toY)} that changed in the last update; empty if none did. */
+    public record Change(int fromY, int toY) {
+        public boolean isEmpty() {
+            return fromY >= toY;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final int linesShown;
+
+    private boolean valid;
+    private int firstLine;
+    // lines [dirtyFrom, dirtyTo) to rasterize again, in document lines
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo = Integer.MIN_VALUE;
+    private long linesRasterized;
+
+    public MinimapRaster(int width, int height) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.pixels = new int[this.width * this.height];
+        this.linesShown = (this.height + LINE_PIXELS - 1) / LINE_PIXELS;
+    }
+
+    public int getWidth() {return width;}
+
+    public int getHeight() {return height;}
+
+    /** Lines the buffer has room for. */
+    public int getLinesShown() {return linesShown;}
+
+    public int getFirstLine() {return firstLine;}
+
+    /** Row-major ARGB pixels, {@link #getWidth()} per row. */
+    public int[] getPixels() {return pixels;}
+
+    /** Lines rasterized so far, for telling how much an update cost. */
+    public long getLinesRasterized() {return linesRasterized;}
+
+    /**
+     * Marks lines {@code [fromLine, toLine)} for rasterizing on the next update.
+     * @param linesAfterMoved whether every line after them moved too, as when lines were added or removed
+     */
+    public void invalidate(int fromLine, int toLine, boolean linesAfterMoved) {
+        dirtyFrom = Math.min(dirtyFrom, fromLine);
+        dirtyTo = linesAfterMoved ? Integer.MAX_VALUE : Math.max(dirtyTo, toLine);
+    }
+
+    public void invalidateAll() {
+        valid = false;
+    }
+
+    /**
+     * Brings the buffer up to date for the window starting at {@code firstLine}.
+     * @return the pixel rows that changed
+     */
+    public Change update(MinimapIndex index, int firstLine) {
+        int changedFrom = Integer.MAX_VALUE;
+        int changedTo = Integer.MIN_VALUE;
+
+        int shift = firstLine - this.firstLine;
+        if (!valid || Math.abs(shift) >= linesShown) {
+            valid = true;
+            this.firstLine = firstLine;
+            dirtyFrom = firstLine;
+            dirtyTo = firstLine + linesShown;
+        } else if (shift != 0) {
+            moveLines(shift);
+            this.firstLine = firstLine;
+            changedFrom = 0;
+            changedTo = height;
+            // the lines that scrolled into view
+            if (shift > 0) {
+                invalidate(firstLine + linesShown - shift, firstLine + linesShown, false);
+            } else {
+                invalidate(firstLine, firstLine - shift, false);
+            }
+        }
+
+        int from = Math.max(dirtyFrom, firstLine);
+        int to = (int) Math.min((long) dirtyTo, (long) firstLine + linesShown);
+        for (int line = from; line < to; line++) rasterize(index, line);
+        if (from < to) {
+            changedFrom = Math.min(changedFrom, (from - firstLine) * LINE_PIXELS);
+            changedTo = Math.max(changedTo, Math.min(height, (to - firstLine) * LINE_PIXELS));
+        }
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = Integer.MIN_VALUE;
+        return changedFrom < changedTo ? new Change(changedFrom, changedTo) : new Change(0, 0);
+    }
+
+    /** Moves the pixels of the lines that stay in the window when it moves down by {@code shift} lines. */
+    private void moveLines(int shift) {
+        int rowShift = shift * LINE_PIXELS;
+        int kept = height - Math.abs(rowShift);
+        if (shift > 0) {
+            System.arraycopy(pixels, rowShift * width, pixels, 0, kept * width);
+        } else {
+            System.arraycopy(pixels, 0, pixels, -rowShift * width, kept * width);
+        }
+    }
+
+    private void rasterize(MinimapIndex index, int line) {
+        linesRasterized++;
+        int top = (line - firstLine) * LINE_PIXELS;
+        int rowStart = top * width;
+        int rowsEnd = Math.min(height, top + LINE_PIXELS) * width;
+        Arrays.fill(pixels, rowStart, rowsEnd, 0);
+        if (line >= index.getLineCount()) return;
+
+        // ink on the first row of the line only, so that lines stay apart
+        if (index.isSketched(line)) {
+            int end = Math.min(width, index.getEnd(line));
+            int indent = Math.min(end, index.getIndent(line));
+            Arrays.fill(pixels, rowStart + indent, rowStart + end, INK);
+        } else {
+            Arrays.fill(pixels, rowStart, rowStart + Math.min(width, PLACEHOLDER_COLUMNS), PLACEHOLDER);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package texteditor.view.render;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+/**
+ * Draws on a JavaFX {@link Canvas}. Pixels are never moved, since that would mean reading them back. Draw calls
+ * and state changes are counted for the frame statistics.
+ */
+public class CanvasSurface implements RenderSurface {
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private long drawCalls;
+    private long stateChanges;
+
+    public CanvasSurface(Canvas canvas) {
+        this.canvas = canvas;
+        this.gc = canvas.getGraphicsContext2D();
+    }
+
+    @Override
+    public double getWidth() {
+        return canvas.getWidth();
+    }
+
+    @Override
+    public double getHeight() {
+        return canvas.getHeight();
+    }
+
+    @Override
+    public double getOutputScale() {
+        var scene = canvas.getScene();
+        return (scene == null || scene.getWindow() == null) ? 1 : scene.getWindow().getOutputScaleX();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        stateChanges++;
+        gc.setFont(font);
+    }
+
+    @Override
+    public Font getFont() {
+        return gc.getFont();
+    }
+
+    @Override
+    public void setFill(Paint fill) {
+        stateChanges++;
+        gc.setFill(fill);
+    }
+
+    @Override
+    public Paint getFill() {
+        return gc.getFill();
+    }
+
+    @Override
+    public void setStroke(Paint stroke) {
+        stateChanges++;
+        gc.setStroke(stroke);
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        stateChanges++;
+        gc.setLineWidth(width);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        drawCalls++;
+        gc.fillText(text, x, y);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        drawCalls++;
+        gc.strokeLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double width, double height) {
+        drawCalls++;
+        gc.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void clearRect(double x, double y, double width, double height) {
+        drawCalls++;
+        gc.clearRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(Image image, double x, double y, double width, double height) {
+        drawCalls++;
+        gc.drawImage(image, x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(Image image, double sx, double sy, double sw, double sh,
+                          double dx, double dy, double dw, double dh) {
+        drawCalls++;
+        gc.drawImage(image, sx, sy, sw, sh, dx, dy, dw, dh);
+    }
+
+    @Override
+    public void clipRect(double x, double y, double width, double height) {
+        gc.beginPath();
+        gc.rect(x, y, width, height);
+        gc.clip();
+    }
+
+    @Override
+    public void save() {
+        gc.save();
+    }
+
+    @Override
+    public void restore() {
+        gc.restore();
+    }
+
+    /**
+     * Declines: a canvas can only move its pixels by reading them back with a snapshot, which copies the whole
+     * band out of the GPU on every scroll, so the rows are drawn again instead.
+     */
+    @Override
+    public boolean moveArea(double y, double height, double dy) {
+        return false;
+    }
+
+    /** Draw calls made so far, moving pixels included. */
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    /** Calls that set the font, fill, stroke or line width so far. */
+    public long getStateChanges() {
+        return stateChanges;
+    }
+}
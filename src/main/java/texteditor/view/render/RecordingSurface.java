@@ -0,0 +1,224 @@
+package texteditor.view.render;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Headless surface that draws nothing and counts what would have been drawn: calls by kind, glyphs filled, changes
+ * of font, fill and stroke, and the pixel area each kind of call covers within the surface and the current clip. Text is sized with a
+ * {@link TextMeasurer}, so the areas match what a canvas with the same font would touch.
+ */
+public class RecordingSurface implements RenderSurface {
+    private final double width;
+    private final double height;
+    private final double outputScale;
+    private final TextMeasurer measurer;
+    // the text of every fillText call, in order; null unless asked for
+    private final List<String> textLog;
+
+    private Font font;
+    private Paint fill;
+    private double[] clip;
+    private final Deque<double[]> savedClips = new ArrayDeque<>();
+
+    private long drawCalls;
+    private long textCalls;
+    private long imageCalls;
+    private long clearCalls;
+    private long fillCalls;
+    private long moveCalls;
+    private long stateChanges;
+    private long glyphs;
+    private double textArea;
+    private double imageArea;
+    private double clearedArea;
+    private double movedArea;
+
+    public RecordingSurface(double width, double height, TextMeasurer measurer) {
+        this(width, height, 1, measurer, false);
+    }
+
+    /**
+     * @param logText whether to keep the text of every {@code fillText} call for {@link #getTextLog()}
+     */
+    public RecordingSurface(double width, double height, double outputScale, TextMeasurer measurer, boolean logText) {
+        this.width = width;
+        this.height = height;
+        this.outputScale = outputScale;
+        this.measurer = measurer;
+        this.textLog = logText ? new ArrayList<>() : null;
+        this.clip = new double[] {0, 0, width, height};
+    }
+
+    @Override
+    public double getWidth() {
+        return width;
+    }
+
+    @Override
+    public double getHeight() {
+        return height;
+    }
+
+    @Override
+    public double getOutputScale() {
+        return outputScale;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        stateChanges++;
+        this.font = font;
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFill(Paint fill) {
+        stateChanges++;
+        this.fill = fill;
+    }
+
+    @Override
+    public Paint getFill() {
+        return fill;
+    }
+
+    @Override
+    public void setStroke(Paint stroke) {
+        stateChanges++;
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        stateChanges++;
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        drawCalls++;
+        textCalls++;
+        if (textLog != null) textLog.add(text);
+        for (int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
+            if (text.charAt(i) != '\n') glyphs++;
+        }
+        double top = y - measurer.getBaselineOffset();
+        textArea += clippedArea(x, top, measurer.measureWidth(text), measurer.getLineHeight());
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        drawCalls++;
+    }
+
+    @Override
+    public void fillRect(double x, double y, double width, double height) {
+        drawCalls++;
+        fillCalls++;
+    }
+
+    @Override
+    public void clearRect(double x, double y, double width, double height) {
+        drawCalls++;
+        clearCalls++;
+        clearedArea += clippedArea(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(Image image, double x, double y, double width, double height) {
+        drawCalls++;
+        imageCalls++;
+        imageArea += clippedArea(x, y, width, height);
+    }
+
+    @Override
+    public void drawImage(Image image, double sx, double sy, double sw, double sh,
+                          double dx, double dy, double dw, double dh) {
+        drawImage(image, dx, dy, dw, dh);
+    }
+
+    @Override
+    public void clipRect(double x, double y, double width, double height) {
+        clip = intersect(clip, x, y, width, height);
+    }
+
+    @Override
+    public void save() {
+        savedClips.push(clip);
+    }
+
+    @Override
+    public void restore() {
+        if (!savedClips.isEmpty()) clip = savedClips.pop();
+    }
+
+    @Override
+    public boolean moveArea(double y, double height, double dy) {
+        drawCalls++;
+        moveCalls++;
+        movedArea += clippedArea(0, y, width, Math.max(0, height - Math.abs(dy)));
+        return true;
+    }
+
+    private double clippedArea(double x, double y, double width, double height) {
+        double[] visible = intersect(clip, x, y, width, height);
+        return visible[2] * visible[3];
+    }
+
+    /** Intersection of {@code rect} (x, y, width, height) with another rectangle, empty if they do not meet. */
+    private static double[] intersect(double[] rect, double x, double y, double width, double height) {
+        double left = Math.max(rect[0], x);
+        double top = Math.max(rect[1], y);
+        double right = Math.min(rect[0] + rect[2], x + width);
+        double bottom = Math.min(rect[1] + rect[3], y + height);
+        return new double[] {left, top, Math.max(0, right - left), Math.max(0, bottom - top)};
+    }
+
+    /** Clears the counters, for measuring one frame at a time. */
+    public void reset() {
+        drawCalls = textCalls = imageCalls = clearCalls = fillCalls = moveCalls = stateChanges = glyphs = 0;
+        textArea = imageArea = clearedArea = movedArea = 0;
+        if (textLog != null) textLog.clear();
+    }
+
+    public long getDrawCalls() {return drawCalls;}
+
+    public long getTextCalls() {return textCalls;}
+
+    public long getImageCalls() {return imageCalls;}
+
+    public long getClearCalls() {return clearCalls;}
+
+    public long getFillCalls() {return fillCalls;}
+
+    public long getMoveCalls() {return moveCalls;}
+
+    /** Calls that set the font, fill, stroke or line width, whether or not the value changed. */
+    public long getStateChanges() {return stateChanges;}
+
+    /** Characters filled, counting a surrogate pair once and leaving out newlines. */
+    public long getGlyphs() {return glyphs;}
+
+    public double getTextArea() {return textArea;}
+
+    public double getImageArea() {return imageArea;}
+
+    public double getClearedArea() {return clearedArea;}
+
+    public double getMovedArea() {return movedArea;}
+
+    public List<String> getTextLog() {
+        if (textLog == null) throw new IllegalStateException("text is not being logged");
+        return textLog;
+    }
+}
@@ -0,0 +1,62 @@
+package texteditor.view.render;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+/**
+ * What the renderer draws on: the few {@code GraphicsContext} operations it uses, plus moving pixels for
+ * scrolling. {@link CanvasSurface} draws on a JavaFX canvas; {@link RecordingSurface} only counts what would be
+ * drawn, so the render path can be tested and measured without a display.
+ * <p>
+ * Coordinates are in logical pixels, as on a {@code Canvas}.
+ */
+public interface RenderSurface {
+
+    double getWidth();
+
+    double getHeight();
+
+    /** Device pixels per logical pixel. */
+    double getOutputScale();
+
+    void setFont(Font font);
+
+    Font getFont();
+
+    void setFill(Paint fill);
+
+    Paint getFill();
+
+    void setStroke(Paint stroke);
+
+    void setLineWidth(double width);
+
+    void fillText(String text, double x, double y);
+
+    void strokeLine(double x1, double y1, double x2, double y2);
+
+    void fillRect(double x, double y, double width, double height);
+
+    void clearRect(double x, double y, double width, double height);
+
+    void drawImage(Image image, double x, double y, double width, double height);
+
+    /** Draws the source rectangle of {@code image}, in image pixels, into the destination rectangle. */
+    void drawImage(Image image, double sx, double sy, double sw, double sh, double dx, double dy, double dw, double dh);
+
+    /** Narrows drawing to the rectangle until the matching {@link #restore()}. */
+    void clipRect(double x, double y, double width, double height);
+
+    void save();
+
+    void restore();
+
+    /**
+     * Moves the pixels of the full-width band from {@code y} to {@code y + height} by {@code dy} (up if
+     * negative). The area they leave is cleared.
+     * @return false, with nothing drawn, if the surface cannot move pixels without reading them back, which costs
+     *         more than drawing the rows again
+     */
+    boolean moveArea(double y, double height, double dy);
+}
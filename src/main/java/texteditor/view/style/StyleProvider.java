@@ -0,0 +1,17 @@
+package texteditor.view.style;
+
+import texteditor.model.ReadOnlyDocument;
+
+import java.util.List;
+
+/**
+ * Colours and fonts of the text, asked for one visual row at a time as rows are drawn.
+ */
+public interface StyleProvider {
+
+    /**
+     * Styles of the characters {@code [start, end)}, in document order and not overlapping. Runs may reach outside
+     * the range and are cut to it; characters no run covers are drawn {@link TextStyle#PLAIN}.
+     */
+    List<StyleRun> styleRuns(ReadOnlyDocument document, int start, int end);
+}
@@ -0,0 +1,11 @@
+package texteditor.view.style;
+
+/**
+ * Characters {@code [start, end)} of the document drawn in one style.
+ */
+public record StyleRun(int start, int end, TextStyle style) {
+    public StyleRun {
+        if (start < 0 || end < start) throw new IllegalArgumentException("bad run [" + start + ", " + end + ")");
+        if (style == null) throw new IllegalArgumentException("style is null");
+    }
+}
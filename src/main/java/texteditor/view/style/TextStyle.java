@@ -0,0 +1,24 @@
+package texteditor.view.style;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+/**
+ * How a run of text is drawn. Rows are laid out with the measurer's font, so a style's font should have the same
+ * advances, such as the bold face of a monospaced font.
+ * @param fill text colour
+ * @param font font to draw with, or null for the measurer's font
+ */
+public record TextStyle(Paint fill, Font font) {
+    /** Text no provider has styled. */
+    public static final TextStyle PLAIN = new TextStyle(Color.BLACK, null);
+
+    public TextStyle {
+        if (fill == null) throw new IllegalArgumentException("fill is null");
+    }
+
+    public static TextStyle of(Paint fill) {
+        return new TextStyle(fill, null);
+    }
+}
@@ -0,0 +1,168 @@
+package texteditor.view.text;
+
+import javafx.scene.text.Font;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+
+/**
+ * Measures text from cached per-character advances instead of laying out a {@code Text} node for every query.
+ * Each character is measured once through the wrapped measurer; after that a width is a sum of table lookups,
+ * and for printable ASCII in a monospaced font just a multiplication. Text that needs shaping (tabs, combining
+ * marks, surrogate pairs, complex scripts) is still handed to the wrapped measurer whole.
+ */
+public class CachingTextMeasurer implements TextMeasurer {
+    private static final String MONOSPACE_PROBE = "iWm.0 _";
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final TextMeasurer delegate;
+    // advances by char, allocated a page at a time; NaN until measured
+    private final double[][] pages = new double[(Character.MAX_VALUE + 1) >> PAGE_BITS][];
+    private final double monospaceAdvance;
+
+    public CachingTextMeasurer(TextMeasurer delegate) {
+        this.delegate = delegate;
+        this.monospaceAdvance = detectMonospaceAdvance();
+    }
+
+    /** @return the common advance if the probe characters all share one and sum without kerning, else NaN */
+    private double detectMonospaceAdvance() {
+        double advance = delegate.measureWidth(MONOSPACE_PROBE.substring(0, 1));
+        for (int i = 1; i < MONOSPACE_PROBE.length(); i++) {
+            if (!sameWidth(advance, delegate.measureWidth(MONOSPACE_PROBE.substring(i, i + 1)))) return Double.NaN;
+        }
+        boolean additive = sameWidth(advance * MONOSPACE_PROBE.length(), delegate.measureWidth(MONOSPACE_PROBE));
+        return (advance > 0 && additive) ? advance : Double.NaN;
+    }
+
+    private static boolean sameWidth(double a, double b) {
+        return Math.abs(a - b) <= 1e-6 * Math.max(1.0, Math.abs(a));
+    }
+
+    public boolean isMonospace() {
+        return !Double.isNaN(monospaceAdvance);
+    }
+
+    @Override
+    public double measureWidth(String text) {
+        if (text == null || text.isEmpty()) return 0.0;
+        return measureWidth(text, 0, text.length());
+    }
+
+    @Override
+    public double measureWidth(CharSequence text, int start, int end) {
+        if (start >= end) return 0.0;
+
+        if (isMonospace()) {
+            int ascii = start;
+            while (ascii < end && isPrintableAscii(text.charAt(ascii))) ascii++;
+            if (ascii == end) return (end - start) * monospaceAdvance;
+        }
+
+        double width = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!isSimple(c)) {
+                return delegate.measureWidth(text.subSequence(start, end).toString());
+            }
+            width += advance(c);
+        }
+        return width;
+    }
+
+    @Override
+    public void measureAdvances(CharSequence text, int start, int end, float[] out) {
+        out[0] = 0;
+        double x = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!isSimple(c)) {
+                // a mark belongs to the cluster of the character before it
+                int from = (i > start) ? i - 1 : i;
+                measureClusterAdvances(text, from, end, out[from - start], out, from - start);
+                return;
+            }
+            x += advance(c);
+            out[i - start + 1] = (float) x;
+        }
+    }
+
+    /**
+     * Measures the rest of the text a grapheme cluster at a time. Positions inside a cluster get the cluster's
+     * starting x, since a row can never be broken there.
+     */
+    private void measureClusterAdvances(CharSequence text, int from, int end, double x, float[] out, int outIndex) {
+        String rest = text.subSequence(from, end).toString();
+        BreakIterator clusters = BreakIterator.getCharacterInstance();
+        clusters.setText(rest);
+
+        int clusterStart = 0;
+        for (int clusterEnd = clusters.next(); clusterEnd != BreakIterator.DONE; clusterEnd = clusters.next()) {
+            char first = rest.charAt(clusterStart);
+            x += (clusterEnd - clusterStart == 1 && isSimple(first))
+                    ? advance(first)
+                    : delegate.measureWidth(rest.substring(clusterStart, clusterEnd));
+            for (int i = clusterStart + 1; i < clusterEnd; i++) out[outIndex + i] = out[outIndex + clusterStart];
+            out[outIndex + clusterEnd] = (float) x;
+            clusterStart = clusterEnd;
+        }
+    }
+
+    private double advance(char c) {
+        if (isMonospace() && isPrintableAscii(c)) return monospaceAdvance;
+
+        double[] page = pages[c >>> PAGE_BITS];
+        if (page == null) {
+            page = new double[PAGE_SIZE];
+            Arrays.fill(page, Double.NaN);
+            pages[c >>> PAGE_BITS] = page;
+        }
+        double advance = page[c & (PAGE_SIZE - 1)];
+        if (Double.isNaN(advance)) {
+            advance = delegate.measureWidth(String.valueOf(c));
+            page[c & (PAGE_SIZE - 1)] = advance;
+        }
+        return advance;
+    }
+
+    private static boolean isPrintableAscii(char c) {
+        return c >= 0x20 && c < 0x7F;
+    }
+
+    /**
+     * Whether the character's width is independent of its neighbours, so widths can be summed per character.
+     */
+    private static boolean isSimple(char c) {
+        if (isPrintableAscii(c)) return true;
+        if (c < 0x20 || c == 0x7F || Character.isSurrogate(c)) return false;
+
+        switch (Character.getType(c)) {
+            case Character.NON_SPACING_MARK, Character.ENCLOSING_MARK,
+                 Character.COMBINING_SPACING_MARK, Character.FORMAT -> {
+                return false;
+            }
+        }
+        // Hebrew through Myanmar, Khmer and Mongolian, the Indic extension blocks and Arabic presentation forms
+        // all shape or join
+        if (c >= 0x0590 && c < 0x1100) return false;
+        if (c >= 0x1700 && c < 0x18B0) return false;
+        if (c >= 0xA800 && c < 0xAB00) return false;
+        return c < 0xFB1D || c >= 0xFF00;
+    }
+
+    @Override
+    public double getLineHeight() {
+        return delegate.getLineHeight();
+    }
+
+    @Override
+    public double getBaselineOffset() {
+        return delegate.getBaselineOffset();
+    }
+
+    @Override
+    public Font getFont() {
+        return delegate.getFont();
+    }
+}
@@ -0,0 +1,126 @@
+package texteditor.view.text;
+
+import javafx.scene.text.Font;
+
+/**
+ * Measures text from glyph advance tables built once for a font, so that it can be shared by worker threads.
+ * The tables cover the scripts an editor mostly sees (Latin, Greek, Cyrillic, punctuation, arrows, box
+ * drawing); other characters get the font's wide advance if they are East Asian wide, nothing if they are
+ * combining marks, and the digit advance otherwise. Widths are sums of advances, so text that kerns or shapes
+ * comes out close to, not exactly, what JavaFX would lay out; the FX-thread measurers remain the reference.
+ * <p>
+ * Instances are immutable once constructed.
+ */
+public final class FontMetricsTextMeasurer implements TextMeasurer {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    // inclusive ranges of characters measured up front
+    private static final char[][] TABLE_RANGES = {
+            {0x09, 0x09}, {0x20, 0x7E}, {0xA0, 0x24F}, {0x370, 0x3FF}, {0x400, 0x4FF},
+            {0x2000, 0x206F}, {0x20A0, 0x20CF}, {0x2190, 0x21FF}, {0x2500, 0x259F},
+    };
+
+    private final Font font;
+    private final double lineHeight;
+    private final double baselineOffset;
+    // advances by char; a null page means its characters were not measured
+    private final float[][] pages = new float[(Character.MAX_VALUE + 1) >> PAGE_BITS][];
+    private final float digitAdvance;
+    private final float wideAdvance;
+
+    /** Measures the font's advances with a {@link JavaFXTextMeasurer}; call on the FX thread. */
+    public FontMetricsTextMeasurer(Font font) {
+        this(font, new JavaFXTextMeasurer(font));
+    }
+
+    /**
+     * @param probe measurer the tables are filled from; it is only used while constructing
+     */
+    public FontMetricsTextMeasurer(Font font, TextMeasurer probe) {
+        this.font = font;
+        this.lineHeight = probe.getLineHeight();
+        this.baselineOffset = probe.getBaselineOffset();
+        this.digitAdvance = (float) probe.measureWidth("0");
+        this.wideAdvance = (float) probe.measureWidth("\u4E00");
+
+        for (char[] range : TABLE_RANGES) {
+            for (int c = range[0]; c <= range[1]; c++) {
+                float[] page = pages[c >>> PAGE_BITS];
+                if (page == null) {
+                    page = new float[PAGE_SIZE];
+                    pages[c >>> PAGE_BITS] = page;
+                }
+                page[c & (PAGE_SIZE - 1)] = (float) probe.measureWidth(String.valueOf((char) c));
+            }
+        }
+    }
+
+    @Override
+    public double measureWidth(String text) {
+        if (text == null || text.isEmpty()) return 0.0;
+        return measureWidth(text, 0, text.length());
+    }
+
+    @Override
+    public double measureWidth(CharSequence text, int start, int end) {
+        double width = 0;
+        for (int i = start; i < end; i++) width += advance(text.charAt(i));
+        return width;
+    }
+
+    @Override
+    public void measureAdvances(CharSequence text, int start, int end, float[] out) {
+        out[0] = 0;
+        double x = 0;
+        for (int i = start; i < end; i++) {
+            x += advance(text.charAt(i));
+            out[i - start + 1] = (float) x;
+        }
+    }
+
+    private float advance(char c) {
+        float[] page = pages[c >>> PAGE_BITS];
+        if (page != null) return page[c & (PAGE_SIZE - 1)];
+
+        // a surrogate pair is one glyph, usually wide; the low half adds nothing
+        if (Character.isHighSurrogate(c)) return wideAdvance;
+        if (Character.isLowSurrogate(c)) return 0;
+        switch (Character.getType(c)) {
+            case Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.FORMAT -> {
+                return 0;
+            }
+        }
+        return isWide(c) ? wideAdvance : digitAdvance;
+    }
+
+    /** East Asian wide and fullwidth ranges of the BMP. */
+    private static boolean isWide(char c) {
+        return (c >= 0x1100 && c <= 0x115F)
+                || (c >= 0x2E80 && c <= 0xA4CF)
+                || (c >= 0xAC00 && c <= 0xD7A3)
+                || (c >= 0xF900 && c <= 0xFAFF)
+                || (c >= 0xFE30 && c <= 0xFE4F)
+                || (c >= 0xFF00 && c <= 0xFF60)
+                || (c >= 0xFFE0 && c <= 0xFFE6);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public double getLineHeight() {
+        return lineHeight;
+    }
+
+    @Override
+    public double getBaselineOffset() {
+        return baselineOffset;
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+}
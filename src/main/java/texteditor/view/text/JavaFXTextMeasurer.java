@@ -14,11 +14,18 @@ public class JavaFXTextMeasurer implements TextMeasurer {
         this.textNode = new Text();
         this.textNode.setFont(font);
 
-        double spacing = textNode.getLineSpacing();
-        this.lineHeight = spacing > 0 ? spacing : textNode.getBoundsInLocal().getHeight() * 1.2;
+        this.lineHeight = lineHeight(textNode.getLineSpacing(), textNode.getBoundsInLocal().getHeight());
         this.baselineOffset = textNode.getBaselineOffset();
     }
 
+    /**
+     * The line spacing if the font sets one, or 1.2 times the text height, rounded up to whole pixels so that
+     * rows sit on the pixel grid and scrolling can move them without resampling.
+     */
+    static double lineHeight(double lineSpacing, double textHeight) {
+        return Math.ceil(lineSpacing > 0 ? lineSpacing : textHeight * 1.2);
+    }
+
     @Override
     public double measureWidth(String text) {
         if (text == null || text.isEmpty()) return 0.0;
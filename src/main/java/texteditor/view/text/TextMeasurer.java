@@ -6,6 +6,37 @@ public interface TextMeasurer {
 
     double measureWidth(String text);
 
+    /**
+     * Width of {@code text[start, end)}. Implementations that can measure in place should override this so
+     * callers never need to cut substrings.
+     */
+    default double measureWidth(CharSequence text, int start, int end) {
+        if (start >= end) return 0.0;
+        return measureWidth(text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Fills {@code out[0 .. end - start]} with the cumulative widths of {@code text[start, end)}:
+     * {@code out[i]} is the width of the first {@code i} characters. Widths are summed per character
+     * unless an implementation knows better.
+     */
+    default void measureAdvances(CharSequence text, int start, int end, float[] out) {
+        out[0] = 0;
+        double x = 0;
+        for (int i = start; i < end; i++) {
+            x += measureWidth(text, i, i + 1);
+            out[i - start + 1] = (float) x;
+        }
+    }
+
+    /**
+     * Whether this measurer may be called from several threads at once. Measurers backed by a scene-graph node
+     * are confined to the FX thread and must leave this false.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
     double getLineHeight();
 
     double getBaselineOffset();
@@ -0,0 +1,60 @@
+package texteditor.controller;
+
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+import texteditor.model.ReadOnlyDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectionCopierTest {
+
+    private final LinkedBlockingQueue<Runnable> worker = new LinkedBlockingQueue<>();
+    // chunk lengths of the copy being made, and each finished copy
+    private final List<Integer> chunkLengths = new ArrayList<>();
+    private final List<String> copies = new ArrayList<>();
+    private final ClipboardSink clipboard = new ClipboardSink() {
+        private final StringBuilder copy = new StringBuilder();
+
+        @Override
+        public void append(CharSequence chunk) {
+            chunkLengths.add(chunk.length());
+            copy.append(chunk);
+        }
+
+        @Override
+        public void finish() {
+            copies.add(copy.toString());
+            copy.setLength(0);
+        }
+    };
+    private final SelectionCopier copier = new SelectionCopier(worker::add, clipboard);
+
+    @Test
+    void copy_readsTheRangeAsItWasWhenCopied() {
+        Document document = Document.forText("alpha\nbeta\ngamma\n");
+
+        copier.copy(document, 6, 17);
+        document.remove(0, 11);
+        copier.copy(document, 3, 3);
+        worker.forEach(Runnable::run);
+
+        assertEquals(List.of("beta\ngamma\n"), copies, "later edits and empty ranges copy nothing");
+    }
+
+    @Test
+    void largeCopy_isStreamedInChunks_withoutSplittingSurrogatePairs() {
+        int chunk = ReadOnlyDocument.APPEND_CHUNK;
+        String text = "a".repeat(chunk - 1) + "😀" + "b".repeat(chunk + 10);
+        Document document = Document.forText(text);
+
+        copier.copy(document, 0, text.length());
+        worker.forEach(Runnable::run);
+
+        assertEquals(List.of(text), copies);
+        assertEquals(List.of(chunk - 1, chunk, 12), chunkLengths);
+    }
+}
@@ -0,0 +1,34 @@
+package texteditor.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.io.Reader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemClipboardSinkTest {
+
+    @Test
+    void finishedCopy_isReadThroughAReaderOverItsChunks() throws Exception {
+        Clipboard clipboard = new Clipboard("test");
+        SystemClipboardSink sink = new SystemClipboardSink(clipboard);
+        StringBuilder reused = new StringBuilder("alpha\n");
+        sink.append(reused);
+        reused.setLength(0);
+        sink.append(reused.append("beta"));
+        sink.append("");
+        sink.finish();
+
+        DataFlavor readerFlavor = new DataFlavor("text/plain;class=java.io.Reader");
+        assertTrue(clipboard.isDataFlavorAvailable(readerFlavor));
+        StringBuilder read = new StringBuilder();
+        char[] buffer = new char[4];
+        try (Reader reader = (Reader) clipboard.getData(readerFlavor)) {
+            for (int count; (count = reader.read(buffer)) >= 0; ) read.append(buffer, 0, count);
+        }
+        assertEquals("alpha\nbeta", read.toString());
+        assertEquals("alpha\nbeta", clipboard.getData(DataFlavor.stringFlavor));
+    }
+}
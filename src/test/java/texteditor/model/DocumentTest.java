@@ -0,0 +1,220 @@
+package texteditor.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentTest {
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void lineSemanticsMatchPieceTable(Document.Engine engine) {
+        for (String text : new String[] {"", "abc", "\n", "abc\n", "a\nb", "\n\nx\n", "line1\nline2\nlast"}) {
+            Document doc = Document.create(engine, text);
+            PieceTable reference = new PieceTable(text);
+
+            assertEquals(text, doc.getText());
+            assertEquals(text.length(), doc.getLength());
+            assertEquals(reference.getLineCount(), doc.getLineCount(), "line count for '" + text + "'");
+            for (int i = 0; i < reference.getLineCount(); i++) {
+                assertEquals(reference.getLine(i), doc.getLine(i));
+                assertEquals(reference.getLineLength(i), doc.getLineLength(i));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void randomEditsMatchStringModel(Document.Engine engine) {
+        Random rnd = new Random(31);
+        StringBuilder model = new StringBuilder("first line\nsecond line\nthird");
+        Document doc = Document.create(engine, model.toString());
+
+        for (int i = 0; i < 2000; i++) {
+            if (model.length() > 0 && rnd.nextInt(3) == 0) {
+                int pos = rnd.nextInt(model.length());
+                int len = 1 + rnd.nextInt(Math.min(40, model.length() - pos));
+                doc.remove(pos, len);
+                model.delete(pos, pos + len);
+            } else {
+                int pos = rnd.nextInt(model.length() + 1);
+                String text = rnd.nextInt(5) == 0 ? "\n" : (rnd.nextInt(20) == 0 ? "x".repeat(700) + "\ny" : "ab" + i);
+                doc.insert(pos, text);
+                model.insert(pos, text);
+            }
+            assertEquals(model.length(), doc.getLength(), "length mismatch at edit " + i);
+        }
+        assertEquals(model.toString(), doc.getText());
+
+        StringBuilder joined = new StringBuilder();
+        for (int line = 0; line < doc.getLineCount(); line++) {
+            assertEquals(doc.getLine(line).length(), doc.getLineLength(line));
+            joined.append(doc.getLine(line));
+        }
+        assertEquals(model.toString(), joined.toString());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void outOfRangeEditsAreClampedOrIgnored(Document.Engine engine) {
+        Document doc = Document.create(engine, "hello");
+        doc.remove(10, 2);
+        doc.remove(3, 100);
+        doc.insert(99, "!");
+        assertEquals("hel!", doc.getText());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void snapshotIsUnaffectedByLaterEdits(Document.Engine engine) {
+        Document doc = Document.create(engine, "one\ntwo\nthree");
+        doc.insert(3, " more");
+        ReadOnlyDocument snapshot = doc.snapshot();
+
+        doc.insert(0, "zero\n");
+        doc.remove(doc.getLength() - 5, 5);
+
+        assertEquals("one more\ntwo\nthree", snapshot.getText());
+        assertEquals(3, snapshot.getLineCount());
+        assertEquals("one more\n", snapshot.getLine(0));
+        assertEquals("three", snapshot.getLine(2));
+        assertEquals(5, snapshot.getLineLength(2));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void rangeTextMatchesSubstring(Document.Engine engine) {
+        Document doc = Document.create(engine, "one\ntwo\nthree");
+        doc.insert(5, "XY\nZ");
+        doc.remove(0, 2);
+        String text = doc.getText();
+        ReadOnlyDocument snapshot = doc.snapshot();
+
+        for (int start = 0; start <= text.length(); start++) {
+            for (int end = start; end <= text.length(); end++) {
+                assertEquals(text.substring(start, end), doc.getText(start, end));
+                assertEquals(text.substring(start, end), snapshot.getText(start, end));
+            }
+        }
+        assertEquals(text, doc.getText(-5, text.length() + 5));
+        assertEquals("", doc.getText(4, 2));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void appendedTextMatchesSubstring(Document.Engine engine) {
+        String line = "0123456789abcdef\n";
+        Document doc = Document.create(engine, line.repeat(8192));
+        doc.insert(100, "inserted\n");
+        doc.remove(70_000, 3);
+        String text = doc.getText();
+        ReadOnlyDocument snapshot = doc.snapshot();
+
+        int[][] ranges = {{0, text.length()}, {99, 110}, {65_000, 130_000}, {-5, 20}, {30, 30}};
+        for (int[] range : ranges) {
+            String expected = text.substring(Math.max(0, range[0]), range[1]);
+            for (ReadOnlyDocument source : List.of(doc, snapshot)) {
+                StringBuilder out = new StringBuilder(">");
+                source.appendText(range[0], range[1], out);
+                assertEquals(">" + expected, out.toString());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void lineStartAndLineIndexAgreeWithLineLengths(Document.Engine engine) {
+        for (String text : new String[] {"", "abc", "\n", "abc\n", "a\nb", "\n\nx\n", "line1\nline2\nlast"}) {
+            Document doc = Document.create(engine, text);
+            ReadOnlyDocument snapshot = doc.snapshot();
+
+            int start = 0;
+            for (int line = 0; line < doc.getLineCount(); line++) {
+                assertEquals(start, doc.getLineStart(line), "start of line " + line + " in '" + text + "'");
+                assertEquals(start, snapshot.getLineStart(line));
+                start += doc.getLineLength(line);
+            }
+            for (int pos = 0; pos <= text.length(); pos++) {
+                int expected = Math.min(text.substring(0, pos).split("\n", -1).length - 1, doc.getLineCount() - 1);
+                assertEquals(expected, doc.getLineIndex(pos), "line of " + pos + " in '" + text + "'");
+                assertEquals(expected, snapshot.getLineIndex(pos));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void lineIndexFollowsEditsAndSnapshots(Document.Engine engine) {
+        Random rnd = new Random(11);
+        StringBuilder model = new StringBuilder("a\nbb\n\nccc\n");
+        Document doc = Document.create(engine, model.toString());
+
+        for (int i = 0; i < 300; i++) {
+            int pos = rnd.nextInt(model.length() + 1);
+            if (model.length() > 0 && rnd.nextInt(3) == 0) {
+                int len = Math.min(1 + rnd.nextInt(6), model.length() - Math.min(pos, model.length() - 1));
+                pos = Math.min(pos, model.length() - 1);
+                doc.remove(pos, len);
+                model.delete(pos, pos + len);
+            } else {
+                String text = rnd.nextBoolean() ? "\n" : "x" + (rnd.nextBoolean() ? "\ny" : "");
+                doc.insert(pos, text);
+                model.insert(pos, text);
+            }
+        }
+
+        String text = model.toString();
+        ReadOnlyDocument snapshot = doc.snapshot();
+        for (ReadOnlyDocument view : new ReadOnlyDocument[] {doc, snapshot}) {
+            int start = 0;
+            for (int line = 0; line < view.getLineCount(); line++) {
+                assertEquals(start, view.getLineStart(line), "start of line " + line);
+                start += view.getLineLength(line);
+            }
+            assertEquals(text.length(), start);
+            for (int pos = 0; pos <= text.length(); pos++) {
+                int expected = Math.min(text.substring(0, pos).split("\n", -1).length - 1, view.getLineCount() - 1);
+                assertEquals(expected, view.getLineIndex(pos), "line of " + pos);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Document.Engine.class)
+    void eventsDescribeEveryChangedLine(Document.Engine engine) {
+        Random rnd = new Random(7);
+        Document doc = Document.create(engine, "alpha\nbeta\ngamma\n");
+        List<String> mirror = new ArrayList<>(lines(doc));
+        doc.addDocumentListener(event -> {
+            List<String> replaced = mirror.subList(event.startLine(), event.startLine() + event.removedLines());
+            replaced.clear();
+            replaced.addAll(lines(doc).subList(event.startLine(), event.startLine() + event.insertedLines()));
+        });
+
+        long version = doc.getVersion();
+        for (int i = 0; i < 1000; i++) {
+            int length = doc.getLength();
+            if (length > 0 && rnd.nextInt(3) == 0) {
+                int pos = rnd.nextInt(length);
+                doc.remove(pos, 1 + rnd.nextInt(Math.min(12, length - pos)));
+            } else {
+                String[] texts = {"x", "\n", "yz\n", "\n\n", "tail"};
+                doc.insert(rnd.nextInt(length + 1), texts[rnd.nextInt(texts.length)]);
+            }
+            assertEquals(lines(doc), mirror, "after edit " + i);
+            assertTrue(doc.getVersion() > version);
+            version = doc.getVersion();
+        }
+    }
+
+    private static List<String> lines(ReadOnlyDocument doc) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < doc.getLineCount(); i++) lines.add(doc.getLine(i));
+        return lines;
+    }
+}
@@ -188,4 +188,53 @@ PieceTableTest {
         assertEquals(12, pt.getTreeLength());
         assertEquals(3, pt.getLineCount()); // lines: "\n", "Start\n", "Hell\
     }
-}
\ No newline at end of file
+
+    @Test
+    public void randomEditsMatchStringModel() {
+        java.util.Random rnd = new java.util.Random(99);
+        StringBuilder model = new StringBuilder("first line\nsecond line\nthird");
+        PieceTable pt = new PieceTable(model.toString());
+
+        for (int i = 0; i < 500; i++) {
+            if (model.length() > 0 && rnd.nextInt(3) == 0) {
+                int pos = rnd.nextInt(model.length());
+                int len = 1 + rnd.nextInt(Math.min(12, model.length() - pos));
+                pt.remove(pos, len);
+                model.delete(pos, pos + len);
+            } else {
+                int pos = rnd.nextInt(model.length() + 1);
+                String text = rnd.nextInt(5) == 0 ? "\n" : "ab" + i;
+                pt.insert(pos, text);
+                model.insert(pos, text);
+            }
+            assertEquals(model.toString(), pt.getText(), "text mismatch at edit " + i);
+        }
+
+        StringBuilder joined = new StringBuilder();
+        for (int line = 0; line < pt.getLineCount(); line++) {
+            assertEquals(pt.getLine(line).length(), pt.getLineLength(line));
+            joined.append(pt.getLine(line));
+        }
+        assertEquals(model.toString(), joined.toString());
+    }
+
+    @Test
+    public void snapshotsShareTheAddBuffer_whileLaterInsertsFillNewChunks() {
+        PieceTable pt = new PieceTable("start\n");
+        String block = "line\n".repeat(10_000);
+        pt.insert(6, block);
+        ReadOnlyDocument first = pt.snapshot();
+        String firstText = pt.getText();
+        int firstLines = pt.getLineCount();
+
+        for (int i = 0; i < 20; i++) pt.insert(pt.getLength(), block);
+        pt.insert(3, "mid\n");
+        ReadOnlyDocument second = pt.snapshot();
+
+        assertEquals(firstText, first.getText());
+        assertEquals(firstLines, first.getLineCount());
+        assertEquals(pt.getText(), second.getText());
+        assertEquals(pt.getLineCount(), second.getLineCount());
+        assertEquals("line\n", second.getLine(150_000));
+    }
+}
@@ -382,4 +382,92 @@ public class PieceTreeTest {
 
 
 
+    @Test
+    public void seekRange_findsSameLeavesAsTwoSeparateSeeks() {
+        PieceTree tree = new PieceTree();
+        Random rnd = new Random(777);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(rnd.nextInt(tree.treeLength() + 1), new Piece(Piece.BufferType.ADD, 0, 1 + rnd.nextInt(5)));
+        }
+
+        PieceTree.NodeCursor single = new PieceTree.NodeCursor();
+        PieceTree.RangeCursor range = new PieceTree.RangeCursor();
+        for (int i = 0; i < 500; i++) {
+            int pos = rnd.nextInt(tree.treeLength());
+            int len = 1 + rnd.nextInt(tree.treeLength() - pos);
+            assertTrue(tree.seekRange(pos, len, range));
+
+            assertTrue(tree.seek(pos, single));
+            assertSame(single.node, range.start.node, "start leaf mismatch at pos=" + pos + " len=" + len);
+            assertEquals(single.offset, range.start.offset);
+
+            assertTrue(tree.seek(pos + len, single));
+            assertSame(single.node, range.end.node, "end leaf mismatch at pos=" + pos + " len=" + len);
+            assertEquals(single.offset, range.end.offset);
+        }
+    }
+
+    @Test
+    public void seek_onEmptyTree_returnsFalseAndClearsCursor() {
+        PieceTree tree = new PieceTree();
+        PieceTree.RangeCursor range = new PieceTree.RangeCursor();
+        assertFalse(tree.seek(0, range.start));
+        assertNull(range.start.node);
+        assertFalse(tree.seekRange(0, 1, range));
+    }
+
+    @Test
+    public void leafLinksAndInvariants_holdAfterInsertsAndRemoves() {
+        PieceTree tree = new PieceTree();
+        Random rnd = new Random(4242);
+        for (int i = 0; i < 300; i++) {
+            int len = tree.treeLength();
+            if (len > 10 && rnd.nextInt(3) == 0) {
+                int pos = rnd.nextInt(len);
+                tree.remove(pos, 1 + rnd.nextInt(Math.min(8, len - pos)));
+            } else {
+                tree.insert(rnd.nextInt(len + 1), new Piece(Piece.BufferType.ADD, i, 1 + rnd.nextInt(4)));
+            }
+
+            assertTrue(tree.isValidRedBlack(), "red-black invariants broken at iteration " + i);
+
+            List<RBTree.Node<Piece>> inOrder = new ArrayList<>();
+            collectLeaves(tree.root, inOrder);
+
+            RBTree.Node<Piece> prev = null;
+            for (RBTree.Node<Piece> leaf : inOrder) {
+                assertSame(prev, leaf.prevLeaf, "prev link broken at iteration " + i);
+                if (prev != null) assertSame(leaf, prev.nextLeaf, "next link broken at iteration " + i);
+                prev = leaf;
+            }
+            if (prev != null) assertNull(prev.nextLeaf, "last leaf must not link forward");
+        }
+    }
+
+    @Test
+    public void pieces_startsAtContainingPieceAndWalksToEnd() {
+        PieceTree tree = new PieceTree();
+        tree.insert(0, new Piece(Piece.BufferType.ADD, 0, 4));
+        tree.insert(4, new Piece(Piece.BufferType.ADD, 10, 3));
+        tree.insert(7, new Piece(Piece.BufferType.ADD, 20, 5));
+
+        PieceTree.PieceIterator it = tree.pieces(5);
+        assertEquals(1, it.startOffset());
+        assertEquals(10, it.next().getStart());
+        assertEquals(20, it.next().getStart());
+        assertFalse(it.hasNext());
+
+        assertFalse(new PieceTree().pieces(0).hasNext());
+    }
+
+    private void collectLeaves(RBTree.Node<Piece> node, List<RBTree.Node<Piece>> out) {
+        if (node == null) return;
+        if (node.isLeaf()) {
+            out.add(node);
+            return;
+        }
+        collectLeaves(node.left, out);
+        collectLeaves(node.right, out);
+    }
+
 }
@@ -0,0 +1,50 @@
+package texteditor.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectionTest {
+    private final Document document = Document.forText("one\ntwo\nthree\n");
+    private final Caret caret = new Caret(document);
+    private final Selection selection = new Selection(document, caret);
+
+    @Test
+    void endsFollowEditsAroundThem() {
+        document.addDocumentListener(selection);
+        selection.select(4, 7);
+
+        document.insert(0, "xx");
+        caret.setPosition(9);
+        assertEquals(6, selection.getAnchor(), "pushed along by text inserted before it");
+
+        document.insert(6, "yy");
+        assertEquals(8, selection.getAnchor(), "pushed along by text inserted at it");
+
+        document.remove(5, 5);
+        assertEquals(5, selection.getAnchor(), "left where a removal around it began");
+    }
+
+    @Test
+    void selectAll_setsOnlyTheTwoEnds() {
+        caret.setPosition(5);
+        selection.selectAll();
+
+        assertEquals(0, selection.getStart());
+        assertEquals(document.getLength(), selection.getEnd());
+        assertEquals(document.getLength(), caret.getPosition());
+
+        selection.collapse();
+        assertTrue(selection.isEmpty());
+        assertEquals(document.getLength(), selection.getAnchor());
+    }
+
+    @Test
+    void startAndEnd_doNotDependOnDirection() {
+        selection.select(9, 2);
+
+        assertEquals(2, selection.getStart());
+        assertEquals(9, selection.getEnd());
+        assertEquals(2, caret.getPosition());
+    }
+}
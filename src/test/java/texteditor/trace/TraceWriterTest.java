@@ -0,0 +1,53 @@
+package texteditor.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceWriterTest {
+
+    @Test
+    void roundTrip_preservesEventsAndInitialLength() throws IOException {
+        List<TraceEvent> events = List.of(
+                TraceEvent.insert(120, 5, "h"),
+                TraceEvent.insert(90, 6, "é\n"),
+                TraceEvent.delete(40, 7, 1),
+                TraceEvent.move(2500, 0),
+                TraceEvent.insert(700, 0, "pasted ".repeat(50)),
+                TraceEvent.move(10, 1_000_000),
+                TraceEvent.delete(0, 3, 999_997));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TraceWriter writer = new TraceWriter(bytes, 1_000_000)) {
+            for (TraceEvent event : events) writer.write(event);
+        }
+
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(1_000_000, reader.getInitialLength());
+            for (TraceEvent expected : events) {
+                assertEquals(expected, reader.next());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void typingRun_costsAFewBytesPerKeystroke() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TraceWriter writer = new TraceWriter(bytes, 0)) {
+            for (int i = 0; i < 1000; i++) writer.write(TraceEvent.insert(100, i, "x"));
+        }
+        assertTrue(bytes.size() < 1000 * 6, "trace was " + bytes.size() + " bytes");
+    }
+
+    @Test
+    void reader_rejectsForeignData() {
+        byte[] notATrace = "hello world".getBytes();
+        assertThrows(IOException.class, () -> new TraceReader(new ByteArrayInputStream(notATrace)));
+    }
+}
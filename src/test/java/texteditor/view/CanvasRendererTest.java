@@ -0,0 +1,104 @@
+package texteditor.view;
+
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RecordingSurface;
+import texteditor.view.style.StyleRun;
+import texteditor.view.style.TextStyle;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanvasRendererTest {
+    private static final TextStyle KEYWORD = TextStyle.of(Color.BLUE);
+    private static final TextStyle NUMBER = TextStyle.of(Color.GREEN);
+
+    private final TextMeasurer measurer = new TextMeasurer() {
+        @Override public double measureWidth(String text) {return (text == null) ? 0 : text.length() * 10;}
+        @Override public double getLineHeight() {return 20;}
+        @Override public double getBaselineOffset() {return 15;}
+        @Override public Font getFont() {return null;}
+    };
+    private final CanvasRenderer renderer = new CanvasRenderer(measurer, 10, 20);
+    private final RecordingSurface surface = new RecordingSurface(400, 420, 1, measurer, true);
+
+    @Test
+    void styledRows_setEachStyleOnceForAllRows() {
+        Document document = Document.forText("int x = 1;\n".repeat(20));
+        List<VisualLine> lines = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+        renderer.setStyleProvider((doc, start, end) -> {
+            // "int" and the digit of every line
+            List<StyleRun> runs = new ArrayList<>();
+            for (int line = doc.getLineIndex(start); line <= doc.getLineIndex(end); line++) {
+                int lineStart = doc.getLineStart(line);
+                runs.add(new StyleRun(lineStart, lineStart + 3, KEYWORD));
+                runs.add(new StyleRun(lineStart + 8, lineStart + 9, NUMBER));
+            }
+            return runs;
+        });
+
+        renderer.drawDocumentLines(surface, document, lines, 0, 20);
+
+        assertEquals(3, surface.getStateChanges(), "plain, keyword and number fills; the font never changes");
+        assertEquals(20 * 4, surface.getTextCalls());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) expected.add("int");
+        for (int i = 0; i < 20; i++) expected.addAll(List.of(" x = ", ";"));
+        for (int i = 0; i < 20; i++) expected.add("1");
+        assertEquals(expected, surface.getTextLog(), "grouped by style in order of first use");
+    }
+
+    @Test
+    void neighbouringRunsOfOneStyle_areDrawnAsOnePiece() {
+        Document document = Document.forText("abcdef\n");
+        List<VisualLine> lines = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+        renderer.setStyleProvider((doc, start, end) -> List.of(
+                new StyleRun(0, 2, KEYWORD), new StyleRun(2, 4, KEYWORD), new StyleRun(4, 100, TextStyle.PLAIN)));
+
+        renderer.drawDocumentLines(surface, document, lines);
+
+        assertEquals(List.of("abcd", "ef"), surface.getTextLog());
+        assertEquals(6 * 10 * 20, surface.getTextArea(), 1e-9, "pieces side by side, not overlapping");
+    }
+
+    @Test
+    void selectAll_fillsOnlyTheRowsDrawn() {
+        Document document = Document.forText("abc\n".repeat(100_000));
+        List<VisualLine> lines = new LayoutEngine(measurer).calculateViewportLayout(document, 380, 50_000, 0, 5, 0)
+                .getVisualLines();
+        renderer.setSelection(0, document.getLength());
+
+        renderer.drawDocumentLines(surface, document, lines, 0, 5);
+
+        assertEquals(5, surface.getFillCalls(), "one rectangle per row on screen");
+        assertEquals(5, surface.getTextCalls());
+    }
+
+    @Test
+    void selectionWithinRows_coversSelectedTextAndNewlines() {
+        Document document = Document.forText("abcdef\nxy\n");
+        List<VisualLine> lines = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+        List<double[]> fills = new ArrayList<>();
+        RecordingSurface recording = new RecordingSurface(400, 420, 1, measurer, false) {
+            @Override
+            public void fillRect(double x, double y, double width, double height) {
+                super.fillRect(x, y, width, height);
+                fills.add(new double[] {x, y, width, height});
+            }
+        };
+        renderer.setSelection(9, 2);
+
+        renderer.drawDocumentLines(recording, document, lines, 0, lines.size());
+
+        assertEquals(2, fills.size());
+        assertArrayEquals(new double[] {30, 20, 50, 20}, fills.get(0), "\"cdef\" and its newline");
+        assertArrayEquals(new double[] {10, 40, 20, 20}, fills.get(1), "\"xy\" up to the unselected newline");
+    }
+}
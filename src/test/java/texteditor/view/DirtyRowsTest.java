@@ -0,0 +1,104 @@
+package texteditor.view;
+
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirtyRowsTest {
+
+    // ten characters to a row at the width used below
+    private final LayoutEngine layoutEngine = new LayoutEngine(new TextMeasurer() {
+        @Override public double measureWidth(String text) {return (text == null) ? 0 : text.length() * 10;}
+        @Override public double getLineHeight() {return 10;}
+        @Override public double getBaselineOffset() {return 8;}
+        @Override public Font getFont() {return null;}
+    });
+
+    private List<VisualLine> layout(Document document) {
+        return layoutEngine.calculateLayout(document, 100).getVisualLines();
+    }
+
+    private Document documentWithRows(DirtyRows dirtyRows) {
+        Document document = Document.forText("alpha\nbeta\ngamma\ndelta\nepsilon\n");
+        document.addDocumentListener(dirtyRows);
+        assertNull(dirtyRows.update(layout(document), 0), "the first frame repaints everything");
+        return document;
+    }
+
+    @Test
+    void typingInALine_dirtiesOnlyThatRowAndTheCaretRows() {
+        DirtyRows dirtyRows = new DirtyRows();
+        Document document = documentWithRows(dirtyRows);
+
+        document.insert(13, "x");
+        BitSet dirty = dirtyRows.update(layout(document), 2).rows();
+
+        assertEquals(BitSet.valueOf(new long[]{0b101}), dirty);
+    }
+
+    @Test
+    void rowsAfterAnEditThatOnlyMovesThem_stayClean() {
+        DirtyRows dirtyRows = new DirtyRows();
+        Document document = documentWithRows(dirtyRows);
+
+        document.insert(6, "b");
+        document.remove(6, 1);
+        document.insert(6, "be");
+        BitSet dirty = dirtyRows.update(layout(document), 0).rows();
+
+        assertEquals(BitSet.valueOf(new long[]{0b11}), dirty);
+    }
+
+    @Test
+    void newLineInTheMiddle_dirtiesEveryRowBelowIt() {
+        DirtyRows dirtyRows = new DirtyRows();
+        Document document = documentWithRows(dirtyRows);
+
+        document.insert(8, "\n");
+        BitSet dirty = dirtyRows.update(layout(document), 2).rows();
+
+        BitSet expected = new BitSet();
+        expected.set(0, 5);
+        assertEquals(expected, dirty.get(1, 7), "the split row and every row pushed down, including the new last row");
+        assertFalse(dirtyRows.update(layout(document), 2).rows().get(4), "the next frame is clean again");
+    }
+
+    @Test
+    void sameFrameWithoutEdits_isClean_andInvalidateAllRepaintsEverything() {
+        DirtyRows dirtyRows = new DirtyRows();
+        Document document = documentWithRows(dirtyRows);
+
+        assertTrue(dirtyRows.update(layout(document), 0).rows().get(0));
+        assertEquals(1, dirtyRows.update(layout(document), 0).rows().cardinality());
+
+        dirtyRows.invalidateAll();
+        assertNull(dirtyRows.update(layout(document), 0));
+    }
+
+    @Test
+    void scrolling_dirtiesOnlyTheRowsThatScrolledIntoView() {
+        DirtyRows dirtyRows = new DirtyRows();
+        Document document = Document.forText("line\n".repeat(100));
+        List<VisualLine> rows = layout(document);
+        dirtyRows.update(rows.subList(10, 30), 5);
+
+        DirtyRows.Repaint down = dirtyRows.update(rows.subList(13, 33), 2);
+        assertEquals(3, down.shift());
+        BitSet expected = new BitSet();
+        expected.set(2);
+        expected.set(17, 20);
+        assertEquals(expected, down.rows(), "the caret row, which did not move with the text, and three new rows");
+
+        DirtyRows.Repaint up = dirtyRows.update(rows.subList(8, 28), -1);
+        assertEquals(-5, up.shift());
+        assertEquals(BitSet.valueOf(new long[]{0b10011111}), up.rows(), "five new rows and where the old caret moved");
+    }
+}
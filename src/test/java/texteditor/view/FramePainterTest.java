@@ -0,0 +1,156 @@
+package texteditor.view;
+
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RecordingSurface;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramePainterTest {
+    private static final double PADDING_TOP = 20;
+    private static final int ROWS = 10;
+
+    private final TextMeasurer measurer = new TextMeasurer() {
+        @Override public double measureWidth(String text) {return (text == null) ? 0 : text.length() * 10;}
+        @Override public double getLineHeight() {return 20;}
+        @Override public double getBaselineOffset() {return 15;}
+        @Override public Font getFont() {return null;}
+    };
+    private final CanvasRenderer renderer = new CanvasRenderer(measurer, 10, PADDING_TOP);
+    private final FramePainter painter = new FramePainter(renderer);
+    private final RecordingSurface surface = new RecordingSurface(400, PADDING_TOP + ROWS * 20, 1, measurer, true);
+    private final Document document = Document.forText("row\n".repeat(40));
+    private final List<VisualLine> lines = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+
+    private static double caretY(int screenRow) {
+        return PADDING_TOP + 15 + screenRow * 20;
+    }
+
+    private FramePainter.PaintedFrame paint(List<VisualLine> visualLines, int viewportRow, int caretRow) {
+        surface.reset();
+        return painter.paint(surface, document, visualLines, viewportRow, ROWS, 10, caretY(caretRow), true);
+    }
+
+    /** Paints the unedited rows with the caret off screen, whose row would otherwise always be repainted. */
+    private FramePainter.PaintedFrame paint(int selectionStart, int selectionEnd) {
+        surface.reset();
+        return painter.paint(surface, document, lines, 0, ROWS, 10, caretY(-2), true, selectionStart, selectionEnd);
+    }
+
+    @Test
+    void firstFrame_isFull_andLaterFramesRepaintOnlyWhatChanged() {
+        document.addDocumentListener(painter);
+
+        FramePainter.PaintedFrame first = paint(lines, 0, 2);
+        assertTrue(first.full());
+        assertEquals(ROWS, surface.getTextCalls());
+
+        document.insert(9, "x");
+        List<VisualLine> edited = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+        FramePainter.PaintedFrame typed = paint(edited, 0, 2);
+        assertFalse(typed.full());
+        assertEquals(1, typed.rowsPainted());
+        assertTrue(surface.getTextLog().contains("rxow\n"));
+        assertEquals(400 * 20, surface.getClearedArea(), "one band cleared");
+    }
+
+    @Test
+    void scrolling_movesPixelsAndDrawsOnlyTheNewRows() {
+        paint(lines, 0, 0);
+
+        FramePainter.PaintedFrame scrolled = paint(lines, 3, -1);
+        assertTrue(scrolled.scrolled());
+        assertEquals(1, surface.getMoveCalls());
+        assertEquals(400 * (ROWS - 3) * 20, surface.getMovedArea());
+        assertEquals(3, scrolled.rowsPainted(), "the caret scrolled off with its row");
+    }
+
+    @Test
+    void fractionalRowHeightOnTheScreen_repaintsInsteadOfMoving() {
+        RecordingSurface hiDpi = new RecordingSurface(400, PADDING_TOP + ROWS * 20, 4.0 / 3, measurer, false);
+        painter.paint(hiDpi, document, lines, 0, ROWS, 10, caretY(0), true);
+        hiDpi.reset();
+
+        FramePainter.PaintedFrame frame = painter.paint(hiDpi, document, lines, 1, ROWS, 10, caretY(0), true);
+        assertTrue(frame.full());
+        assertEquals(0, hiDpi.getMoveCalls());
+    }
+
+    @Test
+    void surfaceThatCannotMovePixels_repaintsTheScrolledFrame() {
+        RecordingSurface canvasLike = new RecordingSurface(400, PADDING_TOP + ROWS * 20, 1, measurer, false) {
+            @Override
+            public boolean moveArea(double y, double height, double dy) {
+                return false;
+            }
+        };
+        painter.paint(canvasLike, document, lines, 0, ROWS, 10, caretY(0), true);
+        canvasLike.reset();
+
+        FramePainter.PaintedFrame frame = painter.paint(canvasLike, document, lines, 3, ROWS, 10, caretY(-1), true);
+        assertTrue(frame.full());
+        assertEquals(ROWS, canvasLike.getTextCalls());
+    }
+
+    @Test
+    void changingTheSelection_repaintsOnlyTheRowsItGainedOrLost() {
+        paint(0, 0);
+
+        FramePainter.PaintedFrame selected = paint(0, 8);
+        assertEquals(2, selected.rowsPainted(), "the two rows selected");
+
+        FramePainter.PaintedFrame extended = paint(0, 12);
+        assertEquals(1, extended.rowsPainted(), "only the row the selection grew into");
+
+        FramePainter.PaintedFrame unchanged = paint(12, 0);
+        assertEquals(0, unchanged.rowsPainted());
+        assertEquals(0, surface.getFillCalls());
+
+        FramePainter.PaintedFrame cleared = paint(0, 0);
+        assertEquals(3, cleared.rowsPainted());
+    }
+
+    @Test
+    void selectionBelowAnEdit_isNotRepaintedForMoving() {
+        document.addDocumentListener(painter);
+        paint(20, 28);
+
+        document.insert(0, "x");
+        List<VisualLine> edited = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+        surface.reset();
+        FramePainter.PaintedFrame frame = painter.paint(surface, document, edited, 0, ROWS, 10, caretY(-2), true,
+                21, 29);
+
+        assertEquals(1, frame.rowsPainted(), "only the edited row");
+    }
+
+    @Test
+    void typing_fillsTheEditedRowAsText_untilAFrameWithoutEdits() {
+        List<String> rasterized = new ArrayList<>();
+        renderer.setLineTileCache(new LineTileCache(1 << 20, (key, width, height, baseline, scale) -> {
+            rasterized.add(key.text());
+            return null;
+        }));
+        document.addDocumentListener(painter);
+        paint(lines, 0, 5);
+        rasterized.clear();
+
+        document.insert(23, "x");
+        paint(new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines(), 0, 5);
+        document.insert(24, "y");
+        List<VisualLine> typed = new LayoutEngine(measurer).calculateLayout(document, 380).getVisualLines();
+        paint(typed, 0, 5);
+        assertEquals(List.of(), rasterized, "typing rasterizes nothing");
+        assertTrue(surface.getTextLog().contains("rowxy\n"));
+
+        paint(typed, 0, 6);
+        assertEquals(List.of("rowxy"), rasterized, "the row is tiled once the typing stops");
+    }
+}
@@ -0,0 +1,51 @@
+package texteditor.view;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameSchedulerTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final FrameScheduler scheduler = new FrameScheduler(
+            () -> calls.add("frame"), () -> calls.add("start"), () -> calls.add("stop"));
+
+    @Test
+    void requestsBeforeAPulse_runOneFrame() {
+        for (int i = 0; i < 5; i++) scheduler.requestFrame();
+        assertEquals(List.of("start"), calls, "nothing is drawn until the pulse");
+
+        scheduler.onPulse();
+        scheduler.onPulse();
+        assertEquals(List.of("start", "frame", "stop"), calls);
+        assertEquals(5, scheduler.getRequests());
+        assertEquals(1, scheduler.getFrames());
+    }
+
+    @Test
+    void pulsesKeepRunningWhileFramesAreRequested() {
+        scheduler.requestFrame();
+        scheduler.onPulse();
+        scheduler.requestFrame();
+        scheduler.onPulse();
+        scheduler.onPulse();
+        scheduler.requestFrame();
+
+        assertEquals(List.of("start", "frame", "frame", "stop", "start"), calls);
+        assertTrue(scheduler.isFrameRequested());
+    }
+
+    @Test
+    void flush_drawsNowAndLeavesNothingForThePulse() {
+        scheduler.flush();
+        assertTrue(calls.isEmpty());
+
+        scheduler.requestFrame();
+        scheduler.flush();
+        scheduler.onPulse();
+        assertEquals(List.of("start", "frame", "stop"), calls);
+    }
+}
@@ -0,0 +1,38 @@
+package texteditor.view;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameStatsTest {
+
+    @Test
+    void percentilesAndBudget_coverTheRecentFrames() {
+        FrameStats stats = new FrameStats();
+        for (int i = 1; i <= 100; i++) stats.record(i * 1_000_000L, 2, i % 2 == 0, i == 1);
+
+        assertEquals(50.0, stats.percentileMillis(0.50), 1e-9);
+        assertEquals(99.0, stats.percentileMillis(0.99), 1e-9);
+        assertEquals(100.0, stats.percentileMillis(1.0), 1e-9);
+        assertEquals(0.16, stats.withinBudget(), 1e-9);
+        assertEquals(50, stats.getScrolledFrames());
+        assertEquals(1, stats.getFullFrames());
+        assertEquals(2.0, stats.averageRowsPainted(), 1e-9);
+
+        stats.recordCalls(300, 50);
+        assertEquals(3.0, stats.averageDrawCalls(), 1e-9);
+        assertEquals(0.5, stats.averageStateChanges(), 1e-9);
+    }
+
+    @Test
+    void oldFramesFallOutOfTheWindow() {
+        FrameStats stats = new FrameStats();
+        for (int i = 0; i < FrameStats.WINDOW; i++) stats.record(50_000_000L, 1, false, false);
+        for (int i = 0; i < FrameStats.WINDOW; i++) stats.record(2_000_000L, 1, true, false);
+
+        assertEquals(2.0, stats.percentileMillis(1.0), 1e-9);
+        assertEquals(1.0, stats.withinBudget());
+        assertEquals(500, stats.sustainableFps(), 1e-9);
+        assertEquals(2L * FrameStats.WINDOW, stats.getFrames());
+    }
+}
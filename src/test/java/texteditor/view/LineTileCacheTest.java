@@ -0,0 +1,69 @@
+package texteditor.view;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import texteditor.view.LineTileCache.TileKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineTileCacheTest {
+
+    private final List<String> rasterized = new ArrayList<>();
+    // images are not needed to check what gets rasterized and kept
+    private final LineTileCache.Rasterizer rasterizer = (key, width, height, baseline, scale) -> {
+        rasterized.add(key.text());
+        return null;
+    };
+
+    private static TileKey key(String text) {
+        return new TileKey(text, null, Color.BLACK);
+    }
+
+    @Test
+    void sameTextFontAndFill_isRasterizedOnce() {
+        LineTileCache cache = new LineTileCache(1 << 20, rasterizer);
+
+        cache.tile(key("hello"), 50, 10, 8, 1);
+        cache.tile(key("world"), 50, 10, 8, 1);
+        cache.tile(key("hello"), 50, 10, 8, 1);
+        cache.tile(new TileKey("hello", null, Color.RED), 50, 10, 8, 1);
+
+        assertEquals(List.of("hello", "world", "hello"), rasterized);
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3 * (50 + 2 * LineTileCache.MARGIN) * 10 * 4, cache.getBytes());
+    }
+
+    @Test
+    void overBudget_dropsTheLeastRecentlyDrawnTiles() {
+        // room for two 56x10 tiles
+        LineTileCache cache = new LineTileCache(2 * 56 * 10 * 4, rasterizer);
+
+        cache.tile(key("a"), 52, 10, 8, 1);
+        cache.tile(key("b"), 52, 10, 8, 1);
+        cache.tile(key("a"), 52, 10, 8, 1);
+        cache.tile(key("c"), 52, 10, 8, 1);
+        assertEquals(2, cache.size());
+
+        rasterized.clear();
+        cache.tile(key("a"), 52, 10, 8, 1);
+        cache.tile(key("b"), 52, 10, 8, 1);
+        assertEquals(List.of("b"), rasterized, "b was evicted; a was drawn more recently");
+        assertTrue(cache.getBytes() <= 2 * 56 * 10 * 4);
+    }
+
+    @Test
+    void scaleChange_rasterizesAgainAtTheNewScale() {
+        LineTileCache cache = new LineTileCache(1 << 20, rasterizer);
+
+        LineTileCache.Tile tile = cache.tile(key("x"), 10, 10, 8, 1);
+        LineTileCache.Tile hiDpi = cache.tile(key("x"), 10, 10, 8, 2);
+
+        assertEquals(2, rasterized.size());
+        assertEquals(tile.width(), hiDpi.width());
+        assertEquals(4 * tile.bytes(), hiDpi.bytes());
+    }
+}
@@ -170,13 +170,13 @@ class CaretControllerTest {
     @Test
     void moveToClickPosition_clampsToEndOfLine_whenClickPastRightEdge() {
         VisualLine firstLine = visualLines.get(0);
-        double lineWidth = measurer.measureWidth(firstLine.text());
+        double lineWidth = measurer.measureWidth(firstLine.text(document));
         double clickX = paddingHorizontal + lineWidth + 50; // well beyond end
         double clickY = paddingTop + 5;
 
         controller.moveToClickPosition(clickX, clickY, visualLines);
 
-        assertEquals(firstLine.startPosition() + firstLine.text().length() - 1, caret.getPosition());
+        assertEquals(firstLine.startPosition() + firstLine.text(document).length() - 1, caret.getPosition());
     }
 
     @Test
@@ -232,6 +232,5 @@ class CaretControllerTest {
         @Override public int endPosition() { return end; }
         @Override public int length() { return end - start; }
         @Override public boolean hasNewlineChar() { return newline; }
-        @Override public String text() { return text; }
     }
 }
@@ -0,0 +1,64 @@
+package texteditor.view.gutter;
+
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+import texteditor.view.layout.LayoutEngine;
+import texteditor.view.layout.VisualLine;
+import texteditor.view.render.RecordingSurface;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineNumberGutterTest {
+    private static final int ROWS = 5;
+
+    private final TextMeasurer measurer = new TextMeasurer() {
+        @Override public double measureWidth(String text) {return (text == null) ? 0 : text.length() * 10;}
+        @Override public double getLineHeight() {return 20;}
+        @Override public double getBaselineOffset() {return 15;}
+        @Override public Font getFont() {return null;}
+    };
+    private final DigitStrip strip = new DigitStrip(measurer, Color.GRAY, 1, (font, fill, w, h, baseline, scale) -> null);
+    private final LineNumberGutter gutter = new LineNumberGutter(20, 0);
+    private final RecordingSurface surface = new RecordingSurface(60, ROWS * 20, measurer);
+
+    @Test
+    void wrappedRows_continueTheirLineWithoutANumber() {
+        // wraps at 5 characters: the second line takes three rows
+        Document document = Document.forText("a\nbbbbbbbbbbbb\nc\nd\n");
+        List<VisualLine> lines = new LayoutEngine(measurer).calculateLayout(document, 50).getVisualLines();
+
+        assertArrayEquals(new int[] {1, 2, 0, 0, 3}, gutter.numbers(document, lines, 0, ROWS));
+        assertArrayEquals(new int[] {0, 0, 3, 4, 0}, gutter.numbers(document, lines, 2, ROWS));
+    }
+
+    @Test
+    void laterFrames_repaintOnlyRowsWhoseNumberChanged() {
+        Document document = Document.forText("line\n".repeat(100));
+        LayoutEngine engine = new LayoutEngine(measurer);
+        List<VisualLine> lines = engine.calculateLayout(document, 500).getVisualLines();
+
+        assertEquals(ROWS, gutter.paint(surface, strip, document, lines, 10, ROWS));
+        assertEquals(2 * ROWS, surface.getImageCalls(), "two digits a row, one image call each");
+
+        document.insert(document.getLineStart(11), "typed");
+        lines = engine.calculateLayout(document, 500).getVisualLines();
+        surface.reset();
+        assertEquals(0, gutter.paint(surface, strip, document, lines, 10, ROWS));
+        assertEquals(0, surface.getDrawCalls());
+
+        assertEquals(ROWS, gutter.paint(surface, strip, document, lines, 11, ROWS));
+    }
+
+    @Test
+    void width_followsTheDigitsOfTheLineCount() {
+        double twoDigits = gutter.widthFor(7, strip);
+        assertEquals(twoDigits, gutter.widthFor(99, strip));
+        assertEquals(twoDigits + strip.getDigitWidth(), gutter.widthFor(100, strip));
+        assertEquals(2 * LineNumberGutter.PADDING + 2 * 10, twoDigits);
+    }
+}
@@ -0,0 +1,137 @@
+package texteditor.view.layout;
+
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackgroundRewrapperTest {
+
+    // stands in for the FX thread: commits queue up here and the test runs them
+    private final LinkedBlockingQueue<Runnable> commits = new LinkedBlockingQueue<>();
+
+    @Test
+    void backgroundPass_makesEveryLineExact() throws InterruptedException {
+        Document document = Document.forText(sampleText(5000));
+        LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0, true));
+        HeightMap heights = engine.getHeightMap(document, 12);
+        BackgroundRewrapper rewrapper = new BackgroundRewrapper(engine, commits::add);
+        assertTrue(rewrapper.isBackground());
+
+        rewrapper.start(document, 12);
+        runCommitsUntil(() -> allExact(heights));
+
+        List<VisualLine> full = new LayoutEngine(new FixedWidthMeasurer(1.0, true)).calculateLayout(document, 12).getVisualLines();
+        assertEquals(full.size(), heights.totalRows());
+        rewrapper.shutdown();
+    }
+
+    @Test
+    void confinedMeasurer_countsOneBatchPerCommit() {
+        Document document = Document.forText(sampleText(3 * BackgroundRewrapper.BATCH_LINES));
+        LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0, false));
+        HeightMap heights = engine.getHeightMap(document, 12);
+        BackgroundRewrapper rewrapper = new BackgroundRewrapper(engine, commits::add);
+        assertFalse(rewrapper.isBackground());
+
+        rewrapper.start(document, 12);
+        commits.poll().run();
+        assertTrue(heights.isExact(BackgroundRewrapper.BATCH_LINES - 1));
+        assertFalse(heights.isExact(BackgroundRewrapper.BATCH_LINES));
+
+        while (!commits.isEmpty()) commits.poll().run();
+        assertTrue(allExact(heights));
+        assertEquals(new LayoutEngine(new FixedWidthMeasurer(1.0, false)).calculateLayout(document, 12).getLineCount(), heights.totalRows());
+    }
+
+    @Test
+    void editDuringPass_dropsTheBatchAndAsksForAnother() {
+        Document document = Document.forText(sampleText(2000));
+        LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0, false));
+        HeightMap heights = engine.getHeightMap(document, 12);
+        BackgroundRewrapper rewrapper = new BackgroundRewrapper(engine, commits::add);
+        document.addDocumentListener(rewrapper);
+        int[] staleCalls = {0};
+        rewrapper.setOnStale(() -> staleCalls[0]++);
+
+        rewrapper.start(document, 12);
+        document.insert(0, "typed");
+        assertEquals(1, staleCalls[0]);
+        commits.poll().run();
+
+        assertTrue(commits.isEmpty());
+        assertFalse(heights.isExact(1));
+    }
+
+    @Test
+    void passAfterAnEdit_resumesBelowTheLinesAlreadyCounted() {
+        int batch = BackgroundRewrapper.BATCH_LINES;
+        Document document = Document.forText(sampleText(3 * batch));
+        LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0, false));
+        HeightMap heights = engine.getHeightMap(document, 12);
+        BackgroundRewrapper rewrapper = new BackgroundRewrapper(engine, commits::add);
+        document.addDocumentListener(rewrapper);
+
+        rewrapper.start(document, 12);
+        commits.poll().run();
+        document.insert(0, "new line\n");
+        commits.clear();
+
+        rewrapper.start(document, 12);
+        commits.poll().run();
+        assertTrue(heights.isExact(batch), "counted by the first pass and moved down by the edit");
+        assertTrue(heights.isExact(2 * batch), "counted by the resumed pass");
+        assertFalse(heights.isExact(2 * batch + 1), "not counted yet");
+        assertFalse(heights.isExact(0), "the edited line is left to the viewport layout");
+
+        HeightMap wider = engine.getHeightMap(document, 20);
+        commits.clear();
+        rewrapper.start(document, 20);
+        commits.poll().run();
+        assertTrue(wider.isExact(0), "a new width starts from the first line");
+    }
+
+    @Test
+    void resizeDuringPass_leavesTheNewWidthAlone() {
+        Document document = Document.forText(sampleText(2000));
+        LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0, false));
+        engine.getHeightMap(document, 12);
+        BackgroundRewrapper rewrapper = new BackgroundRewrapper(engine, commits::add);
+
+        rewrapper.start(document, 12);
+        HeightMap heights = engine.getHeightMap(document, 20);
+        commits.poll().run();
+
+        assertTrue(commits.isEmpty());
+        assertFalse(heights.isExact(1));
+    }
+
+    private void runCommitsUntil(BooleanSupplier done) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!done.getAsBoolean()) {
+            Runnable commit = commits.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            assertNotNull(commit, "background pass did not finish");
+            commit.run();
+        }
+    }
+
+    private static boolean allExact(HeightMap heights) {
+        for (int line = 0; line < heights.getLineCount(); line++) {
+            if (!heights.isExact(line)) return false;
+        }
+        return true;
+    }
+
+    private static String sampleText(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("line ").append(i).append(" ").append("x".repeat(i % 29)).append('\n');
+        }
+        return text.toString();
+    }
+}
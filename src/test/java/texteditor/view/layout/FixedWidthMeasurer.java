@@ -0,0 +1,34 @@
+package texteditor.view.layout;
+
+import javafx.scene.text.Font;
+import texteditor.view.text.TextMeasurer;
+
+/** Every character is {@code charWidth} wide; rows are 10 high. Needs no FX toolkit. */
+class FixedWidthMeasurer implements TextMeasurer {
+    private final double charWidth;
+    private final boolean threadSafe;
+
+    FixedWidthMeasurer(double charWidth) {
+        this(charWidth, true);
+    }
+
+    FixedWidthMeasurer(double charWidth, boolean threadSafe) {
+        this.charWidth = charWidth;
+        this.threadSafe = threadSafe;
+    }
+
+    @Override
+    public double measureWidth(String text) {return (text == null) ? 0 : text.length() * charWidth;}
+
+    @Override
+    public boolean isThreadSafe() {return threadSafe;}
+
+    @Override
+    public double getLineHeight() {return 10;}
+
+    @Override
+    public double getBaselineOffset() {return 8;}
+
+    @Override
+    public Font getFont() {return null;}
+}
@@ -0,0 +1,93 @@
+package texteditor.view.layout;
+
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeightMapTest {
+
+    @Test
+    void prefixSums_matchBruteForce() {
+        Document document = Document.forText("x\n".repeat(999));
+        HeightMap heights = new HeightMap(document);
+        heights.ensureWidth(100, 1);
+        Random rnd = new Random(3);
+
+        int[] rows = new int[heights.getLineCount()];
+        Arrays.fill(rows, 1);
+        for (int round = 0; round < 2000; round++) {
+            int line = rnd.nextInt(rows.length);
+            rows[line] = 1 + rnd.nextInt(5);
+            heights.setRows(line, rows[line]);
+
+            int probe = rnd.nextInt(rows.length + 1);
+            int expected = 0;
+            for (int i = 0; i < probe; i++) expected += rows[i];
+            assertEquals(expected, heights.rowsBefore(probe));
+
+            int row = rnd.nextInt(heights.totalRows());
+            int owner = heights.lineAtRow(row);
+            assertTrue(heights.rowsBefore(owner) <= row && row < heights.rowsBefore(owner + 1),
+                    "row " + row + " is not in line " + owner);
+        }
+        assertEquals(rows.length - 1, heights.lineAtRow(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void longLinesAreEstimatedFromTheirLength() {
+        Document document = Document.forText("a".repeat(250) + "\n\n" + "b".repeat(100));
+        HeightMap heights = new HeightMap(document);
+        heights.ensureWidth(100, 1);
+
+        assertEquals(3, heights.getRows(0));
+        assertEquals(1, heights.getRows(1));
+        assertEquals(1, heights.getRows(2));
+        assertFalse(heights.isExact(0));
+        assertEquals(5, heights.totalRows());
+    }
+
+    @Test
+    void editsSpliceTheLinesTheyTouch() {
+        Document document = Document.forText("one\ntwo\nthree\nfour");
+        HeightMap heights = new HeightMap(document);
+        document.addDocumentListener(heights);
+        heights.ensureWidth(100, 1);
+        for (int line = 0; line < heights.getLineCount(); line++) heights.setRows(line, line + 1);
+
+        document.insert(document.getLineStart(1) + 1, "x\ny\n");
+        assertEquals(document.getLineCount(), heights.getLineCount());
+        assertTrue(heights.isExact(0));
+        assertFalse(heights.isExact(1));
+        assertFalse(heights.isExact(3));
+        assertEquals(3, heights.getRows(4));
+        assertEquals(4, heights.getRows(5));
+
+        document.remove(0, document.getLineStart(3));
+        assertEquals(document.getLineCount(), heights.getLineCount());
+        assertFalse(heights.isExact(0));
+        assertEquals(3, heights.getRows(1));
+        assertEquals(1 + 3 + 4, heights.totalRows());
+
+        document.insert(document.getLineStart(1), "z");
+        assertFalse(heights.isExact(1));
+        assertEquals(1, heights.getRows(1));
+    }
+
+    @Test
+    void layoutEngineRecordsExactRows() {
+        Document document = Document.forText(("short\n" + "w".repeat(30) + "\n").repeat(50));
+        LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0));
+        HeightMap heights = engine.getHeightMap(document, 12);
+
+        engine.calculateViewportLayout(document, 12, 20, 10, 2);
+        for (int line = 18; line < 26; line++) {
+            assertTrue(heights.isExact(line), "line " + line);
+            assertEquals(line % 2 == 0 ? 1 : 3, heights.getRows(line));
+        }
+        assertFalse(heights.isExact(0));
+    }
+}
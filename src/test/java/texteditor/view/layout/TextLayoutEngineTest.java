@@ -1,4 +1,284 @@
 package texteditor.view.layout;
 
-public class TextLayoutEngineTest {
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+import texteditor.model.DocumentListener;
+import texteditor.model.ReadOnlyDocument;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextLayoutEngineTest {
+
+    private final LayoutEngine engine = new LayoutEngine(new FixedWidthMeasurer(1.0));
+
+    @Test
+    void viewportLayout_matchesSliceOfFullLayout() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("line ").append(i).append(i % 7 == 0 ? " is long enough to wrap twice over" : "").append('\n');
+        }
+        Document document = Document.forText(text.toString());
+
+        List<VisualLine> full = engine.calculateLayout(document, 12).getVisualLines();
+        LayoutEngine.LayoutResult viewport = engine.calculateViewportLayout(document, 12, 100, 10, 3);
+
+        assertEquals(97, viewport.getFirstLine());
+        int firstRow = indexOfStart(full, document.getLineStart(97));
+        List<VisualLine> window = viewport.getVisualLines();
+        for (int i = 0; i < window.size(); i++) {
+            assertEquals(full.get(firstRow + i).startPosition(), window.get(i).startPosition());
+            assertEquals(full.get(firstRow + i).length(), window.get(i).length());
+        }
+
+        VisualLine top = window.get(viewport.getViewportRow());
+        assertEquals(document.getLineStart(100), top.startPosition());
+        assertTrue(window.size() >= viewport.getViewportRow() + 10 + 3);
+    }
+
+    @Test
+    void viewportLayout_onlyReadsLinesNearTheViewport() {
+        Document document = Document.forText("short line\n".repeat(100_000));
+        CountingDocument counting = new CountingDocument(document);
+
+        LayoutEngine.LayoutResult result = engine.calculateViewportLayout(counting, 500, 50_000, 40, 8);
+
+        assertEquals(50_000 - 8, result.getFirstLine());
+        assertEquals(50_000 + 40 + 8, result.getEndLine());
+        assertEquals(40 + 8 + 8, counting.linesRead);
+    }
+
+    @Test
+    void viewportLayout_clampsTopLineToDocument() {
+        Document document = Document.forText("a\nb\nc");
+
+        LayoutEngine.LayoutResult result = engine.calculateViewportLayout(document, 100, 10, 5, 2);
+
+        assertEquals(0, result.getFirstLine());
+        assertEquals(3, result.getEndLine());
+        assertEquals(2, result.getViewportRow());
+        assertEquals("c", result.getVisualLines().get(result.getViewportRow()).text(document));
+    }
+
+    @Test
+    void lineCache_relaysOutOnlyTheEditedLines() {
+        CountingDocument document = new CountingDocument(Document.forText("short line\n".repeat(1000)));
+        List<VisualLine> before = engine.calculateViewportLayout(document, 500, 100, 40, 8).getVisualLines();
+
+        document.linesRead = 0;
+        engine.calculateViewportLayout(document, 500, 100, 40, 8);
+        assertEquals(0, document.linesRead);
+
+        document.insert(document.getLineStart(110) + 3, "x");
+        List<VisualLine> typed = engine.calculateViewportLayout(document, 500, 100, 40, 8).getVisualLines();
+        assertEquals(1, document.linesRead);
+        assertEquals(before.size(), typed.size());
+
+        document.linesRead = 0;
+        document.insert(document.getLineStart(105), "new\nlines\n");
+        List<VisualLine> split = engine.calculateViewportLayout(document, 500, 100, 40, 8).getVisualLines();
+        assertEquals(3, document.linesRead);
+        for (VisualLine row : split) {
+            assertEquals(document.getLine(document.getLineIndex(row.startPosition())).length(),
+                    row.endPosition() - document.getLineStart(document.getLineIndex(row.startPosition())));
+        }
+
+        document.linesRead = 0;
+        engine.calculateViewportLayout(document, 300, 100, 40, 8);
+        assertEquals(40 + 8 + 8, document.linesRead);
+    }
+
+    @Test
+    void wrapping_fromAdvances_matchesGreedyMeasuring() {
+        TextMeasurer proportional = new TextMeasurer() {
+            @Override
+            public double measureWidth(String text) {
+                double width = 0;
+                for (int i = 0; i < text.length(); i++) width += 1 + text.charAt(i) % 3;
+                return width;
+            }
+            @Override public double getLineHeight() {return 10;}
+            @Override public double getBaselineOffset() {return 8;}
+            @Override public Font getFont() {return null;}
+        };
+        LayoutEngine proportionalEngine = new LayoutEngine(proportional);
+        Random rnd = new Random(5);
+
+        for (int round = 0; round < 200; round++) {
+            StringBuilder line = new StringBuilder();
+            int length = rnd.nextInt(120);
+            for (int i = 0; i < length; i++) line.append((char) ('a' + rnd.nextInt(26)));
+            String text = line + (rnd.nextBoolean() ? "\n" : "");
+            double width = 5 + rnd.nextInt(40);
+
+            Document document = Document.forText(text);
+            List<VisualLine> rows = proportionalEngine.calculateLayout(document, width).getVisualLines();
+
+            // reference: take the longest prefix that fits, at least one character
+            String content = line.toString();
+            int expectedStart = 0;
+            for (VisualLine row : rows) {
+                assertEquals(expectedStart, row.startPosition());
+                int fit = 1;
+                while (expectedStart + fit < content.length()
+                        && proportional.measureWidth(content.substring(expectedStart, expectedStart + fit + 1)) <= width) {
+                    fit++;
+                }
+                if (proportional.measureWidth(content.substring(expectedStart)) <= width) fit = content.length() - expectedStart;
+                int rowContent = row.hasNewlineChar() ? row.length() - 1 : row.length();
+                if (content.isEmpty()) break;
+                assertEquals(fit, rowContent, "row at " + expectedStart + " of '" + content + "' width " + width);
+                assertEquals(proportional.measureWidth(row.text(document).substring(0, rowContent)), row.width(), 1e-6);
+                expectedStart += row.length();
+            }
+        }
+    }
+
+    @Test
+    void rows_holdRangesAndResolveTextFromTheDocument() {
+        Document document = Document.forText("abcdefghij\nxy");
+        List<VisualLine> rows = engine.calculateLayout(document, 4).getVisualLines();
+
+        assertEquals(List.of("abcd", "efgh", "ij\n", "xy"), rows.stream().map(row -> row.text(document)).toList());
+        assertEquals(3, rows.get(2).length());
+        assertTrue(rows.get(2).hasNewlineChar());
+        assertEquals(2, rows.get(2).width(), 1e-9);
+        assertEquals(11, rows.get(3).startPosition());
+    }
+
+    @Test
+    void longLine_readsOnlyTheChunksAroundTheViewport() {
+        String longLine = "0123456789".repeat(100_000);
+        CountingDocument document = new CountingDocument(Document.forText("first\n" + longLine + "\nlast\n"));
+        int lineStart = document.getLineStart(1);
+
+        LayoutEngine.LayoutResult result = engine.calculateViewportLayout(document, 100, 1, 5_000, 40, 8);
+
+        assertEquals(0, document.linesRead);
+        assertTrue(document.charsRead <= 4 * LongLineLayout.CHUNK_CHARS, "read " + document.charsRead);
+        int chunk = 5_000 / 41;
+        VisualLine top = result.getVisualLines().get(result.getViewportRow());
+        assertEquals(lineStart + chunk * LongLineLayout.CHUNK_CHARS + (5_000 - chunk * 41) * 100, top.startPosition());
+
+        List<VisualLine> window = result.getVisualLines();
+        for (int i = 1; i < window.size(); i++) {
+            assertEquals(window.get(i - 1).endPosition(), window.get(i).startPosition());
+        }
+        assertEquals(8, result.getViewportRow());
+        assertEquals(5_000, engine.rowInLine(document, 100, top.startPosition()));
+    }
+
+    @Test
+    void longLine_countsTheSameRowsItLaysOut() {
+        String text = "x\n" + "word ".repeat(30_000) + "\ny";
+        Document document = Document.forText(text);
+        LayoutEngine sequential = new LayoutEngine(new FixedWidthMeasurer(1.0));
+
+        List<VisualLine> full = sequential.calculateLayout(document, 77).getVisualLines();
+        int[] counts = engine.countRows(document, 77, 0, document.getLineCount());
+
+        assertEquals(full.size(), counts[0] + counts[1] + counts[2]);
+        int position = 0;
+        for (VisualLine row : full) {
+            assertEquals(position, row.startPosition());
+            assertTrue(row.width() <= 77);
+            position = row.endPosition();
+        }
+        assertEquals(text.length(), position);
+    }
+
+    @Test
+    void longLine_chunkBoundaryDoesNotSplitASurrogatePair() {
+        int pairAt = LongLineLayout.CHUNK_CHARS - 1;
+        String line = "a".repeat(pairAt) + "😀" + "b".repeat(LongLineLayout.LONG_LINE_CHARS);
+        Document document = Document.forText(line + "\n");
+
+        List<VisualLine> rows = engine.calculateLayout(document, 1000).getVisualLines();
+
+        assertTrue(rows.stream().anyMatch(row -> row.startPosition() == pairAt), "the pair starts a chunk");
+        for (VisualLine row : rows) {
+            assertFalse(Character.isLowSurrogate(line.charAt(row.startPosition())), "row at " + row.startPosition());
+        }
+        assertEquals(rows.size(), engine.countRows(document, 1000, 0, 1)[0]);
+        assertEquals(rows.indexOf(rows.stream().filter(row -> row.startPosition() == pairAt).findFirst().get()),
+                engine.rowInLine(document, 1000, pairAt));
+    }
+
+    @Test
+    void parallelLayout_matchesSequentialLayout() {
+        Random rnd = new Random(17);
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 20_000; line++) {
+            if (line == 7_000) text.append("y".repeat(70_000));
+            for (int i = rnd.nextInt(60); i > 0; i--) text.append((char) ('a' + rnd.nextInt(26)));
+            text.append('\n');
+        }
+        ReadOnlyDocument snapshot = Document.create(Document.Engine.PIECE_TABLE, text.toString()).snapshot();
+        List<VisualLine> sequential = new LayoutEngine(new FixedWidthMeasurer(1.0)).calculateLayout(snapshot, 25)
+                .getVisualLines();
+
+        for (int parallelism : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<VisualLine> parallel = engine.calculateLayoutParallel(snapshot, 25, pool).getVisualLines();
+                assertEquals(sequential.size(), parallel.size());
+                for (int i = 0; i < sequential.size(); i++) {
+                    VisualLine expected = sequential.get(i), actual = parallel.get(i);
+                    assertEquals(expected.startPosition(), actual.startPosition(), "row " + i);
+                    assertEquals(expected.length(), actual.length(), "row " + i);
+                    assertEquals(expected.hasNewlineChar(), actual.hasNewlineChar(), "row " + i);
+                    assertEquals(expected.width(), actual.width(), "row " + i);
+                }
+                int[] counts = engine.countRowsParallel(snapshot, 25, 3, snapshot.getLineCount(), pool);
+                assertArrayEquals(engine.countRows(snapshot, 25, 3, snapshot.getLineCount()), counts);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static int indexOfStart(List<VisualLine> lines, int start) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startPosition() == start) return i;
+        }
+        throw new AssertionError("no visual line starts at " + start);
+    }
+
+    private static class CountingDocument implements Document {
+        private final Document delegate;
+        int linesRead;
+        int charsRead;
+
+        CountingDocument(Document delegate) {this.delegate = delegate;}
+
+        @Override public void insert(int position, String text) {delegate.insert(position, text);}
+        @Override public void remove(int position, int length) {delegate.remove(position, length);}
+        @Override public long getVersion() {return delegate.getVersion();}
+        @Override public void addDocumentListener(DocumentListener listener) {delegate.addDocumentListener(listener);}
+        @Override public void removeDocumentListener(DocumentListener listener) {delegate.removeDocumentListener(listener);}
+        @Override public ReadOnlyDocument snapshot() {return delegate.snapshot();}
+
+        @Override public int getLength() {return delegate.getLength();}
+        @Override public String getText() {throw new AssertionError("layout should not read the whole text");}
+
+        @Override
+        public String getText(int start, int end) {
+            charsRead += Math.max(0, end - start);
+            return delegate.getText(start, end);
+        }
+        @Override public int getLineCount() {return delegate.getLineCount();}
+        @Override public int getLineLength(int lineIndex) {return delegate.getLineLength(lineIndex);}
+        @Override public int getLineStart(int lineIndex) {return delegate.getLineStart(lineIndex);}
+
+        @Override
+        public String getLine(int lineIndex) {
+            linesRead++;
+            return delegate.getLine(lineIndex);
+        }
+    }
 }
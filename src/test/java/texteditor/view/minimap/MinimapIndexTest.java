@@ -0,0 +1,119 @@
+package texteditor.view.minimap;
+
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinimapIndexTest {
+
+    // stands in for the FX thread: commits queue up here and the test runs them
+    private final LinkedBlockingQueue<Runnable> commits = new LinkedBlockingQueue<>();
+
+    @Test
+    void sketch_expandsTabsAndIgnoresTrailingSpaces() {
+        int sketch = MinimapIndex.sketch("\t  foo bar  ", 0, 12);
+        assertEquals(6, sketch >>> 16);
+        assertEquals(13, sketch & 0xFFFF);
+        assertEquals(0, MinimapIndex.sketch("    ", 0, 4));
+    }
+
+    @Test
+    void longLines_areSketchedFromTheirFirstColumnsOnly() {
+        Document document = Document.forText("short\n");
+        MinimapIndex index = new MinimapIndex(document, commits::add);
+        document.addDocumentListener(index);
+
+        String wide = "😀".repeat(MinimapIndex.MAX_COLUMNS) + "y".repeat(50_000);
+        document.insert(0, wide + "\n\t" + "z".repeat(3 * MinimapIndex.MAX_COLUMNS) + "\n");
+
+        assertMatchesDocument(index, document);
+        assertEquals(MinimapIndex.MAX_COLUMNS, index.getEnd(0));
+        index.shutdown();
+    }
+
+    @Test
+    void backgroundPass_sketchesEveryLine() throws InterruptedException {
+        Document document = Document.forText(sampleText(3 * MinimapIndex.BATCH_LINES));
+        MinimapIndex index = new MinimapIndex(document, commits::add);
+        document.addDocumentListener(index);
+        assertEquals(document.getLineCount(), index.getUnknownLines());
+
+        index.start();
+        runCommitsUntilSketched(index);
+
+        assertMatchesDocument(index, document);
+        index.shutdown();
+    }
+
+    @Test
+    void edits_spliceAndResketchOnlyTheEditedLines() {
+        Document document = Document.forText("a\n  bb\nccc\n");
+        MinimapIndex index = new MinimapIndex(document, commits::add);
+        document.addDocumentListener(index);
+        int[] changed = new int[3];
+        index.setChangeListener((from, to, moved) -> {
+            changed[0] = from;
+            changed[1] = to;
+            changed[2] = moved ? 1 : 0;
+        });
+
+        document.insert(document.getLineStart(1), "\t\tnew\n");
+        assertArrayEquals(new int[] {1, 3, 1}, changed);
+        assertEquals(8, index.getIndent(1));
+        assertEquals(2, index.getIndent(2));
+        assertFalse(index.isSketched(0));
+        assertFalse(index.isSketched(3));
+        assertEquals(document.getLineCount(), index.getLineCount());
+
+        document.insert(document.getLineStart(1), "x");
+        assertArrayEquals(new int[] {1, 2, 0}, changed);
+        assertEquals(0, index.getIndent(1));
+        index.shutdown();
+    }
+
+    @Test
+    void editDuringPass_restartsWithoutLosingTheEdit() throws InterruptedException {
+        Document document = Document.forText(sampleText(3 * MinimapIndex.BATCH_LINES));
+        MinimapIndex index = new MinimapIndex(document, commits::add);
+        document.addDocumentListener(index);
+
+        index.start();
+        document.insert(0, "one\ntwo\n");
+        document.remove(document.getLineStart(100), document.getLineLength(100));
+        runCommitsUntilSketched(index);
+
+        assertMatchesDocument(index, document);
+        index.shutdown();
+    }
+
+    private void runCommitsUntilSketched(MinimapIndex index) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (index.getUnknownLines() > 0) {
+            Runnable commit = commits.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            assertNotNull(commit, "background pass did not finish");
+            commit.run();
+        }
+    }
+
+    private static void assertMatchesDocument(MinimapIndex index, Document document) {
+        assertEquals(document.getLineCount(), index.getLineCount());
+        for (int line = 0; line < document.getLineCount(); line++) {
+            String text = document.getLine(line);
+            int sketch = MinimapIndex.sketch(text, 0, text.length());
+            assertEquals(sketch >>> 16, index.getIndent(line), "indent of line " + line);
+            assertEquals(sketch & 0xFFFF, index.getEnd(line), "end of line " + line);
+        }
+    }
+
+    private static String sampleText(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(" ".repeat(i % 7)).append("line ").append(i).append("x".repeat(i % 29)).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package texteditor.view.minimap;
+
+import org.junit.jupiter.api.Test;
+import texteditor.model.Document;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinimapRasterTest {
+
+    @Test
+    void scrolling_rasterizesOnlyTheLinesThatCameIntoView() {
+        MinimapIndex index = sketchedIndex(500);
+        MinimapRaster raster = new MinimapRaster(40, 100);
+        raster.update(index, 0);
+        assertEquals(50, raster.getLinesRasterized());
+
+        raster.update(index, 3);
+        assertEquals(53, raster.getLinesRasterized());
+        assertArrayEquals(fresh(index, 3).getPixels(), raster.getPixels());
+
+        raster.update(index, 1);
+        assertEquals(55, raster.getLinesRasterized());
+        assertArrayEquals(fresh(index, 1).getPixels(), raster.getPixels());
+        index.shutdown();
+    }
+
+    @Test
+    void edit_rasterizesOnlyTheEditedLine() {
+        Document document = Document.forText(sampleText(500));
+        MinimapIndex index = sketched(document);
+        MinimapRaster raster = new MinimapRaster(40, 100);
+        index.setChangeListener(raster::invalidate);
+        raster.update(index, 10);
+
+        long before = raster.getLinesRasterized();
+        document.insert(document.getLineStart(20), "    ");
+        MinimapRaster.Change change = raster.update(index, 10);
+
+        assertEquals(1, raster.getLinesRasterized() - before);
+        assertEquals(new MinimapRaster.Change(20, 22), change);
+        assertArrayEquals(fresh(index, 10).getPixels(), raster.getPixels());
+        assertTrue(raster.update(index, 10).isEmpty());
+        index.shutdown();
+    }
+
+    private static MinimapRaster fresh(MinimapIndex index, int firstLine) {
+        MinimapRaster raster = new MinimapRaster(40, 100);
+        raster.update(index, firstLine);
+        return raster;
+    }
+
+    private static MinimapIndex sketchedIndex(int lines) {
+        return sketched(Document.forText(sampleText(lines)));
+    }
+
+    /** Index with every line sketched, by running its background pass to the end on this thread. */
+    private static MinimapIndex sketched(Document document) {
+        java.util.concurrent.LinkedBlockingQueue<Runnable> commits = new java.util.concurrent.LinkedBlockingQueue<>();
+        MinimapIndex index = new MinimapIndex(document, commits::add);
+        document.addDocumentListener(index);
+        index.start();
+        try {
+            while (index.getUnknownLines() > 0) commits.take().run();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return index;
+    }
+
+    private static String sampleText(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(" ".repeat(i % 5)).append("x".repeat(i % 60)).append('\n');
+        }
+        return text.toString();
+    }
+}
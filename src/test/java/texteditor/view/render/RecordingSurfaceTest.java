@@ -0,0 +1,61 @@
+package texteditor.view.render;
+
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+import texteditor.view.text.TextMeasurer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordingSurfaceTest {
+
+    private final TextMeasurer measurer = new TextMeasurer() {
+        @Override public double measureWidth(String text) {return (text == null) ? 0 : text.length() * 10;}
+        @Override public double getLineHeight() {return 20;}
+        @Override public double getBaselineOffset() {return 15;}
+        @Override public Font getFont() {return null;}
+    };
+
+    @Test
+    void countsCallsGlyphsAndAreas() {
+        RecordingSurface surface = new RecordingSurface(200, 100, 1, measurer, true);
+
+        surface.clearRect(0, 0, 200, 100);
+        surface.fillText("hello\n", 10, 15);
+        surface.fillText("😀x", 10, 35);
+        surface.drawImage(null, 0, 80, 50, 40);
+        surface.moveArea(0, 100, -20);
+
+        assertEquals(5, surface.getDrawCalls());
+        assertEquals(2, surface.getTextCalls());
+        assertEquals(5 + 2, surface.getGlyphs());
+        assertEquals(200 * 100, surface.getClearedArea());
+        assertEquals(60 * 20 + 30 * 20, surface.getTextArea());
+        assertEquals(50 * 20, surface.getImageArea(), "only the part inside the surface");
+        assertEquals(200 * 80, surface.getMovedArea());
+        assertEquals(List.of("hello\n", "😀x"), surface.getTextLog());
+    }
+
+    @Test
+    void areasAreClippedUntilRestore() {
+        RecordingSurface surface = new RecordingSurface(200, 100, measurer);
+
+        surface.save();
+        surface.clipRect(0, 40, 200, 20);
+        surface.clearRect(0, 0, 200, 100);
+        surface.save();
+        surface.clipRect(0, 0, 50, 100);
+        surface.clearRect(0, 0, 200, 100);
+        surface.restore();
+        surface.restore();
+        surface.clearRect(0, 0, 200, 100);
+
+        assertEquals(200 * 20 + 50 * 20 + 200 * 100, surface.getClearedArea());
+
+        surface.reset();
+        assertEquals(0, surface.getDrawCalls());
+        assertEquals(0, surface.getClearedArea());
+        assertThrows(IllegalStateException.class, surface::getTextLog);
+    }
+}
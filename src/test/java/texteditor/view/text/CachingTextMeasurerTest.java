@@ -0,0 +1,93 @@
+package texteditor.view.text;
+
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingTextMeasurerTest {
+
+    @Test
+    void monospaceFont_measuresAsciiWithoutAskingDelegate() {
+        CountingMeasurer delegate = new CountingMeasurer(c -> 7.0);
+        CachingTextMeasurer measurer = new CachingTextMeasurer(delegate);
+        assertTrue(measurer.isMonospace());
+
+        delegate.calls.clear();
+        assertEquals(7.0 * 11, measurer.measureWidth("hello world"), 1e-9);
+        assertEquals(7.0 * 3, measurer.measureWidth("xxhello", 2, 5), 1e-9);
+        assertTrue(delegate.calls.isEmpty());
+    }
+
+    @Test
+    void proportionalFont_measuresEachCharacterOnce() {
+        CountingMeasurer delegate = new CountingMeasurer(c -> (c == 'i' || c == 'l') ? 3.0 : 8.0);
+        CachingTextMeasurer measurer = new CachingTextMeasurer(delegate);
+        assertFalse(measurer.isMonospace());
+
+        delegate.calls.clear();
+        assertEquals(8 + 3 + 3 + 3 + 8, measurer.measureWidth("hillo"), 1e-9);
+        assertEquals(List.of("h", "i", "l", "o"), delegate.calls);
+
+        delegate.calls.clear();
+        assertEquals(8 + 3 + 8 + 8, measurer.measureWidth("oiho"), 1e-9);
+        assertEquals(8.0 * 2, measurer.measureWidth("éü"), 1e-9);
+        assertEquals(List.of("é", "ü"), delegate.calls);
+    }
+
+    @Test
+    void textNeedingShaping_goesToDelegateWhole() {
+        CountingMeasurer delegate = new CountingMeasurer(c -> 7.0);
+        CachingTextMeasurer measurer = new CachingTextMeasurer(delegate);
+
+        for (String text : new String[] {"a\tb", "é", "😀", "مرحبا"}) {
+            delegate.calls.clear();
+            measurer.measureWidth("[" + text + "]", 1, 1 + text.length());
+            assertEquals(List.of(text), delegate.calls);
+        }
+    }
+
+    @Test
+    void advances_areCumulativeAndFlatInsideClusters() {
+        CountingMeasurer delegate = new CountingMeasurer(c -> (c == '\u0301') ? 0.0 : 7.0);
+        CachingTextMeasurer measurer = new CachingTextMeasurer(delegate);
+
+        String text = "ab" + "e\u0301" + "c";
+        float[] advances = new float[text.length() + 1];
+        measurer.measureAdvances(text, 0, text.length(), advances);
+
+        assertArrayEquals(new float[] {0, 7, 14, 14, 21, 28}, advances);
+    }
+
+    private interface Advance {
+        double of(char c);
+    }
+
+    /** Sums fixed per-character advances and records every string it is asked to measure. */
+    private static class CountingMeasurer implements TextMeasurer {
+        private final Advance advance;
+        final List<String> calls = new ArrayList<>();
+
+        CountingMeasurer(Advance advance) {this.advance = advance;}
+
+        @Override
+        public double measureWidth(String text) {
+            calls.add(text);
+            double width = 0;
+            for (int i = 0; i < text.length(); i++) width += advance.of(text.charAt(i));
+            return width;
+        }
+
+        @Override
+        public double getLineHeight() {return 10;}
+
+        @Override
+        public double getBaselineOffset() {return 8;}
+
+        @Override
+        public Font getFont() {return null;}
+    }
+}
@@ -0,0 +1,68 @@
+package texteditor.view.text;
+
+import javafx.scene.text.Font;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FontMetricsTextMeasurerTest {
+
+    // proportional, with a little kerning between 'A' and 'V' that a table of advances cannot see
+    private final TextMeasurer probe = new TextMeasurer() {
+        @Override
+        public double measureWidth(String text) {
+            double width = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                width += (c >= 0x4E00 && c <= 0x9FFF) ? 20 : 4 + c % 7;
+                if (i > 0 && text.charAt(i - 1) == 'A' && c == 'V') width -= 0.5;
+            }
+            return width;
+        }
+        @Override public double getLineHeight() {return 18;}
+        @Override public double getBaselineOffset() {return 14;}
+        @Override public Font getFont() {return null;}
+    };
+
+    private final FontMetricsTextMeasurer measurer = new FontMetricsTextMeasurer(null, probe);
+
+    @Test
+    void widthsMatchTheProbeWithinTolerance() {
+        Random rnd = new Random(11);
+        String alphabet = "AVabcdefghijklmnopqrstuvwxyz ,.;:(){}[]0123456789äöüßéñαβγδжщ—“”→│";
+        for (int round = 0; round < 500; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + rnd.nextInt(80);
+            for (int i = 0; i < length; i++) text.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+
+            double expected = probe.measureWidth(text.toString());
+            assertEquals(expected, measurer.measureWidth(text.toString()), 0.01 * expected, text.toString());
+        }
+        assertEquals(probe.getLineHeight(), measurer.getLineHeight());
+        assertEquals(probe.getBaselineOffset(), measurer.getBaselineOffset());
+    }
+
+    @Test
+    void charactersOutsideTheTables_useWideOrZeroAdvances() {
+        assertEquals(2 * 20, measurer.measureWidth("中文"), 1e-6);
+        assertEquals(measurer.measureWidth("e"), measurer.measureWidth("e\u0301"), 1e-6);
+        assertEquals(20, measurer.measureWidth("😀"), 1e-6);
+
+        float[] advances = new float[4];
+        measurer.measureAdvances("xe\u0301", 0, 3, advances);
+        assertEquals(advances[2], advances[3]);
+    }
+
+    @Test
+    void sharedAcrossThreads_givesTheSameWidths() {
+        assertTrue(measurer.isThreadSafe());
+        List<String> lines = IntStream.range(0, 2000).mapToObj(i -> "line " + i + " → αβγ " + "x".repeat(i % 50)).toList();
+        double[] sequential = lines.stream().mapToDouble(measurer::measureWidth).toArray();
+        double[] parallel = lines.parallelStream().mapToDouble(measurer::measureWidth).toArray();
+        assertArrayEquals(sequential, parallel);
+    }
+}
@@ -0,0 +1,16 @@
+package texteditor.view.text;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaFXTextMeasurerTest {
+
+    @Test
+    void lineHeight_isRoundedUpToWholePixels() {
+        assertEquals(19, JavaFXTextMeasurer.lineHeight(0, 15.1));
+        assertEquals(18, JavaFXTextMeasurer.lineHeight(0, 15));
+        assertEquals(21, JavaFXTextMeasurer.lineHeight(20.25, 15.1), "the font's own spacing wins");
+        assertEquals(20, JavaFXTextMeasurer.lineHeight(20, 15.1));
+    }
+}